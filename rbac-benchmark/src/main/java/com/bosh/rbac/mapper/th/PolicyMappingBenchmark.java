@@ -0,0 +1,81 @@
+package com.bosh.rbac.mapper.th;
+
+import com.bosh.rbac.model.Action;
+import com.bosh.rbac.model.IntEnum;
+import com.bosh.rbac.model.IntEnums;
+import com.bosh.rbac.model.ResourceType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * decoding the action and resource type columns of a policy row: {@link #registry} looks them up the way
+ * {@link IntEnumTypeHandler} does now, {@link #streamed} streams the enum constants the way the handler used to, and
+ * {@link #typeHandler} goes through the handlers themselves over a result set that only answers ints, the per row cost
+ * mybatis pays for both columns when listing all policies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PolicyMappingBenchmark {
+
+    private final IntEnumTypeHandler<Action> actionHandler = new IntEnumTypeHandler<>(Action.class);
+    private final IntEnumTypeHandler<ResourceType> resourceTypeHandler = new IntEnumTypeHandler<>(ResourceType.class);
+    private ResultSet row;
+    private int i;
+
+    @Setup
+    public void setup() {
+        row = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getInt": return "action".equals(args[0]) ? i % 3 + 1 : i % 4 + 1;
+                        case "wasNull": return false;
+                        case "toString": return "benchmark row";
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Benchmark
+    public void registry(Blackhole blackhole) {
+        i++;
+        blackhole.consume(IntEnums.valueOf(Action.class, i % 3 + 1));
+        blackhole.consume(IntEnums.valueOf(ResourceType.class, i % 4 + 1));
+    }
+
+    @Benchmark
+    public void streamed(Blackhole blackhole) {
+        i++;
+        blackhole.consume(streamed(Action.class, i % 3 + 1));
+        blackhole.consume(streamed(ResourceType.class, i % 4 + 1));
+    }
+
+    @Benchmark
+    public void typeHandler(Blackhole blackhole) throws SQLException {
+        i++;
+        blackhole.consume(actionHandler.getNullableResult(row, "action"));
+        blackhole.consume(resourceTypeHandler.getNullableResult(row, "resource_type"));
+    }
+
+    private static <E extends Enum<E> & IntEnum> E streamed(Class<E> type, int value) {
+        return Arrays.stream(type.getEnumConstants()).filter(e -> e.getValue() == value).findFirst().orElse(null);
+    }
+}
@@ -0,0 +1,188 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.auth.model.ResourceAccess;
+import com.bosh.rbac.context.RbacContext;
+import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.Action;
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.EntityType;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.bosh.rbac.model.Role;
+import com.bosh.rbac.model.User;
+import com.bosh.rbac.model.UserRole;
+import com.bosh.rbac.service.cache.ResourcePolicyFilter;
+import com.bosh.rbac.service.cache.UserPolicyCache;
+import com.bosh.rbac.service.engine.GlobPolicyIndex;
+import com.bosh.rbac.service.engine.PolicyEngine;
+import com.bosh.rbac.service.engine.PolicySnapshot;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * in memory authorization decisions against a snapshot of 10k policies, where the user is only allowed through the last
+ * of its roles. run with {@code -prof gc} and compare gc.alloc.rate.norm, the bytes allocated per decision.
+ * {@link #userPolicyBoxed} boxes the policy ids of every decision into a list the way decisions used to, checking out
+ * the previous revision gives the full before numbers of {@link #authorize}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizerBenchmark {
+
+    private static final int POLICIES = 10000;
+    private static final int ROLES = 500;
+    // roles are assigned with the lower half of the policies, users each with one of the upper half
+    private static final int POLICIES_PER_ROLE = POLICIES / 2 / ROLES;
+    private static final int ROLES_PER_USER = 4;
+    private static final int USERS = 1000;
+    private static final long USER_ID = 7;
+
+    private Authorizer authorizer;
+    private PolicySnapshot snapshot;
+    private ResourceAccess resourceAccess;
+    private long[] policyIds;
+
+    @Setup
+    public void setup() {
+        Date now = new Date();
+        List<Policy> policies = Lists.newArrayListWithCapacity(POLICIES);
+        for (int i = 1; i <= POLICIES; i++) {
+            policies.add(policy(i, new Resource(ResourceType.COLUMN, "db" + i % 100 + ".table" + i), now));
+        }
+        List<Role> roles = Lists.newArrayListWithCapacity(ROLES);
+        List<EntityPolicy> entityPolicies = Lists.newArrayList();
+        for (int r = 1; r <= ROLES; r++) {
+            Role role = new Role();
+            role.setId(r);
+            role.setName("role" + r);
+            roles.add(role);
+            for (int p = 1; p <= POLICIES_PER_ROLE; p++) {
+                entityPolicies.add(new EntityPolicy(EntityType.Role, r, (r - 1) * POLICIES_PER_ROLE + p, now));
+            }
+        }
+        List<UserRole> userRoles = Lists.newArrayList();
+        for (int u = 1; u <= USERS; u++) {
+            for (int k = 0; k < ROLES_PER_USER; k++) {
+                userRoles.add(new UserRole(u, (u + k * 97) % ROLES + 1, now));
+            }
+            entityPolicies.add(new EntityPolicy(EntityType.User, u, POLICIES - u, now));
+        }
+        RbacMapper mapper = (RbacMapper) Proxy.newProxyInstance(RbacMapper.class.getClassLoader(),
+                new Class<?>[] {RbacMapper.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "listAllPolicies": return policies;
+                        case "listAllRoles": return roles;
+                        case "listAllUserRoles": return userRoles;
+                        case "listAllEntityPolicies": return entityPolicies;
+                        case "toString": return "benchmark mapper";
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        PolicyEngine engine = new PolicyEngine(mapper, new NoTransactionManager(), true, 60, 200);
+        engine.refresh();
+        snapshot = engine.getSnapshot();
+        authorizer = new Authorizer(mapper, new PolicyPredicate(), engine, new UserPolicyCache(mapper, false, 1, 1),
+                new ResourcePolicyFilter(mapper, false, 0.01, 300), new GlobPolicyIndex(mapper, false, 60, 200));
+
+        // the access is covered by one policy of each role of the user, the last role's one being the only grant
+        List<Resource> decorated = Lists.newArrayList();
+        long lastRole = (USER_ID + (ROLES_PER_USER - 1) * 97) % ROLES + 1;
+        for (int k = 0; k < ROLES_PER_USER; k++) {
+            long roleId = (USER_ID + k * 97) % ROLES + 1;
+            long policyId = (roleId - 1) * POLICIES_PER_ROLE + 1;
+            if (roleId != lastRole) policyId = POLICIES / 2 + 1 + k; // assigned to nobody
+            decorated.add(policies.get((int) policyId - 1).getResource());
+        }
+        resourceAccess = new ResourceAccess();
+        resourceAccess.setAction(Action.Read);
+        resourceAccess.setResource(new Resource(ResourceType.COLUMN, "db0.uncovered"));
+        resourceAccess.setDecoratedResources(decorated);
+        policyIds = snapshot.getAccessPolicies(resourceAccess.getResource(), decorated).stream()
+                .mapToLong(Policy::getId).toArray();
+
+        RbacContext context = new RbacContext("benchmark", String.valueOf(USER_ID));
+        User user = new User();
+        user.setId(USER_ID);
+        context.setUser(user);
+        RbacScope.setContext(context);
+        if (!authorizer.authorize(resourceAccess).isAllow()) throw new IllegalStateException("access should be allowed");
+    }
+
+    @TearDown
+    public void tearDown() {
+        RbacScope.clearContext();
+    }
+
+    @Benchmark
+    public Object authorize() {
+        return authorizer.authorize(resourceAccess);
+    }
+
+    @Benchmark
+    public EntityPolicy userPolicy() {
+        return snapshot.getUserPolicy(USER_ID, policyIds, policyIds.length);
+    }
+
+    @Benchmark
+    public EntityPolicy userPolicyBoxed() {
+        List<Long> ids = Arrays.stream(policyIds).boxed().collect(Collectors.toList());
+        return snapshot.getUserPolicy(USER_ID, ids);
+    }
+
+    /**
+     * the proxied mapper has no database to hold a transaction on
+     */
+    private static class NoTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {}
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {}
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {}
+    }
+
+    private static Policy policy(long id, Resource resource, Date now) {
+        Policy policy = new Policy();
+        policy.setId(id);
+        policy.setName("policy" + id);
+        policy.setResource(resource);
+        policy.setAction(Action.Read);
+        policy.setCreatedAt(now);
+        policy.setUpdatedAt(now);
+        return policy;
+    }
+}
@@ -0,0 +1,98 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.model.Action;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.bosh.rbac.service.resource.HDFSResourceDecorator;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * enumerating ancestors of hdfs paths of increasing depth: {@link #splitConcat} is how the decorator used to build them,
+ * {@link #decorate} materializes them through the ancestor iterator, {@link #trieAncestors} matches them in place
+ * against a trie holding a policy on every other ancestor. run with {@code -prof gc} for bytes allocated per path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HDFSAncestorBenchmark {
+
+    @Param({"2", "4", "8", "16", "32", "64"})
+    private int depth;
+
+    private final HDFSResourceDecorator decorator = new HDFSResourceDecorator();
+    private final PolicyPathTrie trie = new PolicyPathTrie();
+    private Resource resource;
+
+    @Setup
+    public void setup() {
+        StringBuilder path = new StringBuilder("hdfs://namenode:8020");
+        for (int i = 1; i < depth; i++) {
+            path.append("/dir").append(i);
+            if (i % 2 == 0) trie.insert(policy(i, path.toString()));
+        }
+        path.append("/part-00000.parquet");
+        resource = new Resource(ResourceType.HDFS, path.toString());
+    }
+
+    @Benchmark
+    public List<Resource> splitConcat() {
+        String path = resource.getValue();
+        String prefix = "";
+        if (path.contains("://")) {
+            int index = path.indexOf("://");
+            prefix = path.substring(0, index + 3);
+            path = path.substring(index + 3);
+        }
+        String[] fields = path.split("/");
+        String previous = prefix;
+        List<Resource> decorated = Lists.newArrayListWithCapacity(fields.length - 1);
+        for (int i = 0; i < fields.length - 1; i++) {
+            if (fields[i].isEmpty()) continue;
+            String p = previous;
+            if (previous.length() > prefix.length()) p += "/";
+            p += fields[i];
+            decorated.add(new Resource(ResourceType.HDFS, p));
+            previous = p;
+        }
+        return decorated;
+    }
+
+    @Benchmark
+    public List<Resource> decorate() {
+        return decorator.decorate(resource);
+    }
+
+    @Benchmark
+    public List<Policy> trieAncestors() {
+        List<Policy> policies = Lists.newArrayListWithCapacity(depth);
+        trie.collectAncestors(resource.getValue(), policies);
+        return policies;
+    }
+
+    private static Policy policy(long id, String path) {
+        Policy policy = new Policy();
+        policy.setId(id);
+        policy.setName("policy" + id);
+        policy.setResource(new Resource(ResourceType.HDFS, path));
+        policy.setAction(Action.Read);
+        return policy;
+    }
+}
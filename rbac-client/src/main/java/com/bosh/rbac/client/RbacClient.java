@@ -6,6 +6,9 @@ import com.bosh.rbac.model.Entity;
 import com.bosh.rbac.model.Policy;
 import com.bosh.rbac.model.Role;
 import com.bosh.rbac.model.User;
+import com.bosh.rbac.rest.model.Assignment;
+import com.bosh.rbac.rest.model.AssignmentResult;
+import com.bosh.rbac.rest.model.CursorListPayload;
 import com.bosh.rbac.rest.model.DescriptionUpdate;
 import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +17,8 @@ import org.mib.rest.client.HttpOperator;
 import org.mib.rest.client.SyncHttpOperator;
 import org.mib.rest.model.list.ListPayload;
 
+import java.util.List;
+
 import static org.mib.common.validator.Validator.validateLongNotNegative;
 import static org.mib.common.validator.Validator.validateLongPositive;
 import static org.mib.common.validator.Validator.validateObjectNotNull;
@@ -26,6 +31,11 @@ public class RbacClient implements RbacAuthorizer {
     private static final TypeReference<ListPayload<Role>> ROLES_TR = new TypeReference<ListPayload<Role>>() {};
     private static final TypeReference<ListPayload<Policy>> POLICIES_TR = new TypeReference<ListPayload<Policy>>() {};
     private static final TypeReference<ListPayload<Entity>> ENTITIES_TR = new TypeReference<ListPayload<Entity>>() {};
+    private static final TypeReference<CursorListPayload<User>> USERS_PAGE_TR = new TypeReference<CursorListPayload<User>>() {};
+    private static final TypeReference<CursorListPayload<Role>> ROLES_PAGE_TR = new TypeReference<CursorListPayload<Role>>() {};
+    private static final TypeReference<CursorListPayload<Policy>> POLICIES_PAGE_TR = new TypeReference<CursorListPayload<Policy>>() {};
+    private static final TypeReference<CursorListPayload<Entity>> ENTITIES_PAGE_TR = new TypeReference<CursorListPayload<Entity>>() {};
+    private static final TypeReference<List<AssignmentResult>> ASSIGNMENT_RESULTS_TR = new TypeReference<List<AssignmentResult>>() {};
 
     private final String endpoint;
     private final HttpOperator http;
@@ -60,6 +70,19 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
+    /**
+     * lists users by id, which costs the same on every page unlike offset listings
+     * @param cursor next token of the previous page, null for the first page
+     */
+    public CursorListPayload<User> listUsersAfter(String cursor, long limit, String search) throws Exception {
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing users after cursor {} with limit {} and search {}...", cursor, limit, search);
+        CursorListPayload<User> page = HttpExecution.get(endpoint + "/users").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).param("search", search).executeForJson(http, USERS_PAGE_TR);
+        log.debug("listed users {}", page);
+        return page;
+    }
+
     public ListPayload<User> listUsersOfRole(long roleId, long offset, long limit) throws Exception {
         validateLongPositive(roleId, "role id");
         validateLongNotNegative(offset, "listing offset");
@@ -71,6 +94,16 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
+    public CursorListPayload<User> listUsersOfRoleAfter(long roleId, String cursor, long limit) throws Exception {
+        validateLongPositive(roleId, "role id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing users assigned with role {} after cursor {} with limit {}...", roleId, cursor, limit);
+        CursorListPayload<User> page = HttpExecution.get(endpoint + "/roles/" + roleId + "/users").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).executeForJson(http, USERS_PAGE_TR);
+        log.debug("listed role users {}", page);
+        return page;
+    }
+
     public Role createRole(Role role) throws Exception {
         validateObjectNotNull(role, "role");
         log.debug("creating role {}...", role);
@@ -97,6 +130,15 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
+    public CursorListPayload<Role> listRolesAfter(String cursor, long limit, String search) throws Exception {
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing roles after cursor {} with limit {} and search {}...", cursor, limit, search);
+        CursorListPayload<Role> page = HttpExecution.get(endpoint + "/roles").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).param("search", search).executeForJson(http, ROLES_PAGE_TR);
+        log.debug("listed roles {}", page);
+        return page;
+    }
+
     public ListPayload<Role> listRolesOfUser(long userId, long offset, long limit) throws Exception {
         validateLongPositive(userId, "user pk id");
         validateLongNotNegative(offset, "listing offset");
@@ -108,6 +150,16 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
+    public CursorListPayload<Role> listRolesOfUserAfter(long userId, String cursor, long limit) throws Exception {
+        validateLongPositive(userId, "user pk id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing roles assigned to user {} after cursor {} with limit {}...", userId, cursor, limit);
+        CursorListPayload<Role> page = HttpExecution.get(endpoint + "/users/" + userId + "/roles").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).executeForJson(http, ROLES_PAGE_TR);
+        log.debug("listed user roles {}", page);
+        return page;
+    }
+
     public Role updateRoleDescription(long roleId, String description) throws Exception {
         validateLongPositive(roleId, "role id");
         validateStringNotBlank(description, "role description");
@@ -150,6 +202,15 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
+    public CursorListPayload<Policy> listPoliciesAfter(String cursor, long limit, String search) throws Exception {
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing policies after cursor {} with limit {} and search {}...", cursor, limit, search);
+        CursorListPayload<Policy> page = HttpExecution.get(endpoint + "/policies").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).param("search", search).executeForJson(http, POLICIES_PAGE_TR);
+        log.debug("listed policies {}", page);
+        return page;
+    }
+
     public ListPayload<Policy> listPoliciesOfUser(long userId, long offset, long limit) throws Exception {
         validateLongPositive(userId, "user pk id");
         validateLongNotNegative(offset, "listing offset");
@@ -161,6 +222,16 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
+    public CursorListPayload<Policy> listPoliciesOfUserAfter(long userId, String cursor, long limit) throws Exception {
+        validateLongPositive(userId, "user pk id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing policies assigned to user {} after cursor {} with limit {}...", userId, cursor, limit);
+        CursorListPayload<Policy> page = HttpExecution.get(endpoint + "/users/" + userId + "/policies").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).executeForJson(http, POLICIES_PAGE_TR);
+        log.debug("listed user policies {}", page);
+        return page;
+    }
+
     public ListPayload<Policy> listPoliciesOfRole(long roleId, long offset, long limit) throws Exception {
         validateLongPositive(roleId, "role id");
         validateLongNotNegative(offset, "listing offset");
@@ -172,6 +243,16 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
+    public CursorListPayload<Policy> listPoliciesOfRoleAfter(long roleId, String cursor, long limit) throws Exception {
+        validateLongPositive(roleId, "role id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing policies assigned to role {} after cursor {} with limit {}...", roleId, cursor, limit);
+        CursorListPayload<Policy> page = HttpExecution.get(endpoint + "/roles/" + roleId + "/policies").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).executeForJson(http, POLICIES_PAGE_TR);
+        log.debug("listed role policies {}", page);
+        return page;
+    }
+
     public Policy updatePolicyDescription(long policyId, String description) throws Exception {
         validateLongPositive(policyId, "policy id");
         validateStringNotBlank(description, "policy description");
@@ -199,52 +280,100 @@ public class RbacClient implements RbacAuthorizer {
         return lp;
     }
 
-    public void assignRoleToUser(long roleId, String userId) throws Exception {
+    public CursorListPayload<Entity> listEntitiesWithPolicyAfter(long policyId, String cursor, long limit) throws Exception {
+        validateLongPositive(policyId, "policy id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing entities assigned with policy {} after cursor {} with limit {}...", policyId, cursor, limit);
+        CursorListPayload<Entity> page = HttpExecution.get(endpoint + "/policies/" + policyId + "/entities").param("cursor", cursorParam(cursor))
+                .param("limit", String.valueOf(limit)).executeForJson(http, ENTITIES_PAGE_TR);
+        log.debug("listed entities {}", page);
+        return page;
+    }
+
+    public AssignmentResult assignRoleToUser(long roleId, String userId) throws Exception {
         validateLongPositive(roleId, "role id");
         validateStringNotBlank(userId, "user id");
         log.debug("assigning role {} to user {}...", roleId, userId);
-        HttpExecution.post(endpoint + "/admin/roles/" + roleId + "/users/" + userId).executeVoid(http);
-        log.debug("assigned role {} to user {}", roleId, userId);
+        AssignmentResult result = HttpExecution.post(endpoint + "/admin/roles/" + roleId + "/users/" + userId)
+                .executeForJson(http, AssignmentResult.class);
+        log.debug("assigned role {} to user {} with outcome {}", roleId, userId, result.getOutcome());
+        return result;
     }
 
-    public void unassignRoleFromUser(long roleId, String userId) throws Exception {
+    public AssignmentResult unassignRoleFromUser(long roleId, String userId) throws Exception {
         validateLongPositive(roleId, "role id");
         validateStringNotBlank(userId, "user id");
         log.debug("unassigning role {} from user {}...", roleId, userId);
-        HttpExecution.delete(endpoint + "/admin/roles/" + roleId + "/users/" + userId).executeVoid(http);
-        log.debug("unassigned role {} from user {}", roleId, userId);
+        AssignmentResult result = HttpExecution.delete(endpoint + "/admin/roles/" + roleId + "/users/" + userId)
+                .executeForJson(http, AssignmentResult.class);
+        log.debug("unassigned role {} from user {} with outcome {}", roleId, userId, result.getOutcome());
+        return result;
     }
 
-    public void assignPolicyToUser(long policyId, String userId) throws Exception {
+    public AssignmentResult assignPolicyToUser(long policyId, String userId) throws Exception {
         validateLongPositive(policyId, "policy id");
         validateStringNotBlank(userId, "user id");
         log.debug("assigning policy {} to user {}...", policyId, userId);
-        HttpExecution.post(endpoint + "/admin/policies/" + policyId + "/users/" + userId).executeVoid(http);
-        log.debug("assigned policy {} to user {}", policyId, userId);
+        AssignmentResult result = HttpExecution.post(endpoint + "/admin/policies/" + policyId + "/users/" + userId)
+                .executeForJson(http, AssignmentResult.class);
+        log.debug("assigned policy {} to user {} with outcome {}", policyId, userId, result.getOutcome());
+        return result;
     }
 
-    public void unassignPolicyFromUser(long policyId, String userId) throws Exception {
+    public AssignmentResult unassignPolicyFromUser(long policyId, String userId) throws Exception {
         validateLongPositive(policyId, "policy id");
         validateStringNotBlank(userId, "user id");
         log.debug("unassigning policy {} from user {}...", policyId, userId);
-        HttpExecution.delete(endpoint + "/admin/policies/" + policyId + "/users/" + userId).executeVoid(http);
-        log.debug("unassigned policy {} from user {}", policyId, userId);
+        AssignmentResult result = HttpExecution.delete(endpoint + "/admin/policies/" + policyId + "/users/" + userId)
+                .executeForJson(http, AssignmentResult.class);
+        log.debug("unassigned policy {} from user {} with outcome {}", policyId, userId, result.getOutcome());
+        return result;
     }
 
-    public void assignPolicyToRole(long policyId, long roleId) throws Exception {
+    public AssignmentResult assignPolicyToRole(long policyId, long roleId) throws Exception {
         validateLongPositive(policyId, "policy id");
         validateLongPositive(roleId, "role id");
         log.debug("assigning policy {} to role {}...", policyId, roleId);
-        HttpExecution.post(endpoint + "/admin/policies/" + policyId + "/roles/" + roleId).executeVoid(http);
-        log.debug("assigned policy {} to role {}", policyId, roleId);
+        AssignmentResult result = HttpExecution.post(endpoint + "/admin/policies/" + policyId + "/roles/" + roleId)
+                .executeForJson(http, AssignmentResult.class);
+        log.debug("assigned policy {} to role {} with outcome {}", policyId, roleId, result.getOutcome());
+        return result;
     }
 
-    public void unassignPolicyFromRole(long policyId, long roleId) throws Exception {
+    public AssignmentResult unassignPolicyFromRole(long policyId, long roleId) throws Exception {
         validateLongPositive(policyId, "policy id");
         validateLongPositive(roleId, "role id");
         log.debug("unassigning policy {} from role {}...", policyId, roleId);
-        HttpExecution.delete(endpoint + "/admin/policies/" + policyId + "/roles/" + roleId).executeVoid(http);
-        log.debug("unassigned policy {} from role {}", policyId, roleId);
+        AssignmentResult result = HttpExecution.delete(endpoint + "/admin/policies/" + policyId + "/roles/" + roleId)
+                .executeForJson(http, AssignmentResult.class);
+        log.debug("unassigned policy {} from role {} with outcome {}", policyId, roleId, result.getOutcome());
+        return result;
+    }
+
+    /**
+     * assigns roles to users, policies to users and policies to roles in one transaction
+     * @return result of each assignment in the same order
+     */
+    public List<AssignmentResult> assign(List<Assignment> assignments) throws Exception {
+        validateObjectNotNull(assignments, "assignments");
+        log.debug("assigning {} items...", assignments.size());
+        List<AssignmentResult> results = HttpExecution.post(endpoint + "/admin/assignments/assign").jsonBody(assignments)
+                .executeForJson(http, ASSIGNMENT_RESULTS_TR);
+        log.debug("assigned with results {}", results);
+        return results;
+    }
+
+    /**
+     * unassigns roles from users, policies from users and policies from roles in one transaction
+     * @return result of each assignment in the same order
+     */
+    public List<AssignmentResult> unassign(List<Assignment> assignments) throws Exception {
+        validateObjectNotNull(assignments, "assignments");
+        log.debug("unassigning {} items...", assignments.size());
+        List<AssignmentResult> results = HttpExecution.post(endpoint + "/admin/assignments/unassign").jsonBody(assignments)
+                .executeForJson(http, ASSIGNMENT_RESULTS_TR);
+        log.debug("unassigned with results {}", results);
+        return results;
     }
 
     @Override
@@ -255,4 +384,9 @@ public class RbacClient implements RbacAuthorizer {
         log.debug("authorized with {}", response);
         return response;
     }
+
+    // the cursor parameter selects keyset listing, so it's sent even empty for the first page
+    private static String cursorParam(String cursor) {
+        return cursor == null ? "" : cursor;
+    }
 }
@@ -1,5 +1,6 @@
 package com.bosh.rbac.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import lombok.Getter;
 
 import static org.mib.common.validator.Validator.validateIntPositive;
@@ -14,4 +15,16 @@ public enum Action implements IntEnum {
         validateIntPositive(value, "action value");
         this.value = value;
     }
+
+    /**
+     * @return action of the value, null if there is none
+     */
+    public static Action valueOf(int value) {
+        return IntEnums.valueOf(Action.class, value);
+    }
+
+    @JsonCreator
+    public static Action fromJson(Object json) {
+        return IntEnums.fromJson(Action.class, json);
+    }
 }
@@ -1,5 +1,6 @@
 package com.bosh.rbac.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import lombok.Getter;
 
 import static org.mib.common.validator.Validator.validateIntPositive;
@@ -14,5 +15,16 @@ public enum EntityType implements IntEnum {
         validateIntPositive(value, "entity type value");
         this.value = value;
     }
-}
 
+    /**
+     * @return entity type of the value, null if there is none
+     */
+    public static EntityType valueOf(int value) {
+        return IntEnums.valueOf(EntityType.class, value);
+    }
+
+    @JsonCreator
+    public static EntityType fromJson(Object json) {
+        return IntEnums.fromJson(EntityType.class, json);
+    }
+}
@@ -0,0 +1,101 @@
+package com.bosh.rbac.model;
+
+import java.lang.reflect.Array;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * constant time decoding of {@link IntEnum}s by value and by name. tables are built once per enum type from its
+ * constants, values index an array, so decoding takes no copy of the constants nor any iteration over them.
+ */
+public class IntEnums {
+
+    private static final ClassValue<Table<?>> TABLES = new ClassValue<Table<?>>() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected Table<?> computeValue(Class<?> type) {
+            if (!type.isEnum() || !IntEnum.class.isAssignableFrom(type)) {
+                throw new IllegalArgumentException(type.getName() + " is not an int enum");
+            }
+            return new Table(type);
+        }
+    };
+
+    private IntEnums() {}
+
+    /**
+     * @return constant of the type with the value, null if there is none
+     */
+    public static <E extends Enum<E> & IntEnum> E valueOf(Class<E> type, int value) {
+        return table(type).byValue(value);
+    }
+
+    /**
+     * @return constant of the type with the value, throws IllegalArgumentException if there is none
+     */
+    public static <E extends Enum<E> & IntEnum> E of(Class<E> type, int value) {
+        E e = valueOf(type, value);
+        if (e == null) throw new IllegalArgumentException("no " + type.getSimpleName() + " of value " + value);
+        return e;
+    }
+
+    /**
+     * decodes json as the name of a constant, or as its value for numbers and numeric strings, never as the ordinal
+     */
+    public static <E extends Enum<E> & IntEnum> E fromJson(Class<E> type, Object json) {
+        validateObjectNotNull(json, type.getSimpleName());
+        if (json instanceof Number) return of(type, ((Number) json).intValue());
+        String text = json.toString();
+        E e = table(type).byName(text);
+        if (e != null) return e;
+        try {
+            return of(type, Integer.parseInt(text));
+        } catch (NumberFormatException ignored) {
+            throw new IllegalArgumentException("no " + type.getSimpleName() + " named " + text);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E> & IntEnum> Table<E> table(Class<E> type) {
+        validateObjectNotNull(type, "enum type");
+        return (Table<E>) TABLES.get(type);
+    }
+
+    private static class Table<E extends Enum<E> & IntEnum> {
+
+        // values are small positive ints, so a dense array indexed by value wastes at most a few slots
+        private final E[] byValue;
+        private final Map<String, E> byName;
+
+        @SuppressWarnings("unchecked")
+        private Table(Class<E> type) {
+            E[] constants = type.getEnumConstants();
+            int max = 0;
+            for (E e : constants) {
+                if (e.getValue() < 0) throw new IllegalStateException(type.getName() + " value " + e.getValue() + " is negative");
+                max = Math.max(max, e.getValue());
+            }
+            this.byValue = (E[]) Array.newInstance(type, max + 1);
+            Map<String, E> names = new HashMap<>();
+            for (E e : constants) {
+                if (byValue[e.getValue()] != null) {
+                    throw new IllegalStateException(type.getName() + " value " + e.getValue() + " is taken by " + byValue[e.getValue()]);
+                }
+                byValue[e.getValue()] = e;
+                names.put(e.name(), e);
+            }
+            this.byName = Collections.unmodifiableMap(names);
+        }
+
+        private E byValue(int value) {
+            return value >= 0 && value < byValue.length ? byValue[value] : null;
+        }
+
+        private E byName(String name) {
+            return byName.get(name);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bosh.rbac.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import lombok.Getter;
 
 import static org.mib.common.validator.Validator.validateIntPositive;
@@ -14,4 +15,16 @@ public enum ResourceType implements IntEnum {
         validateIntPositive(value, "resource type value");
         this.value = value;
     }
+
+    /**
+     * @return resource type of the value, null if there is none
+     */
+    public static ResourceType valueOf(int value) {
+        return IntEnums.valueOf(ResourceType.class, value);
+    }
+
+    @JsonCreator
+    public static ResourceType fromJson(Object json) {
+        return IntEnums.fromJson(ResourceType.class, json);
+    }
 }
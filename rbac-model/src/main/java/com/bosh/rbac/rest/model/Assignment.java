@@ -0,0 +1,30 @@
+package com.bosh.rbac.rest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * one item of a bulk assignment, a role to a user, a policy to a user or a policy to a role, so exactly two of the ids
+ * are set.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Assignment {
+    private String userId;
+    private Long roleId;
+    private Long policyId;
+
+    public static Assignment userRole(String userId, long roleId) {
+        return new Assignment(userId, roleId, null);
+    }
+
+    public static Assignment userPolicy(String userId, long policyId) {
+        return new Assignment(userId, null, policyId);
+    }
+
+    public static Assignment rolePolicy(long roleId, long policyId) {
+        return new Assignment(null, roleId, policyId);
+    }
+}
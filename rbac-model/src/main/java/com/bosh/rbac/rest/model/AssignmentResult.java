@@ -0,0 +1,26 @@
+package com.bosh.rbac.rest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * result of a single assignment or one item of a bulk assignment, message tells why it is {@link Outcome#NOT_FOUND} or {@link Outcome#INVALID}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AssignmentResult {
+    private Assignment assignment;
+    private Outcome outcome;
+    private String message;
+
+    public enum Outcome {
+        ASSIGNED,
+        UNASSIGNED,
+        // already assigned or not assigned, or repeated in the same request
+        UNCHANGED,
+        NOT_FOUND,
+        INVALID
+    }
+}
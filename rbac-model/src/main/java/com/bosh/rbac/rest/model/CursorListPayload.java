@@ -0,0 +1,21 @@
+package com.bosh.rbac.rest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * page of a keyset listing. next is an opaque token to pass back as the cursor for the following page, and is null on
+ * the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorListPayload<T> {
+    private List<T> list;
+    private String next;
+}
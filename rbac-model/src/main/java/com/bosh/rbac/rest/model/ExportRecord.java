@@ -0,0 +1,55 @@
+package com.bosh.rbac.rest.model;
+
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Role;
+import com.bosh.rbac.model.User;
+import com.bosh.rbac.model.UserRole;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * one line of an export, a row of users, roles, policies, users_roles or entities_policies with exactly one of the
+ * fields set, e.g. {"role":{...}}. rows keep their database ids, assignments refer to them.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExportRecord {
+    private User user;
+    private Role role;
+    private Policy policy;
+    private UserRole userRole;
+    private EntityPolicy entityPolicy;
+
+    public static ExportRecord of(User user) {
+        ExportRecord record = new ExportRecord();
+        record.setUser(user);
+        return record;
+    }
+
+    public static ExportRecord of(Role role) {
+        ExportRecord record = new ExportRecord();
+        record.setRole(role);
+        return record;
+    }
+
+    public static ExportRecord of(Policy policy) {
+        ExportRecord record = new ExportRecord();
+        record.setPolicy(policy);
+        return record;
+    }
+
+    public static ExportRecord of(UserRole userRole) {
+        ExportRecord record = new ExportRecord();
+        record.setUserRole(userRole);
+        return record;
+    }
+
+    public static ExportRecord of(EntityPolicy entityPolicy) {
+        ExportRecord record = new ExportRecord();
+        record.setEntityPolicy(entityPolicy);
+        return record;
+    }
+}
@@ -0,0 +1,20 @@
+package com.bosh.rbac.rest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * progress of an import. committedLines counts the lines of the input written so far including the ones skipped, an
+ * import stopped by an error resumes by skipping that many lines.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResult {
+    private long committedLines;
+    private long importedRecords;
+    private boolean complete;
+    // why the import stopped, null if complete
+    private String error;
+}
@@ -0,0 +1,60 @@
+package com.bosh.rbac.bean;
+
+import com.bosh.rbac.datasource.RoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class DataSourceBean {
+
+    /**
+     * pool of spring.datasource, taking every write
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * pool of the replica configured by rbac.replica.datasource.*, e.g. jdbc-url, username and maximum-pool-size
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rbac.replica.enabled", havingValue = "true")
+    @ConfigurationProperties("rbac.replica.datasource")
+    public HikariDataSource replicaDataSource() {
+        return new HikariDataSource();
+    }
+
+    /**
+     * pool of the primary for exports configured by rbac.export.datasource.*, whose url turns on server side cursors
+     * that would otherwise make every statement a server prepared one
+     */
+    @Bean
+    @ConditionalOnProperty(name = "rbac.export.cursorFetch.enabled", havingValue = "true")
+    @ConfigurationProperties("rbac.export.datasource")
+    public HikariDataSource exportDataSource() {
+        return new HikariDataSource();
+    }
+
+    /**
+     * the data source everything uses, routing reads marked by {@link com.bosh.rbac.datasource.ReadRoute} to the
+     * replica or the export pool
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replica,
+                                 @Qualifier("exportDataSource") ObjectProvider<DataSource> export) {
+        return new RoutingDataSource(primary, replica.getIfAvailable(), export.getIfAvailable());
+    }
+}
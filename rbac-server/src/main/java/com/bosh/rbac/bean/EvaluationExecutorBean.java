@@ -0,0 +1,31 @@
+package com.bosh.rbac.bean;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.mib.common.validator.Validator.validateIntPositive;
+
+@Configuration
+public class EvaluationExecutorBean {
+
+    /**
+     * bounded pool for evaluating resource accesses of large auth requests concurrently, tasks are run by the
+     * submitting thread once the queue is full
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService evaluationExecutor(@Value("${rbac.authorization.parallel.threads:8}") int threads,
+                                              @Value("${rbac.authorization.parallel.queueSize:1024}") int queueSize) {
+        validateIntPositive(threads, "evaluation threads");
+        validateIntPositive(queueSize, "evaluation queue size");
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("rbac-eval-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
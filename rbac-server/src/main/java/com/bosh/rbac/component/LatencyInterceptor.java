@@ -0,0 +1,33 @@
+package com.bosh.rbac.component;
+
+import com.bosh.rbac.metrics.Latencies;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * records latencies of rest endpoints as rest.{controller}.{method}, failed requests included
+ */
+@Component
+public class LatencyInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = LatencyInterceptor.class.getName() + ".start";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (!(start instanceof Long) || !(handler instanceof HandlerMethod)) return;
+        HandlerMethod method = (HandlerMethod) handler;
+        Latencies.record("rest." + method.getBeanType().getSimpleName() + "." + method.getMethod().getName(),
+                System.nanoTime() - (Long) start);
+    }
+}
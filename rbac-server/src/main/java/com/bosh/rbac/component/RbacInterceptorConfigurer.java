@@ -10,9 +10,12 @@ public class RbacInterceptorConfigurer implements WebMvcConfigurer {
 
     @Autowired
     private RbacContextProcessor contextProcessor;
+    @Autowired
+    private LatencyInterceptor latencyInterceptor;
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(latencyInterceptor);
         registry.addInterceptor(contextProcessor);
     }
 }
@@ -1,10 +1,12 @@
 package com.bosh.rbac.component;
 
 import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.datasource.ReplicaRouting;
 import com.bosh.rbac.model.User;
 import com.bosh.rbac.rest.model.Response;
 import com.bosh.rbac.rest.model.Status;
 import com.bosh.rbac.service.EntityReadService;
+import com.bosh.rbac.service.cache.AuthenticatedUserCache;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.mib.rest.exception.BadRequestException;
@@ -13,22 +15,42 @@ import org.mib.rest.exception.ResourceNotFoundException;
 import org.mib.rest.exception.UnauthorizedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.Callable;
 import java.util.function.Supplier;
 
+import static org.mib.common.validator.Validator.validateLongPositive;
+
 @Slf4j
 @Component
 public class RestAPIWrapper {
 
     static final Object EMPTY = new Object();
+    private static final String STREAM_TIMEOUT_KEY = RestAPIWrapper.class.getName() + ".streamTimeout";
 
     private final EntityReadService entityReadService;
+    private final AuthenticatedUserCache userCache;
+    private final ReplicaRouting replicaRouting;
 
     @Autowired
-    public RestAPIWrapper(final EntityReadService entityReadService) {
+    public RestAPIWrapper(final EntityReadService entityReadService, final AuthenticatedUserCache userCache,
+                          final ReplicaRouting replicaRouting) {
         this.entityReadService = entityReadService;
+        this.userCache = userCache;
+        this.replicaRouting = replicaRouting;
     }
 
     public ResponseEntity<Response<Object>> wrap(Runnable runnable) {
@@ -38,6 +60,42 @@ public class RestAPIWrapper {
         });
     }
 
+    /**
+     * like {@link #wrap(Supplier)} but answers the body streamed as is with the media type given, failures before
+     * streaming starts are answered the same as by wrap
+     */
+    public ResponseEntity<?> stream(Supplier<StreamingResponseBody> supplier, MediaType mediaType) {
+        ResponseEntity<Response<StreamingResponseBody>> wrapped = wrap(supplier);
+        if (!wrapped.getStatusCode().is2xxSuccessful()) return wrapped;
+        return ResponseEntity.ok().contentType(mediaType).body(wrapped.getBody().getBody());
+    }
+
+    /**
+     * like {@link #stream(Supplier, MediaType)} but the streaming may take as long as the timeout given, instead of
+     * spring.mvc.async.request-timeout meant for every other async request
+     */
+    public ResponseEntity<?> stream(Supplier<StreamingResponseBody> supplier, MediaType mediaType, long timeoutMillis) {
+        validateLongPositive(timeoutMillis, "stream timeout");
+        RequestAttributes attributes = RequestContextHolder.currentRequestAttributes();
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+        asyncManager.registerCallableInterceptor(STREAM_TIMEOUT_KEY, new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest webRequest, Callable<T> task) {
+                // async processing starts right after this, with the timeout the request has by then
+                if (webRequest instanceof AsyncWebRequest) ((AsyncWebRequest) webRequest).setTimeout(timeoutMillis);
+            }
+        });
+        return stream(supplier, mediaType);
+    }
+
+    /**
+     * like {@link #wrap(Supplier)} for reads tolerating replica lag, which go to the replica if there is one
+     */
+    public <T> ResponseEntity<Response<T>> read(Supplier<T> supplier) {
+        return wrap(() -> replicaRouting.read(supplier));
+    }
+
     public <T> ResponseEntity<Response<T>> wrap(Supplier<T> supplier) {
         Response<T> response = new Response<>();
         try {
@@ -73,8 +131,16 @@ public class RestAPIWrapper {
         if (RbacScope.getUser() != null) return;
         String userId = RbacScope.getUserId();
         if (StringUtils.isBlank(userId)) throw new UnauthorizedException("no user in context");
-        User user = entityReadService.getUser(userId);
+        User user = replicaRouting.read(() -> userCache.isEnabled() ? getCachedUser(userId)
+                : entityReadService.getUser(userId));
         if (user == null) throw new UnauthorizedException("unrecognized user " + userId);
         RbacScope.setUser(user);
     }
+
+    private User getCachedUser(String userId) {
+        User user = userCache.getUser(userId);
+        // unknown users get the same response as from the uncached lookup
+        if (user == null) throw new ResourceNotFoundException("no user found for " + userId);
+        return user;
+    }
 }
@@ -1,6 +1,10 @@
 package com.bosh.rbac.context;
 
 import com.bosh.rbac.model.User;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import static org.mib.common.validator.Validator.validateLongPositive;
 import static org.mib.common.validator.Validator.validateObjectNotNull;
@@ -17,6 +21,13 @@ public class RbacScope {
         return context;
     }
 
+    /**
+     * @return rbac context of the thread, null if none is set
+     */
+    public static RbacContext findContext() {
+        return CONTEXT_TL.get();
+    }
+
     public static RbacContext clearContext() {
         RbacContext context = CONTEXT_TL.get();
         if (context != null) CONTEXT_TL.remove();
@@ -45,4 +56,49 @@ public class RbacScope {
         validateLongPositive(user.getId(), "user id");
         getContext().setUser(user);
     }
+
+    /**
+     * @return task running with the rbac context and logging MDC of the calling thread, restoring the ones of the
+     * executing thread afterwards
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        validateObjectNotNull(task, "task");
+        RbacContext context = CONTEXT_TL.get();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        return () -> {
+            RbacContext previousContext = CONTEXT_TL.get();
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            restore(context, mdc);
+            try {
+                return task.call();
+            } finally {
+                restore(previousContext, previousMdc);
+            }
+        };
+    }
+
+    public static Runnable wrap(Runnable task) {
+        validateObjectNotNull(task, "task");
+        Callable<Void> wrapped = wrap(() -> {
+            task.run();
+            return null;
+        });
+        return () -> {
+            try {
+                wrapped.call();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Exception e) {
+                // runnables throw no checked exceptions
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static void restore(RbacContext context, Map<String, String> mdc) {
+        if (context == null) CONTEXT_TL.remove();
+        else CONTEXT_TL.set(context);
+        if (mdc == null) MDC.clear();
+        else MDC.setContextMap(mdc);
+    }
 }
@@ -3,34 +3,49 @@ package com.bosh.rbac.controller;
 import com.bosh.rbac.component.RestAPIWrapper;
 import com.bosh.rbac.model.Policy;
 import com.bosh.rbac.model.Role;
+import com.bosh.rbac.rest.model.Assignment;
+import com.bosh.rbac.rest.model.AssignmentResult;
 import com.bosh.rbac.rest.model.DescriptionUpdate;
+import com.bosh.rbac.rest.model.ImportResult;
 import com.bosh.rbac.rest.model.Response;
 import com.bosh.rbac.service.AdminService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStream;
+import java.util.List;
+
 @RestController
 @RequestMapping("/admin")
 @Api(value = "admin APIs", description = "APIs for system administrator")
 public class AdminController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson; charset=utf-8");
+
     private final RestAPIWrapper wrapper;
     private final AdminService adminService;
+    private final long exportTimeoutMillis;
 
     @Autowired
-    public AdminController(final RestAPIWrapper wrapper, final AdminService adminService) {
+    public AdminController(final RestAPIWrapper wrapper, final AdminService adminService,
+                           @Value("${rbac.export.timeoutMillis:3600000}") final long exportTimeoutMillis) {
         this.wrapper = wrapper;
         this.adminService = adminService;
+        this.exportTimeoutMillis = exportTimeoutMillis;
     }
 
     @PostMapping(value = "/roles", produces = "application/json; charset=utf-8")
@@ -93,7 +108,7 @@ public class AdminController {
 
     @PostMapping(value = "/roles/{roleId}/users/{userId}", produces = "application/json; charset=utf-8")
     @ApiOperation(value = "assign role to user", produces = "application/json; charset=utf-8")
-    public ResponseEntity<Response<Object>> assignRoleToUser(
+    public ResponseEntity<Response<AssignmentResult>> assignRoleToUser(
             @ApiParam(required = true, value = "role id")
             @PathVariable long roleId,
             @ApiParam(required = true, value = "user id")
@@ -104,7 +119,7 @@ public class AdminController {
 
     @DeleteMapping(value = "/roles/{roleId}/users/{userId}", produces = "application/json; charset=utf-8")
     @ApiOperation(value = "unassign role from user", produces = "application/json; charset=utf-8")
-    public ResponseEntity<Response<Object>> unassignRoleFromUser(
+    public ResponseEntity<Response<AssignmentResult>> unassignRoleFromUser(
             @ApiParam(required = true, value = "role id")
             @PathVariable long roleId,
             @ApiParam(required = true, value = "user id")
@@ -115,7 +130,7 @@ public class AdminController {
 
     @PostMapping(value = "/policies/{policyId}/users/{userId}", produces = "application/json; charset=utf-8")
     @ApiOperation(value = "assign policy to user", produces = "application/json; charset=utf-8")
-    public ResponseEntity<Response<Object>> assignPolicyToUser(
+    public ResponseEntity<Response<AssignmentResult>> assignPolicyToUser(
             @ApiParam(required = true, value = "policy id")
             @PathVariable long policyId,
             @ApiParam(required = true, value = "user id")
@@ -126,7 +141,7 @@ public class AdminController {
 
     @DeleteMapping(value = "/policies/{policyId}/users/{userId}", produces = "application/json; charset=utf-8")
     @ApiOperation(value = "unassign policy from user", produces = "application/json; charset=utf-8")
-    public ResponseEntity<Response<Object>> unassignPolicyFromUser(
+    public ResponseEntity<Response<AssignmentResult>> unassignPolicyFromUser(
             @ApiParam(required = true, value = "policy id")
             @PathVariable long policyId,
             @ApiParam(required = true, value = "user id")
@@ -137,7 +152,7 @@ public class AdminController {
 
     @PostMapping(value = "/policies/{policyId}/roles/{roleId}", produces = "application/json; charset=utf-8")
     @ApiOperation(value = "assign policy to role", produces = "application/json; charset=utf-8")
-    public ResponseEntity<Response<Object>> assignPolicyToRole(
+    public ResponseEntity<Response<AssignmentResult>> assignPolicyToRole(
             @ApiParam(required = true, value = "policy id")
             @PathVariable long policyId,
             @ApiParam(required = true, value = "role id")
@@ -148,7 +163,7 @@ public class AdminController {
 
     @DeleteMapping(value = "/policies/{policyId}/roles/{roleId}", produces = "application/json; charset=utf-8")
     @ApiOperation(value = "unassign policy from role", produces = "application/json; charset=utf-8")
-    public ResponseEntity<Response<Object>> unassignPolicyFromRole(
+    public ResponseEntity<Response<AssignmentResult>> unassignPolicyFromRole(
             @ApiParam(required = true, value = "policy id")
             @PathVariable long policyId,
             @ApiParam(required = true, value = "role id")
@@ -156,4 +171,40 @@ public class AdminController {
     ) {
         return wrapper.wrap(() -> adminService.unassignPolicyFromRole(roleId, policyId));
     }
+
+    @PostMapping(value = "/assignments/assign", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "assign roles and policies in bulk", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<List<AssignmentResult>>> assign(
+            @ApiParam(required = true, value = "assignments body")
+            @RequestBody List<Assignment> assignments
+    ) {
+        return wrapper.wrap(() -> adminService.assign(assignments));
+    }
+
+    // a post as bodies of deletes are dropped by some proxies and clients
+    @PostMapping(value = "/assignments/unassign", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "unassign roles and policies in bulk", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<List<AssignmentResult>>> unassign(
+            @ApiParam(required = true, value = "assignments body")
+            @RequestBody List<Assignment> assignments
+    ) {
+        return wrapper.wrap(() -> adminService.unassign(assignments));
+    }
+
+    @GetMapping(value = "/export")
+    @ApiOperation(value = "export users, roles, policies and their assignments as ndjson", produces = "application/x-ndjson")
+    public ResponseEntity<?> export() {
+        return wrapper.stream(adminService::export, NDJSON, exportTimeoutMillis);
+    }
+
+    @PostMapping(value = "/import", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "import ndjson of the export format, resumable by skipping the lines committed",
+            produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<ImportResult>> importRecords(
+            @ApiParam(value = "number of lines committed by a previous attempt")
+            @RequestParam(defaultValue = "0") long skip,
+            InputStream body
+    ) {
+        return wrapper.wrap(() -> adminService.importRecords(body, skip));
+    }
 }
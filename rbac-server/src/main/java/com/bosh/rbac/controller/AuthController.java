@@ -33,6 +33,6 @@ public class AuthController {
             @ApiParam(required = true, value = "resources accesses body")
             @RequestBody AuthRequest authRequest
     ) {
-        return wrapper.wrap(() -> authorizationService.authorize(authRequest));
+        return wrapper.read(() -> authorizationService.authorize(authRequest));
     }
 }
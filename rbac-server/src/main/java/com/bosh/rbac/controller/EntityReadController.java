@@ -6,8 +6,10 @@ import com.bosh.rbac.model.EntityType;
 import com.bosh.rbac.model.Policy;
 import com.bosh.rbac.model.Role;
 import com.bosh.rbac.model.User;
+import com.bosh.rbac.rest.model.CursorListPayload;
 import com.bosh.rbac.rest.model.Response;
 import com.bosh.rbac.service.EntityReadService;
+import com.bosh.rbac.service.ListTotal;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -39,7 +41,7 @@ public class EntityReadController {
             @ApiParam(required = true, value = "user id")
             @PathVariable String userId
     ) {
-        return wrapper.wrap(() -> entityReadService.getUser(userId));
+        return wrapper.read(() -> entityReadService.getUser(userId));
     }
 
     @GetMapping(value = "/users", produces = "application/json; charset=utf-8")
@@ -50,9 +52,24 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit,
             @ApiParam("search query by username")
-            @RequestParam String search
+            @RequestParam String search,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
     ) {
-        return wrapper.wrap(() -> entityReadService.listUsers(offset, limit, search));
+        return wrapper.read(() -> entityReadService.listUsers(offset, limit, search, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/users", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list users page after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<User>>> listUsersAfter(
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("search query by username")
+            @RequestParam(required = false) String search
+    ) {
+        return wrapper.read(() -> entityReadService.listUsersAfter(cursor, limit, search));
     }
 
     @GetMapping(value = "/roles/{roleId}/users", produces = "application/json; charset=utf-8")
@@ -63,9 +80,24 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing offset")
             @RequestParam long offset,
             @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
+    ) {
+        return wrapper.read(() -> entityReadService.listRoleUsers(roleId, offset, limit, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/roles/{roleId}/users", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list users assigned with the role after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<User>>> listUsersForRoleAfter(
+            @ApiParam(required = true, value = "role id")
+            @PathVariable long roleId,
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit
     ) {
-        return wrapper.wrap(() -> entityReadService.listRoleUsers(roleId, offset, limit));
+        return wrapper.read(() -> entityReadService.listRoleUsersAfter(roleId, cursor, limit));
     }
 
     @GetMapping(value = "/roles/{roleId}", produces = "application/json; charset=utf-8")
@@ -74,7 +106,7 @@ public class EntityReadController {
             @ApiParam(required = true, value = "role id")
             @PathVariable long roleId
     ) {
-        return wrapper.wrap(() -> entityReadService.getRole(roleId));
+        return wrapper.read(() -> entityReadService.getRole(roleId));
     }
 
     @GetMapping(value = "/roles", produces = "application/json; charset=utf-8")
@@ -85,9 +117,24 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit,
             @ApiParam("search query by role name")
-            @RequestParam String search
+            @RequestParam String search,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
     ) {
-        return wrapper.wrap(() -> entityReadService.listRoles(offset, limit, search));
+        return wrapper.read(() -> entityReadService.listRoles(offset, limit, search, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/roles", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list roles page after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<Role>>> listRolesAfter(
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("search query by role name")
+            @RequestParam(required = false) String search
+    ) {
+        return wrapper.read(() -> entityReadService.listRolesAfter(cursor, limit, search));
     }
 
     @GetMapping(value = "/users/{userId}/roles", produces = "application/json; charset=utf-8")
@@ -98,9 +145,24 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing offset")
             @RequestParam long offset,
             @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
+    ) {
+        return wrapper.read(() -> entityReadService.listUserRoles(userId, offset, limit, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/users/{userId}/roles", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list roles assigned to the user after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<Role>>> listRolesForUserAfter(
+            @ApiParam(required = true, value = "user id")
+            @PathVariable long userId,
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit
     ) {
-        return wrapper.wrap(() -> entityReadService.listUserRoles(userId, offset, limit));
+        return wrapper.read(() -> entityReadService.listUserRolesAfter(userId, cursor, limit));
     }
 
     @GetMapping(value = "/policies/{policyId}", produces = "application/json; charset=utf-8")
@@ -109,7 +171,7 @@ public class EntityReadController {
             @ApiParam(required = true, value = "policy id")
             @PathVariable long policyId
     ) {
-        return wrapper.wrap(() -> entityReadService.getPolicy(policyId));
+        return wrapper.read(() -> entityReadService.getPolicy(policyId));
     }
 
     @GetMapping(value = "/policies", produces = "application/json; charset=utf-8")
@@ -120,9 +182,24 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit,
             @ApiParam("search query by policy name")
-            @RequestParam String search
+            @RequestParam String search,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
     ) {
-        return wrapper.wrap(() -> entityReadService.listPolicies(offset, limit, search));
+        return wrapper.read(() -> entityReadService.listPolicies(offset, limit, search, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/policies", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list policies page after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<Policy>>> listPoliciesAfter(
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("search query by policy name")
+            @RequestParam(required = false) String search
+    ) {
+        return wrapper.read(() -> entityReadService.listPoliciesAfter(cursor, limit, search));
     }
 
     @GetMapping(value = "/users/{userId}/policies", produces = "application/json; charset=utf-8")
@@ -133,9 +210,24 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing offset")
             @RequestParam long offset,
             @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
+    ) {
+        return wrapper.read(() -> entityReadService.listEntityPolicies(new Entity(EntityType.User, userId), offset, limit, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/users/{userId}/policies", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list policies assigned to the user after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<Policy>>> listPoliciesForUserAfter(
+            @ApiParam(required = true, value = "user id")
+            @PathVariable long userId,
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit
     ) {
-        return wrapper.wrap(() -> entityReadService.listEntityPolicies(new Entity(EntityType.User, userId), offset, limit));
+        return wrapper.read(() -> entityReadService.listEntityPoliciesAfter(new Entity(EntityType.User, userId), cursor, limit));
     }
 
     @GetMapping(value = "/roles/{roleId}/policies", produces = "application/json; charset=utf-8")
@@ -146,9 +238,24 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing offset")
             @RequestParam long offset,
             @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
+    ) {
+        return wrapper.read(() -> entityReadService.listEntityPolicies(new Entity(EntityType.Role, roleId), offset, limit, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/roles/{roleId}/policies", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list policies assigned to the role after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<Policy>>> listPoliciesForRoleAfter(
+            @ApiParam(required = true, value = "role id")
+            @PathVariable long roleId,
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit
     ) {
-        return wrapper.wrap(() -> entityReadService.listEntityPolicies(new Entity(EntityType.Role, roleId), offset, limit));
+        return wrapper.read(() -> entityReadService.listEntityPoliciesAfter(new Entity(EntityType.Role, roleId), cursor, limit));
     }
 
     @GetMapping(value = "/policies/{policyId}/entities", produces = "application/json; charset=utf-8")
@@ -159,8 +266,23 @@ public class EntityReadController {
             @ApiParam(required = true, value = "listing offset")
             @RequestParam long offset,
             @ApiParam(required = true, value = "listing limit")
+            @RequestParam long limit,
+            @ApiParam("total of the listing, one of none, exact (default) or estimate")
+            @RequestParam(required = false) String total
+    ) {
+        return wrapper.read(() -> entityReadService.listPolicyEntities(policyId, offset, limit, ListTotal.parse(total)));
+    }
+
+    @GetMapping(value = "/policies/{policyId}/entities", params = "cursor", produces = "application/json; charset=utf-8")
+    @ApiOperation(value = "list entities assigned with the policy after cursor", produces = "application/json; charset=utf-8")
+    public ResponseEntity<Response<CursorListPayload<Entity>>> listEntitiesForPolicyAfter(
+            @ApiParam(required = true, value = "policy id")
+            @PathVariable long policyId,
+            @ApiParam(required = true, value = "continuation token of the previous page, empty for the first page")
+            @RequestParam String cursor,
+            @ApiParam(required = true, value = "listing limit")
             @RequestParam long limit
     ) {
-        return wrapper.wrap(() -> entityReadService.listPolicyEntities(policyId, offset, limit));
+        return wrapper.read(() -> entityReadService.listPolicyEntitiesAfter(policyId, cursor, limit));
     }
 }
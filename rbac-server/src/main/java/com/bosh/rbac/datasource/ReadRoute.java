@@ -0,0 +1,86 @@
+package com.bosh.rbac.datasource;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * where statements of the current thread run, primary unless the thread is inside {@link #replica} or {@link #export}.
+ * connections bound to a transaction keep the database they were opened on, so routing only matters outside of
+ * transactions.
+ */
+public class ReadRoute {
+
+    private enum Target {
+        PRIMARY,
+        REPLICA,
+        EXPORT
+    }
+
+    private static final ThreadLocal<Target> TARGET_TL = new ThreadLocal<>();
+
+    private ReadRoute() {}
+
+    public static boolean isReplica() {
+        return TARGET_TL.get() == Target.REPLICA;
+    }
+
+    public static boolean isExport() {
+        return TARGET_TL.get() == Target.EXPORT;
+    }
+
+    /**
+     * runs reads of the supplier on the replica, restoring the route of the thread afterwards
+     */
+    public static <T> T replica(Supplier<T> supplier) {
+        return route(Target.REPLICA, supplier);
+    }
+
+    /**
+     * runs the supplier on the primary, e.g. loads of caches that must not keep what the replica hasn't caught up with
+     */
+    public static <T> T primary(Supplier<T> supplier) {
+        return route(Target.PRIMARY, supplier);
+    }
+
+    /**
+     * runs the supplier on the export pool of the primary, whose connections fetch rows by server side cursors
+     */
+    public static <T> T export(Supplier<T> supplier) {
+        return route(Target.EXPORT, supplier);
+    }
+
+    /**
+     * @return task running with the route of the calling thread
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        validateObjectNotNull(task, "task");
+        Target target = TARGET_TL.get();
+        return () -> {
+            Target previous = TARGET_TL.get();
+            set(target);
+            try {
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    private static <T> T route(Target target, Supplier<T> supplier) {
+        validateObjectNotNull(supplier, "supplier");
+        Target previous = TARGET_TL.get();
+        set(target);
+        try {
+            return supplier.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    private static void set(Target target) {
+        if (target == null || target == Target.PRIMARY) TARGET_TL.remove();
+        else TARGET_TL.set(target);
+    }
+}
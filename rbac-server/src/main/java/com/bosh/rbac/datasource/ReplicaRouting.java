@@ -0,0 +1,79 @@
+package com.bosh.rbac.datasource;
+
+import com.bosh.rbac.context.RbacContext;
+import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.mib.metrics.MetricsScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+
+/**
+ * sends reads tolerating replica lag to the replica. users who changed something through this instance read from the
+ * primary for a fixed window afterwards, so they see their own writes as long as the replica catches up within it.
+ * replica lag is not measured: a replica lagging beyond the window keeps serving reads, and writes made through other
+ * instances are not seen until it catches up.
+ */
+@Slf4j
+@Component
+public class ReplicaRouting {
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> recentWriters;
+
+    @Autowired
+    public ReplicaRouting(@Value("${rbac.replica.enabled:false}") final boolean enabled,
+                          @Value("${rbac.replica.primaryPinMillis:1000}") final long primaryPinMillis,
+                          @Value("${rbac.replica.maxRecentWriters:10000}") final long maxRecentWriters) {
+        validateLongPositive(primaryPinMillis, "replica primary pin window");
+        validateLongPositive(maxRecentWriters, "replica max recent writers");
+        this.enabled = enabled;
+        this.recentWriters = CacheBuilder.newBuilder()
+                .maximumSize(maxRecentWriters)
+                .expireAfterWrite(primaryPinMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * runs the reads of the supplier on the replica, or on the primary if the user of the context wrote recently
+     */
+    public <T> T read(Supplier<T> supplier) {
+        if (!enabled) return supplier.get();
+        String userId = currentUserId();
+        if (userId != null && recentWriters.getIfPresent(userId) != null) {
+            MetricsScope.getMetrics().addCounter("replicaRouting.primary", 1);
+            return ReadRoute.primary(supplier);
+        }
+        MetricsScope.getMetrics().addCounter("replicaRouting.replica", 1);
+        return ReadRoute.replica(supplier);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(RbacChangeEvent event) {
+        if (!enabled) return;
+        // listeners run on the thread of the change, after it is committed
+        String userId = currentUserId();
+        if (userId == null) return;
+        log.debug("reading from primary for {} after {}", userId, event);
+        recentWriters.put(userId, Boolean.TRUE);
+    }
+
+    private static String currentUserId() {
+        RbacContext context = RbacScope.findContext();
+        return context == null || StringUtils.isBlank(context.getUserId()) ? null : context.getUserId();
+    }
+}
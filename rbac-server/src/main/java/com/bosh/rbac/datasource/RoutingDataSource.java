@@ -0,0 +1,47 @@
+package com.bosh.rbac.datasource;
+
+import com.google.common.collect.Maps;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * hands out connections of the replica or of the export pool to threads routed there by {@link ReadRoute}, of the
+ * primary otherwise or when there is no such data source
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+    private static final String EXPORT = "export";
+
+    private final boolean hasReplica;
+    private final boolean hasExport;
+
+    public RoutingDataSource(final DataSource primary, final DataSource replica) {
+        this(primary, replica, null);
+    }
+
+    public RoutingDataSource(final DataSource primary, final DataSource replica, final DataSource export) {
+        validateObjectNotNull(primary, "primary data source");
+        Map<Object, Object> targets = Maps.newHashMap();
+        targets.put(PRIMARY, primary);
+        if (replica != null) targets.put(REPLICA, replica);
+        if (export != null) targets.put(EXPORT, export);
+        this.hasReplica = replica != null;
+        this.hasExport = export != null;
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        // no fallback to the primary for unknown keys, every key is known
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (hasExport && ReadRoute.isExport()) return EXPORT;
+        return hasReplica && ReadRoute.isReplica() ? REPLICA : PRIMARY;
+    }
+}
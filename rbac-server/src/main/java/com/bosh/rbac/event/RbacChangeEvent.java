@@ -0,0 +1,74 @@
+package com.bosh.rbac.event;
+
+import com.bosh.rbac.model.EntityType;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.context.ApplicationEvent;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * published by admin operations once roles, policies or their assignments have changed, so in-process views of the
+ * rbac data could be refreshed or invalidated. ids not relevant to the change type are left as 0.
+ */
+@Getter
+@ToString
+public class RbacChangeEvent extends ApplicationEvent {
+
+    public enum Type {
+        USER_UPDATED,
+        USER_DELETED,
+        ROLE_CREATED,
+        ROLE_UPDATED,
+        ROLE_DELETED,
+        POLICY_CREATED,
+        POLICY_UPDATED,
+        POLICY_DELETED,
+        USER_ROLE_ASSIGNED,
+        USER_ROLE_UNASSIGNED,
+        ENTITY_POLICY_ASSIGNED,
+        ENTITY_POLICY_UNASSIGNED,
+        // rows of any kind were written in bulk, with no id
+        IMPORTED
+    }
+
+    private final Type type;
+    private final long userId;
+    private final long roleId;
+    private final long policyId;
+
+    private RbacChangeEvent(final Object source, final Type type, final long userId, final long roleId, final long policyId) {
+        super(source);
+        validateObjectNotNull(type, "change type");
+        this.type = type;
+        this.userId = userId;
+        this.roleId = roleId;
+        this.policyId = policyId;
+    }
+
+    public static RbacChangeEvent imported(Object source) {
+        return new RbacChangeEvent(source, Type.IMPORTED, 0, 0, 0);
+    }
+
+    public static RbacChangeEvent user(Object source, Type type, long userId) {
+        return new RbacChangeEvent(source, type, userId, 0, 0);
+    }
+
+    public static RbacChangeEvent role(Object source, Type type, long roleId) {
+        return new RbacChangeEvent(source, type, 0, roleId, 0);
+    }
+
+    public static RbacChangeEvent policy(Object source, Type type, long policyId) {
+        return new RbacChangeEvent(source, type, 0, 0, policyId);
+    }
+
+    public static RbacChangeEvent userRole(Object source, Type type, long userId, long roleId) {
+        return new RbacChangeEvent(source, type, userId, roleId, 0);
+    }
+
+    public static RbacChangeEvent entityPolicy(Object source, Type type, EntityType entityType, long entityId, long policyId) {
+        validateObjectNotNull(entityType, "entity type");
+        return entityType == EntityType.User ? new RbacChangeEvent(source, type, entityId, 0, policyId)
+                : new RbacChangeEvent(source, type, 0, entityId, policyId);
+    }
+}
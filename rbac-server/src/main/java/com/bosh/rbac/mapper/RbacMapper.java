@@ -1,5 +1,6 @@
 package com.bosh.rbac.mapper;
 
+import com.bosh.rbac.metrics.Latencies;
 import com.bosh.rbac.model.Entity;
 import com.bosh.rbac.model.EntityType;
 import com.bosh.rbac.model.Policy;
@@ -9,8 +10,10 @@ import com.bosh.rbac.model.EntityPolicy;
 import com.bosh.rbac.model.User;
 import com.bosh.rbac.model.UserRole;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import org.mib.metrics.Metrics;
 import org.mib.metrics.MetricsScope;
 import org.mib.rest.model.list.ListElementRequest;
@@ -21,8 +24,11 @@ import org.springframework.stereotype.Repository;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import static com.bosh.rbac.utils.Validator.validatePolicy;
+import static com.bosh.rbac.utils.Validator.validateRole;
 import static org.mib.common.validator.Validator.validateCollectionNotEmptyContainsNoNull;
 import static org.mib.common.validator.Validator.validateLongNotNegative;
 import static org.mib.common.validator.Validator.validateLongPositive;
@@ -35,6 +41,21 @@ public interface RbacMapper {
 
     Logger log = LoggerFactory.getLogger(RbacMapper.class);
 
+    /**
+     * records a call timed by {@link System#nanoTime} readings, in milliseconds on the metrics of the scope like every
+     * other timer and in nanoseconds on the latency histogram of the call
+     *
+     * @return metrics of the scope, for the counters of the call
+     */
+    static Metrics time(String name, long start, long end) {
+        long elapsed = end - start;
+        long endMillis = System.currentTimeMillis();
+        Metrics metrics = MetricsScope.getMetrics();
+        metrics.addTime(name, endMillis - TimeUnit.NANOSECONDS.toMillis(elapsed), endMillis, TimeUnit.MILLISECONDS);
+        Latencies.record("mapper." + name, elapsed);
+        return metrics;
+    }
+
     default int insertUser(User user) {
         validateObjectNotNull(user, "user");
         return insertUsers(Lists.newArrayList(user));
@@ -49,12 +70,11 @@ public interface RbacMapper {
             validateStringNotBlank(user.getUsername(), "username");
         });
         log.debug("inserting users {}...", users);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int inserted = _insertUsers(users);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("inserted {} users {}", inserted, users);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("insertUsers", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("insertUsers", start, end);
         metrics.addCounter("insertUsers", 1);
         metrics.addMetric("insertUsers.inserted", users.size());
         return inserted;
@@ -65,12 +85,11 @@ public interface RbacMapper {
     default User getUser(String userId) {
         validateStringNotBlank(userId, "user id");
         log.debug("retrieving user {}...", userId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         User user = _getUser(userId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("retrieved user {}", user);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getUser", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getUser", start, end);
         metrics.addCounter("getUser", 1);
         return user;
     }
@@ -80,16 +99,31 @@ public interface RbacMapper {
     default User getUserById(long id) {
         validateLongPositive(id, "user id");
         log.debug("retrieving user by pk {}...", id);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         User user = _getUserById(id);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("retrieved user {}", user);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getUserById", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getUserById", start, end);
         metrics.addCounter("getUserById", 1);
         return user;
     }
 
+    List<User> _getUsers(@Param("userIds") Collection<String> userIds);
+
+    default List<User> getUsers(Collection<String> userIds) {
+        validateCollectionNotEmptyContainsNoNull(userIds, "user ids");
+        userIds.forEach(userId -> validateStringNotBlank(userId, "user id"));
+        log.debug("retrieving users {}...", userIds);
+        long start = System.nanoTime();
+        List<User> users = _getUsers(userIds);
+        long end = System.nanoTime();
+        log.debug("retrieved {} users", users.size());
+        Metrics metrics = time("getUsers", start, end);
+        metrics.addCounter("getUsers", 1);
+        metrics.addMetric("getUsers.retrieved", users.size());
+        return users;
+    }
+
     List<User> _listUsers(@Param("ler") ListElementRequest ler);
 
     default List<User> listUsers(ListElementRequest ler) {
@@ -97,28 +131,43 @@ public interface RbacMapper {
         validateLongNotNegative(ler.getOffset(), "listing offset");
         validateLongNotNegative(ler.getLimit(), "listing limit");
         log.debug("listing users with params {}...", ler);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<User> users = _listUsers(ler);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("listed users {} with params {}", users, ler);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("listUsers", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("listUsers", start, end);
         metrics.addCounter("listUsers", 1);
         metrics.addMetric("listUsers.listed", users.size());
         return users;
     }
 
+    List<User> _listUsersAfter(@Param("ler") ListElementRequest ler, @Param("afterId") long afterId);
+
+    default List<User> listUsersAfter(ListElementRequest ler, long afterId) {
+        validateObjectNotNull(ler, "listing params");
+        validateLongNotNegative(afterId, "listing cursor id");
+        validateLongPositive(ler.getLimit(), "listing limit");
+        log.debug("listing users after {} with params {}...", afterId, ler);
+        long start = System.nanoTime();
+        List<User> users = _listUsersAfter(ler, afterId);
+        long end = System.nanoTime();
+        log.debug("listed users {} after {} with params {}", users, afterId, ler);
+        Metrics metrics = time("listUsersAfter", start, end);
+        metrics.addCounter("listUsersAfter", 1);
+        metrics.addMetric("listUsersAfter.listed", users.size());
+        return users;
+    }
+
     long _countUsers(@Param("ler") ListElementRequest ler);
 
     default long countUsers(ListElementRequest ler) {
         validateObjectNotNull(ler, "listing params");
         log.debug("counting users with params {}...", ler);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long result = _countUsers(ler);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("counted {} users with listing params {}", result, ler);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("countUsers", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("countUsers", start, end);
         metrics.addCounter("countUsers", 1);
         return result;
     }
@@ -129,12 +178,11 @@ public interface RbacMapper {
         validateCollectionNotEmptyContainsNoNull(userIds, "user id collection");
         userIds.forEach(userId -> validateStringNotBlank(userId, "user id"));
         log.debug("deleting users {}...", userIds);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deleteUsers(userIds);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} users", deleted);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deleteUsers", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deleteUsers", start, end);
         metrics.addCounter("deleteUsers", 1);
         metrics.addMetric("deleteUsers.deleted", deleted);
         return deleted;
@@ -146,12 +194,11 @@ public interface RbacMapper {
         validateObjectNotNull(role, "role");
         validateStringNotBlank(role.getName(), "role name");
         log.debug("inserting role {}...", role);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int inserted = _insertRole(role);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("inserted {} role {}", inserted, role);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("insertRole", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("insertRole", start, end);
         metrics.addCounter("insertRole", 1);
         metrics.addMetric("insertRole.inserted", inserted);
         return inserted;
@@ -162,16 +209,31 @@ public interface RbacMapper {
     default Role getRole(long roleId) {
         validateLongPositive(roleId, "role id");
         log.debug("retrieving role {}...", roleId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         Role role = _getRole(roleId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("retrieved role {}", role);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getRole", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getRole", start, end);
         metrics.addCounter("getRole", 1);
         return role;
     }
 
+    List<Role> _getRoles(@Param("roleIds") Collection<Long> roleIds);
+
+    default List<Role> getRoles(Collection<Long> roleIds) {
+        validateCollectionNotEmptyContainsNoNull(roleIds, "role ids");
+        roleIds.forEach(roleId -> validateLongPositive(roleId, "role id"));
+        log.debug("retrieving roles {}...", roleIds);
+        long start = System.nanoTime();
+        List<Role> roles = _getRoles(roleIds);
+        long end = System.nanoTime();
+        log.debug("retrieved {} roles", roles.size());
+        Metrics metrics = time("getRoles", start, end);
+        metrics.addCounter("getRoles", 1);
+        metrics.addMetric("getRoles.retrieved", roles.size());
+        return roles;
+    }
+
     List<Role> _listRoles(@Param("ler") ListElementRequest ler);
 
     default List<Role> listRoles(ListElementRequest ler) {
@@ -179,28 +241,43 @@ public interface RbacMapper {
         validateLongNotNegative(ler.getOffset(), "listing offset");
         validateLongNotNegative(ler.getLimit(), "listing limit");
         log.debug("listing roles with params {}...", ler);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<Role> roles = _listRoles(ler);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("listed roles {} with params {}", roles, ler);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("listRoles", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("listRoles", start, end);
         metrics.addCounter("listRoles", 1);
         metrics.addMetric("listRoles.listed", roles.size());
         return roles;
     }
 
+    List<Role> _listRolesAfter(@Param("ler") ListElementRequest ler, @Param("afterId") long afterId);
+
+    default List<Role> listRolesAfter(ListElementRequest ler, long afterId) {
+        validateObjectNotNull(ler, "listing params");
+        validateLongNotNegative(afterId, "listing cursor id");
+        validateLongPositive(ler.getLimit(), "listing limit");
+        log.debug("listing roles after {} with params {}...", afterId, ler);
+        long start = System.nanoTime();
+        List<Role> roles = _listRolesAfter(ler, afterId);
+        long end = System.nanoTime();
+        log.debug("listed roles {} after {} with params {}", roles, afterId, ler);
+        Metrics metrics = time("listRolesAfter", start, end);
+        metrics.addCounter("listRolesAfter", 1);
+        metrics.addMetric("listRolesAfter.listed", roles.size());
+        return roles;
+    }
+
     long _countRoles(@Param("ler") ListElementRequest ler);
 
     default long countRoles(ListElementRequest ler) {
         validateObjectNotNull(ler, "listing params");
         log.debug("counting roles with params {}...", ler);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long result = _countRoles(ler);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("counted {} roles with listing params {}", result, ler);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("countRoles", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("countRoles", start, end);
         metrics.addCounter("countRoles", 1);
         return result;
     }
@@ -211,12 +288,11 @@ public interface RbacMapper {
         validateObjectNotNull(role, "role");
         validateLongPositive(role.getId(), "role id");
         log.debug("updating role {}...", role);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int updated = _updateRole(role);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("updated role {}", role.getId());
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("updateRole", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("updateRole", start, end);
         metrics.addCounter("updateRole", 1);
         metrics.addMetric("updateRole.updated", updated);
         return updated;
@@ -228,12 +304,11 @@ public interface RbacMapper {
         validateCollectionNotEmptyContainsNoNull(roleIds, "role id collection");
         roleIds.forEach(roleId -> validateLongPositive(roleId, "role id"));
         log.debug("deleting roles {}...", roleIds);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deleteRoles(roleIds);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} roles", deleted);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deleteRoles", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deleteRoles", start, end);
         metrics.addCounter("deleteRoles", 1);
         metrics.addMetric("deleteRoles.deleted", deleted);
         return deleted;
@@ -249,12 +324,11 @@ public interface RbacMapper {
         validateStringNotBlank(policy.getResource().getValue(), "policy resource value");
         validateObjectNotNull(policy.getAction(), "policy action");
         log.debug("inserting policy {}...", policy);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int inserted = _insertPolicy(policy);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("inserted {} policy {}", inserted, policy);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("insertPolicy", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("insertPolicy", start, end);
         metrics.addCounter("insertPolicy", 1);
         metrics.addMetric("insertPolicy.inserted", inserted);
         return inserted;
@@ -265,16 +339,31 @@ public interface RbacMapper {
     default Policy getPolicy(long policyId) {
         validateLongPositive(policyId, "policy id");
         log.debug("retrieving policy {}...", policyId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         Policy policy = _getPolicy(policyId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("retrieved policy {}", policy);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getPolicy", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getPolicy", start, end);
         metrics.addCounter("getPolicy", 1);
         return policy;
     }
 
+    List<Policy> _getPolicies(@Param("policyIds") Collection<Long> policyIds);
+
+    default List<Policy> getPolicies(Collection<Long> policyIds) {
+        validateCollectionNotEmptyContainsNoNull(policyIds, "policy ids");
+        policyIds.forEach(policyId -> validateLongPositive(policyId, "policy id"));
+        log.debug("retrieving policies {}...", policyIds);
+        long start = System.nanoTime();
+        List<Policy> policies = _getPolicies(policyIds);
+        long end = System.nanoTime();
+        log.debug("retrieved {} policies", policies.size());
+        Metrics metrics = time("getPolicies", start, end);
+        metrics.addCounter("getPolicies", 1);
+        metrics.addMetric("getPolicies.retrieved", policies.size());
+        return policies;
+    }
+
     List<Policy> _listPolicies(@Param("ler") ListElementRequest ler);
 
     default List<Policy> listPolicies(ListElementRequest ler) {
@@ -282,28 +371,43 @@ public interface RbacMapper {
         validateLongNotNegative(ler.getOffset(), "listing offset");
         validateLongNotNegative(ler.getLimit(), "listing limit");
         log.debug("listing policies with params {}...", ler);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<Policy> policies = _listPolicies(ler);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("listed policies {} with params {}", policies, ler);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("listPolicies", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("listPolicies", start, end);
         metrics.addCounter("listPolicies", 1);
         metrics.addMetric("listPolicies.listed", policies.size());
         return policies;
     }
 
+    List<Policy> _listPoliciesAfter(@Param("ler") ListElementRequest ler, @Param("afterId") long afterId);
+
+    default List<Policy> listPoliciesAfter(ListElementRequest ler, long afterId) {
+        validateObjectNotNull(ler, "listing params");
+        validateLongNotNegative(afterId, "listing cursor id");
+        validateLongPositive(ler.getLimit(), "listing limit");
+        log.debug("listing policies after {} with params {}...", afterId, ler);
+        long start = System.nanoTime();
+        List<Policy> policies = _listPoliciesAfter(ler, afterId);
+        long end = System.nanoTime();
+        log.debug("listed policies {} after {} with params {}", policies, afterId, ler);
+        Metrics metrics = time("listPoliciesAfter", start, end);
+        metrics.addCounter("listPoliciesAfter", 1);
+        metrics.addMetric("listPoliciesAfter.listed", policies.size());
+        return policies;
+    }
+
     long _countPolicies(@Param("ler") ListElementRequest ler);
 
     default long countPolicies(ListElementRequest ler) {
         validateObjectNotNull(ler, "listing params");
         log.debug("counting policies with params {}...", ler);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long result = _countPolicies(ler);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("counted {} policies with listing params {}", result, ler);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("countPolicies", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("countPolicies", start, end);
         metrics.addCounter("countPolicies", 1);
         return result;
     }
@@ -317,14 +421,18 @@ public interface RbacMapper {
             validateStringNotBlank(resource.getValue(), "resource value");
         });
         log.debug("retrieving policies for resources {}...", resources);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<Policy> policies = _getResourcesPolicies(resources);
-        long end = System.currentTimeMillis();
+        // policies are found by fingerprints of resources, those of other resources sharing a fingerprint are dropped
+        Set<Resource> requested = Sets.newHashSet(resources);
+        int got = policies.size();
+        policies.removeIf(policy -> !requested.contains(policy.getResource()));
+        long end = System.nanoTime();
         log.debug("retrieved policies {}", policies);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getResourcesPolicies", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getResourcesPolicies", start, end);
         metrics.addCounter("getResourcesPolicies", 1);
         metrics.addMetric("getResourcesPolicies.got", policies.size());
+        metrics.addMetric("getResourcesPolicies.collided", got - policies.size());
         return policies;
     }
 
@@ -334,12 +442,11 @@ public interface RbacMapper {
         validateObjectNotNull(policy, "policy");
         validateLongPositive(policy.getId(), "policy id");
         log.debug("updating policy {}...", policy);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int updated = _updatePolicy(policy);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("updated policy {}", policy.getId());
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("updatePolicy", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("updatePolicy", start, end);
         metrics.addCounter("updatePolicy", 1);
         metrics.addMetric("updatePolicy.updated", updated);
         return updated;
@@ -351,12 +458,11 @@ public interface RbacMapper {
         validateCollectionNotEmptyContainsNoNull(policyIds, "policy id collection");
         policyIds.forEach(roleId -> validateLongPositive(roleId, "policy id"));
         log.debug("deleting policies {}...", policyIds);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deletePolicies(policyIds);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} policies", deleted);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deletePolicies", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deletePolicies", start, end);
         metrics.addCounter("deletePolicies", 1);
         metrics.addMetric("deletePolicies.deleted", deleted);
         return deleted;
@@ -368,28 +474,94 @@ public interface RbacMapper {
         validateLongPositive(userId, "user id");
         validateLongPositive(roleId, "role id");
         log.debug("assigning user {} to role {}...", userId, roleId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int inserted = _insertUserRole(userId, roleId, new Date());
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("assigned user {} to role {}", userId, roleId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("insertUserRole", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("insertUserRole", start, end);
         metrics.addCounter("insertUserRole", 1);
         return inserted;
     }
 
+    int _assignUserRole(@Param("userId") long userId, @Param("roleId") long roleId, @Param("createdAt") Date createdAt);
+
+    /**
+     * inserts the user role in one statement if both the user and the role exist and it doesn't exist yet
+     * @return 1 if inserted, 0 otherwise
+     */
+    default int assignUserRole(long userId, long roleId) {
+        validateLongPositive(userId, "user id");
+        validateLongPositive(roleId, "role id");
+        log.debug("assigning role {} to user {} if absent...", roleId, userId);
+        long start = System.nanoTime();
+        int inserted = _assignUserRole(userId, roleId, new Date());
+        long end = System.nanoTime();
+        log.debug("inserted {} user role", inserted);
+        Metrics metrics = time("assignUserRole", start, end);
+        metrics.addCounter("assignUserRole", 1);
+        metrics.addMetric("assignUserRole.inserted", inserted);
+        return inserted;
+    }
+
+    int _insertUserRoles(@Param("userRoles") Collection<UserRole> userRoles, @Param("createdAt") Date createdAt);
+
+    default int insertUserRoles(Collection<UserRole> userRoles) {
+        validateUserRoleKeys(userRoles);
+        log.debug("assigning {} user roles...", userRoles.size());
+        long start = System.nanoTime();
+        int inserted = _insertUserRoles(userRoles, new Date());
+        long end = System.nanoTime();
+        log.debug("assigned {} user roles", inserted);
+        Metrics metrics = time("insertUserRoles", start, end);
+        metrics.addCounter("insertUserRoles", 1);
+        metrics.addMetric("insertUserRoles.inserted", inserted);
+        return inserted;
+    }
+
+    List<UserRole> _getUserRolesByKeys(@Param("userRoles") Collection<UserRole> userRoles);
+
+    /**
+     * @return the user roles existing among the ones with the user and role ids given
+     */
+    default List<UserRole> getUserRolesByKeys(Collection<UserRole> userRoles) {
+        validateUserRoleKeys(userRoles);
+        log.debug("retrieving {} user roles...", userRoles.size());
+        long start = System.nanoTime();
+        List<UserRole> urs = _getUserRolesByKeys(userRoles);
+        long end = System.nanoTime();
+        log.debug("retrieved {} user roles", urs.size());
+        Metrics metrics = time("getUserRolesByKeys", start, end);
+        metrics.addCounter("getUserRolesByKeys", 1);
+        metrics.addMetric("getUserRolesByKeys.retrieved", urs.size());
+        return urs;
+    }
+
+    int _deleteUserRolesByKeys(@Param("userRoles") Collection<UserRole> userRoles);
+
+    default int deleteUserRolesByKeys(Collection<UserRole> userRoles) {
+        validateUserRoleKeys(userRoles);
+        log.debug("unassigning {} user roles...", userRoles.size());
+        long start = System.nanoTime();
+        int deleted = _deleteUserRolesByKeys(userRoles);
+        long end = System.nanoTime();
+        log.debug("unassigned {} user roles", deleted);
+        Metrics metrics = time("deleteUserRolesByKeys", start, end);
+        metrics.addCounter("deleteUserRolesByKeys", 1);
+        metrics.addMetric("deleteUserRolesByKeys.deleted", deleted);
+        return deleted;
+    }
+
     UserRole _getUserRole(@Param("userId") long userId, @Param("roleId") long roleId);
 
     default UserRole getUserRole(long userId, long roleId) {
         validateLongPositive(userId, "user id");
         validateLongPositive(roleId, "role id");
         log.debug("retrieving user {} role {}...", userId, roleId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         UserRole ur = _getUserRole(userId, roleId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("retrieved user role {}", ur);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getUserRole", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getUserRole", start, end);
         metrics.addCounter("getUserRole", 1);
         return ur;
     }
@@ -401,28 +573,43 @@ public interface RbacMapper {
         validateLongNotNegative(offset, "listing offset");
         validateLongPositive(limit, "listing limit");
         log.debug("listing users of role {} with offset {} and limit {}...", roleId, offset, limit);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<User> users = _listRoleUsers(roleId, offset, limit);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("listed users {}", users);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("listRoleUsers", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("listRoleUsers", start, end);
         metrics.addCounter("listRoleUsers", 1);
         metrics.addMetric("listRoleUsers.listed", users.size());
         return users;
     }
 
+    List<User> _listRoleUsersAfter(@Param("roleId") long roleId, @Param("afterUserId") long afterUserId, @Param("limit") long limit);
+
+    default List<User> listRoleUsersAfter(long roleId, long afterUserId, long limit) {
+        validateLongPositive(roleId, "role id");
+        validateLongNotNegative(afterUserId, "listing cursor user id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing users of role {} after {} with limit {}...", roleId, afterUserId, limit);
+        long start = System.nanoTime();
+        List<User> users = _listRoleUsersAfter(roleId, afterUserId, limit);
+        long end = System.nanoTime();
+        log.debug("listed users {}", users);
+        Metrics metrics = time("listRoleUsersAfter", start, end);
+        metrics.addCounter("listRoleUsersAfter", 1);
+        metrics.addMetric("listRoleUsersAfter.listed", users.size());
+        return users;
+    }
+
     long _countRoleUsers(@Param("roleId") long roleId);
 
     default long countRoleUsers(long roleId) {
         validateLongPositive(roleId, "role id");
         log.debug("counting users assigned with role {}...", roleId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long count = _countRoleUsers(roleId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("counted {} users for role {}", count, roleId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("countRoleUsers", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("countRoleUsers", start, end);
         metrics.addCounter("countRoleUsers", 1);
         metrics.addMetric("countRoleUsers.count", count);
         return count;
@@ -435,28 +622,43 @@ public interface RbacMapper {
         validateLongNotNegative(offset, "listing offset");
         validateLongPositive(limit, "listing limit");
         log.debug("listing roles for user {} with offset {} and limit {}...", userId, offset, limit);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<Role> roles = _listUserRoles(userId, offset, limit);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("listed roles {}", roles);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("listUserRoles", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("listUserRoles", start, end);
         metrics.addCounter("listUserRoles", 1);
         metrics.addMetric("listUserRoles.listed", roles.size());
         return roles;
     }
 
+    List<Role> _listUserRolesAfter(@Param("userId") long userId, @Param("afterRoleId") long afterRoleId, @Param("limit") long limit);
+
+    default List<Role> listUserRolesAfter(long userId, long afterRoleId, long limit) {
+        validateLongPositive(userId, "user id");
+        validateLongNotNegative(afterRoleId, "listing cursor role id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing roles for user {} after {} with limit {}...", userId, afterRoleId, limit);
+        long start = System.nanoTime();
+        List<Role> roles = _listUserRolesAfter(userId, afterRoleId, limit);
+        long end = System.nanoTime();
+        log.debug("listed roles {}", roles);
+        Metrics metrics = time("listUserRolesAfter", start, end);
+        metrics.addCounter("listUserRolesAfter", 1);
+        metrics.addMetric("listUserRolesAfter.listed", roles.size());
+        return roles;
+    }
+
     long _countUserRoles(@Param("userId") long userId);
 
     default long countUserRoles(long userId) {
         validateLongPositive(userId, "user id");
         log.debug("counting roles assigned to user {}...", userId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long count = _countUserRoles(userId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("counted {} roles for user {}", count, userId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("countUserRoles", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("countUserRoles", start, end);
         metrics.addCounter("countUserRoles", 1);
         metrics.addMetric("countUserRoles.count", count);
         return count;
@@ -468,12 +670,11 @@ public interface RbacMapper {
         validateLongPositive(userId, "user id");
         validateLongPositive(roleId, "role id");
         log.debug("deleting user {} role {}...", userId, roleId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deleteUserRole(userId, roleId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} user role", deleted);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deleteUserRole", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deleteUserRole", start, end);
         metrics.addCounter("deleteUserRole", 1);
         metrics.addMetric("deleteUserRole.deleted", deleted);
         return deleted;
@@ -484,12 +685,11 @@ public interface RbacMapper {
     default int deleteUserRoles(long userId) {
         validateLongPositive(userId, "user id");
         log.debug("deleting user {} roles...", userId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deleteUserRoles(userId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} roles for user {}", deleted, userId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deleteUserRoles", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deleteUserRoles", start, end);
         metrics.addCounter("deleteUserRoles", 1);
         metrics.addMetric("deleteUserRoles.deleted", deleted);
         return deleted;
@@ -500,12 +700,11 @@ public interface RbacMapper {
     default int deleteRoleUsers(long roleId) {
         validateLongPositive(roleId, "role id");
         log.debug("deleting role {} users...", roleId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deleteRoleUsers(roleId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} users for role {}", deleted, roleId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deleteRoleUsers", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deleteRoleUsers", start, end);
         metrics.addCounter("deleteRoleUsers", 1);
         metrics.addMetric("deleteRoleUsers.deleted", deleted);
         return deleted;
@@ -521,16 +720,87 @@ public interface RbacMapper {
         validateLongPositive(entityId, "entity id");
         validateLongPositive(policyId, "policy id");
         log.debug("assigning policy {} to {} {}...", policyId, entityType.name(), entityId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int inserted = _insertEntityPolicy(entityType.getValue(), entityId, policyId, new Date());
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("assigned policy {} to {} {}", policyId, entityType.name(), entityId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("insertEntityPolicy", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("insertEntityPolicy", start, end);
         metrics.addCounter("insertEntityPolicy", 1);
         return inserted;
     }
 
+    int _assignEntityPolicy(@Param("entityType") int entityType,
+                            @Param("entityId") long entityId,
+                            @Param("policyId") long policyId,
+                            @Param("createdAt") Date createdAt);
+
+    /**
+     * inserts the entity policy in one statement if both the entity and the policy exist and it doesn't exist yet
+     * @return 1 if inserted, 0 otherwise
+     */
+    default int assignEntityPolicy(EntityType entityType, long entityId, long policyId) {
+        validateObjectNotNull(entityType, "entity type");
+        validateLongPositive(entityId, "entity id");
+        validateLongPositive(policyId, "policy id");
+        log.debug("assigning policy {} to {} {} if absent...", policyId, entityType.name(), entityId);
+        long start = System.nanoTime();
+        int inserted = _assignEntityPolicy(entityType.getValue(), entityId, policyId, new Date());
+        long end = System.nanoTime();
+        log.debug("inserted {} entity policy", inserted);
+        Metrics metrics = time("assignEntityPolicy", start, end);
+        metrics.addCounter("assignEntityPolicy", 1);
+        metrics.addMetric("assignEntityPolicy.inserted", inserted);
+        return inserted;
+    }
+
+    int _insertEntityPolicies(@Param("entityPolicies") Collection<EntityPolicy> entityPolicies, @Param("createdAt") Date createdAt);
+
+    default int insertEntityPolicies(Collection<EntityPolicy> entityPolicies) {
+        validateEntityPolicyKeys(entityPolicies);
+        log.debug("assigning {} entity policies...", entityPolicies.size());
+        long start = System.nanoTime();
+        int inserted = _insertEntityPolicies(entityPolicies, new Date());
+        long end = System.nanoTime();
+        log.debug("assigned {} entity policies", inserted);
+        Metrics metrics = time("insertEntityPolicies", start, end);
+        metrics.addCounter("insertEntityPolicies", 1);
+        metrics.addMetric("insertEntityPolicies.inserted", inserted);
+        return inserted;
+    }
+
+    List<EntityPolicy> _getEntityPoliciesByKeys(@Param("entityPolicies") Collection<EntityPolicy> entityPolicies);
+
+    /**
+     * @return the entity policies existing among the ones with the entity and policy ids given
+     */
+    default List<EntityPolicy> getEntityPoliciesByKeys(Collection<EntityPolicy> entityPolicies) {
+        validateEntityPolicyKeys(entityPolicies);
+        log.debug("retrieving {} entity policies...", entityPolicies.size());
+        long start = System.nanoTime();
+        List<EntityPolicy> eps = _getEntityPoliciesByKeys(entityPolicies);
+        long end = System.nanoTime();
+        log.debug("retrieved {} entity policies", eps.size());
+        Metrics metrics = time("getEntityPoliciesByKeys", start, end);
+        metrics.addCounter("getEntityPoliciesByKeys", 1);
+        metrics.addMetric("getEntityPoliciesByKeys.retrieved", eps.size());
+        return eps;
+    }
+
+    int _deleteEntityPoliciesByKeys(@Param("entityPolicies") Collection<EntityPolicy> entityPolicies);
+
+    default int deleteEntityPoliciesByKeys(Collection<EntityPolicy> entityPolicies) {
+        validateEntityPolicyKeys(entityPolicies);
+        log.debug("unassigning {} entity policies...", entityPolicies.size());
+        long start = System.nanoTime();
+        int deleted = _deleteEntityPoliciesByKeys(entityPolicies);
+        long end = System.nanoTime();
+        log.debug("unassigned {} entity policies", deleted);
+        Metrics metrics = time("deleteEntityPoliciesByKeys", start, end);
+        metrics.addCounter("deleteEntityPoliciesByKeys", 1);
+        metrics.addMetric("deleteEntityPoliciesByKeys.deleted", deleted);
+        return deleted;
+    }
+
     EntityPolicy _getEntityPolicy(@Param("entityType") int entityType, @Param("entityId") long entityId, @Param("policyId") long policyId);
 
     default EntityPolicy getEntityPolicy(EntityType entityType, long entityId, long policyId) {
@@ -538,12 +808,11 @@ public interface RbacMapper {
         validateLongPositive(entityId, "entity id");
         validateLongPositive(policyId, "policy id");
         log.debug("retrieving {} {} policy {}...", entityType.name(), entityId, policyId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         EntityPolicy ep = _getEntityPolicy(entityType.getValue(), entityId, policyId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("retrieved {}", ep);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getEntityPolicy", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getEntityPolicy", start, end);
         metrics.addCounter("getEntityPolicy", 1);
         return ep;
     }
@@ -557,28 +826,53 @@ public interface RbacMapper {
         validateLongNotNegative(offset, "listing offset");
         validateLongPositive(limit, "listing limit");
         log.debug("listing entities for policy {} with offset {} and limit {}...", policyId, offset, limit);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<Entity> entities = _listPolicyEntities(policyId, offset, limit);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("listed entities {}", entities);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("listPolicyEntities", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("listPolicyEntities", start, end);
         metrics.addCounter("listPolicyEntities", 1);
         metrics.addMetric("listPolicyEntities.listed", entities.size());
         return entities;
     }
 
+    List<Entity> _listPolicyEntitiesAfter(@Param("policyId") long policyId,
+                                          @Param("afterType") int afterType,
+                                          @Param("afterId") long afterId,
+                                          @Param("limit") long limit);
+
+    /**
+     * @param after the last entity of the previous page, null for the first page
+     */
+    default List<Entity> listPolicyEntitiesAfter(long policyId, Entity after, long limit) {
+        validateLongPositive(policyId, "policy id");
+        if (after != null) {
+            validateObjectNotNull(after.getType(), "listing cursor entity type");
+            validateLongNotNegative(after.getId(), "listing cursor entity id");
+        }
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing entities for policy {} after {} with limit {}...", policyId, after, limit);
+        long start = System.nanoTime();
+        List<Entity> entities = after == null ? _listPolicyEntitiesAfter(policyId, 0, 0, limit)
+                : _listPolicyEntitiesAfter(policyId, after.getType().getValue(), after.getId(), limit);
+        long end = System.nanoTime();
+        log.debug("listed entities {}", entities);
+        Metrics metrics = time("listPolicyEntitiesAfter", start, end);
+        metrics.addCounter("listPolicyEntitiesAfter", 1);
+        metrics.addMetric("listPolicyEntitiesAfter.listed", entities.size());
+        return entities;
+    }
+
     long _countPolicyEntities(@Param("policyId") long policyId);
 
     default long countPolicyEntities(long policyId) {
         validateLongPositive(policyId, "policy id");
         log.debug("counting entities for policy {}...", policyId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long count = _countPolicyEntities(policyId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("counted {} entities for policy {}", count, policyId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("countPolicyEntities", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("countPolicyEntities", start, end);
         metrics.addCounter("countPolicyEntities", 1);
         metrics.addMetric("countPolicyEntities.count", count);
         return count;
@@ -596,17 +890,38 @@ public interface RbacMapper {
         validateLongNotNegative(offset, "listing offset");
         validateLongPositive(limit, "listing limit");
         log.debug("listing policies for entity {} with offset {} and limit {}...", entity, offset, limit);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         List<Policy> policies = _listEntityPolicies(entity.getType().getValue(), entity.getId(), offset, limit);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("listed policies {}", policies);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("listEntityPolicies", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("listEntityPolicies", start, end);
         metrics.addCounter("listEntityPolicies", 1);
         metrics.addMetric("listEntityPolicies.listed", policies.size());
         return policies;
     }
 
+    List<Policy> _listEntityPoliciesAfter(@Param("entityType") int entityType,
+                                          @Param("entityId") long entityId,
+                                          @Param("afterPolicyId") long afterPolicyId,
+                                          @Param("limit") long limit);
+
+    default List<Policy> listEntityPoliciesAfter(Entity entity, long afterPolicyId, long limit) {
+        validateObjectNotNull(entity, "entity");
+        validateObjectNotNull(entity.getType(), "entity type");
+        validateLongPositive(entity.getId(), "entity id");
+        validateLongNotNegative(afterPolicyId, "listing cursor policy id");
+        validateLongPositive(limit, "listing limit");
+        log.debug("listing policies for entity {} after {} with limit {}...", entity, afterPolicyId, limit);
+        long start = System.nanoTime();
+        List<Policy> policies = _listEntityPoliciesAfter(entity.getType().getValue(), entity.getId(), afterPolicyId, limit);
+        long end = System.nanoTime();
+        log.debug("listed policies {}", policies);
+        Metrics metrics = time("listEntityPoliciesAfter", start, end);
+        metrics.addCounter("listEntityPoliciesAfter", 1);
+        metrics.addMetric("listEntityPoliciesAfter.listed", policies.size());
+        return policies;
+    }
+
     long _countEntityPolicies(@Param("entityType") int entityType, @Param("entityId") long entityId);
 
     default long countEntityPolicies(Entity entity) {
@@ -614,12 +929,11 @@ public interface RbacMapper {
         validateObjectNotNull(entity.getType(), "entity type");
         validateLongPositive(entity.getId(), "entity id");
         log.debug("counting policies for entity {}...", entity);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         long count = _countEntityPolicies(entity.getType().getValue(), entity.getId());
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("counted {} policies for entity {}", count, entity);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("countEntityPolicies", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("countEntityPolicies", start, end);
         metrics.addCounter("countEntityPolicies", 1);
         metrics.addMetric("countEntityPolicies.count", count);
         return count;
@@ -632,16 +946,376 @@ public interface RbacMapper {
         validateCollectionNotEmptyContainsNoNull(policyIds, "policy ids");
         policyIds.forEach(policyId -> validateLongPositive(policyId, "policy id"));
         log.debug("retrieving policy for user {} inside policies {}...", userId, policyIds);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         EntityPolicy ep = _getUserPolicy(userId, policyIds);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("retrieved {}", ep);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("getUserPolicy", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("getUserPolicy", start, end);
         metrics.addCounter("getUserPolicy", 1);
         return ep;
     }
 
+    List<EntityPolicy> _listUserPolicies(@Param("userId") long userId, @Param("policyIds") Collection<Long> policyIds);
+
+    default List<EntityPolicy> listUserPolicies(long userId, Collection<Long> policyIds) {
+        validateLongPositive(userId, "user id");
+        validateCollectionNotEmptyContainsNoNull(policyIds, "policy ids");
+        policyIds.forEach(policyId -> validateLongPositive(policyId, "policy id"));
+        log.debug("listing policies for user {} inside policies {}...", userId, policyIds);
+        long start = System.nanoTime();
+        List<EntityPolicy> eps = _listUserPolicies(userId, policyIds);
+        long end = System.nanoTime();
+        log.debug("listed {}", eps);
+        Metrics metrics = time("listUserPolicies", start, end);
+        metrics.addCounter("listUserPolicies", 1);
+        metrics.addMetric("listUserPolicies.listed", eps.size());
+        return eps;
+    }
+
+    List<EntityPolicy> _listUserEntityPolicies(@Param("userId") long userId);
+
+    default List<EntityPolicy> listUserEntityPolicies(long userId) {
+        validateLongPositive(userId, "user id");
+        log.debug("listing policies assigned to user {} directly or through roles...", userId);
+        long start = System.nanoTime();
+        List<EntityPolicy> eps = _listUserEntityPolicies(userId);
+        long end = System.nanoTime();
+        log.debug("listed {}", eps);
+        Metrics metrics = time("listUserEntityPolicies", start, end);
+        metrics.addCounter("listUserEntityPolicies", 1);
+        metrics.addMetric("listUserEntityPolicies.listed", eps.size());
+        return eps;
+    }
+
+    int _insertUserRoleEffectivePolicies(@Param("userId") long userId, @Param("roleId") long roleId);
+
+    default int insertUserRoleEffectivePolicies(long userId, long roleId) {
+        validateLongPositive(userId, "user id");
+        validateLongPositive(roleId, "role id");
+        log.debug("materializing policies of role {} for user {}...", roleId, userId);
+        long start = System.nanoTime();
+        int inserted = _insertUserRoleEffectivePolicies(userId, roleId);
+        long end = System.nanoTime();
+        log.debug("materialized {} policies of role {} for user {}", inserted, roleId, userId);
+        Metrics metrics = time("insertUserRoleEffectivePolicies", start, end);
+        metrics.addCounter("insertUserRoleEffectivePolicies", 1);
+        metrics.addMetric("insertUserRoleEffectivePolicies.inserted", inserted);
+        return inserted;
+    }
+
+    int _deleteUserRoleEffectivePolicies(@Param("userId") long userId, @Param("roleId") long roleId);
+
+    default int deleteUserRoleEffectivePolicies(long userId, long roleId) {
+        validateLongPositive(userId, "user id");
+        validateLongPositive(roleId, "role id");
+        log.debug("removing materialized policies of role {} for user {}...", roleId, userId);
+        long start = System.nanoTime();
+        int deleted = _deleteUserRoleEffectivePolicies(userId, roleId);
+        long end = System.nanoTime();
+        log.debug("removed {} materialized policies of role {} for user {}", deleted, roleId, userId);
+        Metrics metrics = time("deleteUserRoleEffectivePolicies", start, end);
+        metrics.addCounter("deleteUserRoleEffectivePolicies", 1);
+        metrics.addMetric("deleteUserRoleEffectivePolicies.deleted", deleted);
+        return deleted;
+    }
+
+    int _insertEntityPolicyEffectivePolicies(@Param("entityType") int entityType,
+                                             @Param("entityId") long entityId,
+                                             @Param("policyId") long policyId);
+
+    default int insertEntityPolicyEffectivePolicies(EntityType entityType, long entityId, long policyId) {
+        validateObjectNotNull(entityType, "entity type");
+        validateLongPositive(entityId, "entity id");
+        validateLongPositive(policyId, "policy id");
+        log.debug("materializing policy {} of {} {} for users...", policyId, entityType.name(), entityId);
+        long start = System.nanoTime();
+        int inserted = _insertEntityPolicyEffectivePolicies(entityType.getValue(), entityId, policyId);
+        long end = System.nanoTime();
+        log.debug("materialized policy {} of {} {} for {} users", policyId, entityType.name(), entityId, inserted);
+        Metrics metrics = time("insertEntityPolicyEffectivePolicies", start, end);
+        metrics.addCounter("insertEntityPolicyEffectivePolicies", 1);
+        metrics.addMetric("insertEntityPolicyEffectivePolicies.inserted", inserted);
+        return inserted;
+    }
+
+    int _deleteEntityPolicyEffectivePolicies(@Param("entityType") int entityType,
+                                             @Param("entityId") long entityId,
+                                             @Param("policyId") long policyId);
+
+    default int deleteEntityPolicyEffectivePolicies(EntityType entityType, long entityId, long policyId) {
+        validateObjectNotNull(entityType, "entity type");
+        validateLongPositive(entityId, "entity id");
+        validateLongPositive(policyId, "policy id");
+        log.debug("removing materialized policy {} of {} {}...", policyId, entityType.name(), entityId);
+        long start = System.nanoTime();
+        int deleted = _deleteEntityPolicyEffectivePolicies(entityType.getValue(), entityId, policyId);
+        long end = System.nanoTime();
+        log.debug("removed materialized policy {} of {} {} for {} users", policyId, entityType.name(), entityId, deleted);
+        Metrics metrics = time("deleteEntityPolicyEffectivePolicies", start, end);
+        metrics.addCounter("deleteEntityPolicyEffectivePolicies", 1);
+        metrics.addMetric("deleteEntityPolicyEffectivePolicies.deleted", deleted);
+        return deleted;
+    }
+
+    int _insertUserRolesEffectivePolicies(@Param("userRoles") Collection<UserRole> userRoles);
+
+    default int insertUserRolesEffectivePolicies(Collection<UserRole> userRoles) {
+        validateUserRoleKeys(userRoles);
+        log.debug("materializing policies of {} user roles...", userRoles.size());
+        long start = System.nanoTime();
+        int inserted = _insertUserRolesEffectivePolicies(userRoles);
+        long end = System.nanoTime();
+        log.debug("materialized {} policies of {} user roles", inserted, userRoles.size());
+        Metrics metrics = time("insertUserRolesEffectivePolicies", start, end);
+        metrics.addCounter("insertUserRolesEffectivePolicies", 1);
+        metrics.addMetric("insertUserRolesEffectivePolicies.inserted", inserted);
+        return inserted;
+    }
+
+    int _deleteUserRolesEffectivePolicies(@Param("userRoles") Collection<UserRole> userRoles);
+
+    default int deleteUserRolesEffectivePolicies(Collection<UserRole> userRoles) {
+        validateUserRoleKeys(userRoles);
+        log.debug("removing materialized policies of {} user roles...", userRoles.size());
+        long start = System.nanoTime();
+        int deleted = _deleteUserRolesEffectivePolicies(userRoles);
+        long end = System.nanoTime();
+        log.debug("removed {} materialized policies of {} user roles", deleted, userRoles.size());
+        Metrics metrics = time("deleteUserRolesEffectivePolicies", start, end);
+        metrics.addCounter("deleteUserRolesEffectivePolicies", 1);
+        metrics.addMetric("deleteUserRolesEffectivePolicies.deleted", deleted);
+        return deleted;
+    }
+
+    int _insertEntityPoliciesEffectivePolicies(@Param("entityType") int entityType,
+                                               @Param("entityPolicies") Collection<EntityPolicy> entityPolicies);
+
+    /**
+     * @param entityPolicies entity policies of the entity type, statements differ for users and roles
+     */
+    default int insertEntityPoliciesEffectivePolicies(EntityType entityType, Collection<EntityPolicy> entityPolicies) {
+        validateObjectNotNull(entityType, "entity type");
+        validateEntityPolicyKeys(entityPolicies);
+        log.debug("materializing {} {} policies...", entityPolicies.size(), entityType);
+        long start = System.nanoTime();
+        int inserted = _insertEntityPoliciesEffectivePolicies(entityType.getValue(), entityPolicies);
+        long end = System.nanoTime();
+        log.debug("materialized {} policies of {} {} policies", inserted, entityPolicies.size(), entityType);
+        Metrics metrics = time("insertEntityPoliciesEffectivePolicies", start, end);
+        metrics.addCounter("insertEntityPoliciesEffectivePolicies", 1);
+        metrics.addMetric("insertEntityPoliciesEffectivePolicies.inserted", inserted);
+        return inserted;
+    }
+
+    int _deleteEntityPoliciesEffectivePolicies(@Param("entityType") int entityType,
+                                               @Param("entityPolicies") Collection<EntityPolicy> entityPolicies);
+
+    default int deleteEntityPoliciesEffectivePolicies(EntityType entityType, Collection<EntityPolicy> entityPolicies) {
+        validateObjectNotNull(entityType, "entity type");
+        validateEntityPolicyKeys(entityPolicies);
+        log.debug("removing materialized policies of {} {} policies...", entityPolicies.size(), entityType);
+        long start = System.nanoTime();
+        int deleted = _deleteEntityPoliciesEffectivePolicies(entityType.getValue(), entityPolicies);
+        long end = System.nanoTime();
+        log.debug("removed {} materialized policies of {} {} policies", deleted, entityPolicies.size(), entityType);
+        Metrics metrics = time("deleteEntityPoliciesEffectivePolicies", start, end);
+        metrics.addCounter("deleteEntityPoliciesEffectivePolicies", 1);
+        metrics.addMetric("deleteEntityPoliciesEffectivePolicies.deleted", deleted);
+        return deleted;
+    }
+
+    int _addRoleUserCount(@Param("roleId") long roleId, @Param("delta") long delta);
+
+    default int addRoleUserCount(long roleId, long delta) {
+        validateLongPositive(roleId, "role id");
+        log.debug("adding {} to user count of role {}...", delta, roleId);
+        long start = System.nanoTime();
+        int updated = _addRoleUserCount(roleId, delta);
+        long end = System.nanoTime();
+        log.debug("updated {} role adding {} to user count", updated, delta);
+        Metrics metrics = time("addRoleUserCount", start, end);
+        metrics.addCounter("addRoleUserCount", 1);
+        return updated;
+    }
+
+    Long _getRoleUserCount(@Param("roleId") long roleId);
+
+    /**
+     * @return user count kept on the role row, 0 if the role doesn't exist
+     */
+    default long getRoleUserCount(long roleId) {
+        validateLongPositive(roleId, "role id");
+        log.debug("retrieving user count of role {}...", roleId);
+        long start = System.nanoTime();
+        Long count = _getRoleUserCount(roleId);
+        long end = System.nanoTime();
+        log.debug("retrieved user count {} of role {}", count, roleId);
+        Metrics metrics = time("getRoleUserCount", start, end);
+        metrics.addCounter("getRoleUserCount", 1);
+        return count == null ? 0 : count;
+    }
+
+    int _addRolePolicyCount(@Param("roleId") long roleId, @Param("delta") long delta);
+
+    default int addRolePolicyCount(long roleId, long delta) {
+        validateLongPositive(roleId, "role id");
+        log.debug("adding {} to policy count of role {}...", delta, roleId);
+        long start = System.nanoTime();
+        int updated = _addRolePolicyCount(roleId, delta);
+        long end = System.nanoTime();
+        log.debug("updated {} role adding {} to policy count", updated, delta);
+        Metrics metrics = time("addRolePolicyCount", start, end);
+        metrics.addCounter("addRolePolicyCount", 1);
+        return updated;
+    }
+
+    Long _getRolePolicyCount(@Param("roleId") long roleId);
+
+    /**
+     * @return policy count kept on the role row, 0 if the role doesn't exist
+     */
+    default long getRolePolicyCount(long roleId) {
+        validateLongPositive(roleId, "role id");
+        log.debug("retrieving policy count of role {}...", roleId);
+        long start = System.nanoTime();
+        Long count = _getRolePolicyCount(roleId);
+        long end = System.nanoTime();
+        log.debug("retrieved policy count {} of role {}", count, roleId);
+        Metrics metrics = time("getRolePolicyCount", start, end);
+        metrics.addCounter("getRolePolicyCount", 1);
+        return count == null ? 0 : count;
+    }
+
+    int _addPolicyEntityCount(@Param("policyId") long policyId, @Param("delta") long delta);
+
+    default int addPolicyEntityCount(long policyId, long delta) {
+        validateLongPositive(policyId, "policy id");
+        log.debug("adding {} to entity count of policy {}...", delta, policyId);
+        long start = System.nanoTime();
+        int updated = _addPolicyEntityCount(policyId, delta);
+        long end = System.nanoTime();
+        log.debug("updated {} policy adding {} to entity count", updated, delta);
+        Metrics metrics = time("addPolicyEntityCount", start, end);
+        metrics.addCounter("addPolicyEntityCount", 1);
+        return updated;
+    }
+
+    Long _getPolicyEntityCount(@Param("policyId") long policyId);
+
+    /**
+     * @return entity count kept on the policy row, 0 if the policy doesn't exist
+     */
+    default long getPolicyEntityCount(long policyId) {
+        validateLongPositive(policyId, "policy id");
+        log.debug("retrieving entity count of policy {}...", policyId);
+        long start = System.nanoTime();
+        Long count = _getPolicyEntityCount(policyId);
+        long end = System.nanoTime();
+        log.debug("retrieved entity count {} of policy {}", count, policyId);
+        Metrics metrics = time("getPolicyEntityCount", start, end);
+        metrics.addCounter("getPolicyEntityCount", 1);
+        return count == null ? 0 : count;
+    }
+
+    int _refreshRoleCounters(@Param("roleIds") Collection<Long> roleIds);
+
+    /**
+     * recounts relation counters of the roles given from the relation tables
+     * @return number of roles whose counters were off
+     */
+    default int refreshRoleCounters(Collection<Long> roleIds) {
+        validateCollectionNotEmptyContainsNoNull(roleIds, "role ids");
+        roleIds.forEach(id -> validateLongPositive(id, "role id"));
+        log.debug("refreshing counters of {} roles...", roleIds.size());
+        long start = System.nanoTime();
+        int refreshed = _refreshRoleCounters(roleIds);
+        long end = System.nanoTime();
+        log.debug("refreshed counters of {} roles", refreshed);
+        Metrics metrics = time("refreshRoleCounters", start, end);
+        metrics.addCounter("refreshRoleCounters", 1);
+        metrics.addMetric("refreshRoleCounters.refreshed", refreshed);
+        return refreshed;
+    }
+
+    /**
+     * recounts relation counters of all roles, see {@link #refreshRoleCounters(Collection)}
+     */
+    default int repairRoleCounters() {
+        log.debug("repairing counters of all roles...");
+        long start = System.nanoTime();
+        int repaired = _refreshRoleCounters(null);
+        long end = System.nanoTime();
+        log.debug("repaired counters of {} roles", repaired);
+        Metrics metrics = time("repairRoleCounters", start, end);
+        metrics.addCounter("repairRoleCounters", 1);
+        metrics.addMetric("repairRoleCounters.repaired", repaired);
+        return repaired;
+    }
+
+    int _refreshPolicyCounters(@Param("policyIds") Collection<Long> policyIds);
+
+    /**
+     * recounts relation counters of the policies given from the relation tables
+     * @return number of policies whose counters were off
+     */
+    default int refreshPolicyCounters(Collection<Long> policyIds) {
+        validateCollectionNotEmptyContainsNoNull(policyIds, "policy ids");
+        policyIds.forEach(id -> validateLongPositive(id, "policy id"));
+        log.debug("refreshing counters of {} policies...", policyIds.size());
+        long start = System.nanoTime();
+        int refreshed = _refreshPolicyCounters(policyIds);
+        long end = System.nanoTime();
+        log.debug("refreshed counters of {} policies", refreshed);
+        Metrics metrics = time("refreshPolicyCounters", start, end);
+        metrics.addCounter("refreshPolicyCounters", 1);
+        metrics.addMetric("refreshPolicyCounters.refreshed", refreshed);
+        return refreshed;
+    }
+
+    /**
+     * recounts relation counters of all policies, see {@link #refreshPolicyCounters(Collection)}
+     */
+    default int repairPolicyCounters() {
+        log.debug("repairing counters of all policies...");
+        long start = System.nanoTime();
+        int repaired = _refreshPolicyCounters(null);
+        long end = System.nanoTime();
+        log.debug("repaired counters of {} policies", repaired);
+        Metrics metrics = time("repairPolicyCounters", start, end);
+        metrics.addCounter("repairPolicyCounters", 1);
+        metrics.addMetric("repairPolicyCounters.repaired", repaired);
+        return repaired;
+    }
+
+    int _backfillUserEffectivePolicies();
+
+    default int backfillUserEffectivePolicies() {
+        log.debug("backfilling missing user effective policies...");
+        long start = System.nanoTime();
+        int inserted = _backfillUserEffectivePolicies();
+        long end = System.nanoTime();
+        log.debug("backfilled {} user effective policies", inserted);
+        Metrics metrics = time("backfillUserEffectivePolicies", start, end);
+        metrics.addCounter("backfillUserEffectivePolicies", 1);
+        metrics.addMetric("backfillUserEffectivePolicies.inserted", inserted);
+        return inserted;
+    }
+
+    List<Long> _listRoleUserIds(@Param("roleId") long roleId);
+
+    default List<Long> listRoleUserIds(long roleId) {
+        validateLongPositive(roleId, "role id");
+        log.debug("listing ids of users assigned with role {}...", roleId);
+        long start = System.nanoTime();
+        List<Long> userIds = _listRoleUserIds(roleId);
+        long end = System.nanoTime();
+        log.debug("listed {} user ids for role {}", userIds.size(), roleId);
+        Metrics metrics = time("listRoleUserIds", start, end);
+        metrics.addCounter("listRoleUserIds", 1);
+        metrics.addMetric("listRoleUserIds.listed", userIds.size());
+        return userIds;
+    }
+
     int _deleteEntityPolicy(@Param("entityType") int entityType, @Param("entityId") long entityId, @Param("policyId") long policyId);
 
     default int deleteEntityPolicy(EntityType entityType, long entityId, long policyId) {
@@ -649,11 +1323,10 @@ public interface RbacMapper {
         validateLongPositive(entityId, "entity id");
         validateLongPositive(policyId, "policy id");
         log.debug("removing policy {} from {} {}...", policyId, entityType.name(), entityId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deleteEntityPolicy(entityType.getValue(), entityId, policyId);
-        long end = System.currentTimeMillis();
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deleteEntityPolicy", start, end, TimeUnit.MILLISECONDS);
+        long end = System.nanoTime();
+        Metrics metrics = time("deleteEntityPolicy", start, end);
         metrics.addCounter("deleteEntityPolicy", 1);
         metrics.addMetric("deleteEntityPolicy.deleted", 1);
         return deleted;
@@ -666,12 +1339,11 @@ public interface RbacMapper {
         validateObjectNotNull(entity.getType(), "entity type");
         validateLongPositive(entity.getId(), "entity id");
         log.debug("deleting entity {} policies...", entity);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deleteEntityPolicies(entity.getType().getValue(), entity.getId());
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} policies for entity {}", deleted, entity);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deleteEntityPolicies", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deleteEntityPolicies", start, end);
         metrics.addCounter("deleteEntityPolicies", 1);
         metrics.addMetric("deleteEntityPolicies.deleted", deleted);
         return deleted;
@@ -682,14 +1354,291 @@ public interface RbacMapper {
     default int deletePolicyEntities(long policyId) {
         validateLongPositive(policyId, "policy id");
         log.debug("deleting policy {} entities...", policyId);
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         int deleted = _deletePolicyEntities(policyId);
-        long end = System.currentTimeMillis();
+        long end = System.nanoTime();
         log.debug("deleted {} entities for policy {}", deleted, policyId);
-        Metrics metrics = MetricsScope.getMetrics();
-        metrics.addTime("deletePolicyEntities", start, end, TimeUnit.MILLISECONDS);
+        Metrics metrics = time("deletePolicyEntities", start, end);
         metrics.addCounter("deletePolicyEntities", 1);
         metrics.addMetric("deletePolicyEntities.deleted", deleted);
         return deleted;
     }
+
+    List<Policy> _listAllPolicies();
+
+    default List<Policy> listAllPolicies() {
+        log.debug("listing all policies...");
+        long start = System.nanoTime();
+        List<Policy> policies = _listAllPolicies();
+        long end = System.nanoTime();
+        log.debug("listed {} policies", policies.size());
+        Metrics metrics = time("listAllPolicies", start, end);
+        metrics.addCounter("listAllPolicies", 1);
+        metrics.addMetric("listAllPolicies.listed", policies.size());
+        return policies;
+    }
+
+    Long _getMaxPolicyId();
+
+    /**
+     * @return the largest policy id, 0 if there is no policy
+     */
+    default long getMaxPolicyId() {
+        log.debug("retrieving max policy id...");
+        long start = System.nanoTime();
+        Long id = _getMaxPolicyId();
+        long end = System.nanoTime();
+        log.debug("retrieved max policy id {}", id);
+        Metrics metrics = time("getMaxPolicyId", start, end);
+        metrics.addCounter("getMaxPolicyId", 1);
+        return id == null ? 0 : id;
+    }
+
+    List<Policy> _listGlobPolicies();
+
+    default List<Policy> listGlobPolicies() {
+        log.debug("listing glob policies...");
+        long start = System.nanoTime();
+        List<Policy> policies = _listGlobPolicies();
+        long end = System.nanoTime();
+        log.debug("listed {} glob policies", policies.size());
+        Metrics metrics = time("listGlobPolicies", start, end);
+        metrics.addCounter("listGlobPolicies", 1);
+        metrics.addMetric("listGlobPolicies.listed", policies.size());
+        return policies;
+    }
+
+    List<Policy> _listPoliciesWithoutFingerprint();
+
+    int _updatePolicyFingerprint(@Param("policy") Policy policy);
+
+    /**
+     * fills resource fingerprints of policies written without them, e.g. by hand or by older versions of the service
+     */
+    default int backfillPolicyFingerprints() {
+        log.debug("backfilling missing policy resource fingerprints...");
+        long start = System.nanoTime();
+        int updated = 0;
+        for (Policy policy : _listPoliciesWithoutFingerprint()) updated += _updatePolicyFingerprint(policy);
+        long end = System.nanoTime();
+        log.debug("backfilled {} policy resource fingerprints", updated);
+        Metrics metrics = time("backfillPolicyFingerprints", start, end);
+        metrics.addCounter("backfillPolicyFingerprints", 1);
+        metrics.addMetric("backfillPolicyFingerprints.updated", updated);
+        return updated;
+    }
+
+    List<Role> _listAllRoles();
+
+    default List<Role> listAllRoles() {
+        log.debug("listing all roles...");
+        long start = System.nanoTime();
+        List<Role> roles = _listAllRoles();
+        long end = System.nanoTime();
+        log.debug("listed {} roles", roles.size());
+        Metrics metrics = time("listAllRoles", start, end);
+        metrics.addCounter("listAllRoles", 1);
+        metrics.addMetric("listAllRoles.listed", roles.size());
+        return roles;
+    }
+
+    List<UserRole> _listAllUserRoles();
+
+    default List<UserRole> listAllUserRoles() {
+        log.debug("listing all user roles...");
+        long start = System.nanoTime();
+        List<UserRole> userRoles = _listAllUserRoles();
+        long end = System.nanoTime();
+        log.debug("listed {} user roles", userRoles.size());
+        Metrics metrics = time("listAllUserRoles", start, end);
+        metrics.addCounter("listAllUserRoles", 1);
+        metrics.addMetric("listAllUserRoles.listed", userRoles.size());
+        return userRoles;
+    }
+
+    List<EntityPolicy> _listAllEntityPolicies();
+
+    default List<EntityPolicy> listAllEntityPolicies() {
+        log.debug("listing all entity policies...");
+        long start = System.nanoTime();
+        List<EntityPolicy> entityPolicies = _listAllEntityPolicies();
+        long end = System.nanoTime();
+        log.debug("listed {} entity policies", entityPolicies.size());
+        Metrics metrics = time("listAllEntityPolicies", start, end);
+        metrics.addCounter("listAllEntityPolicies", 1);
+        metrics.addMetric("listAllEntityPolicies.listed", entityPolicies.size());
+        return entityPolicies;
+    }
+
+    Cursor<User> _scanUsers();
+
+    /**
+     * @return cursor over all users, which must be consumed and closed in a transaction
+     */
+    default Cursor<User> scanUsers() {
+        log.debug("scanning users...");
+        MetricsScope.getMetrics().addCounter("scanUsers", 1);
+        return _scanUsers();
+    }
+
+    Cursor<Role> _scanRoles();
+
+    /**
+     * @return cursor over all roles, which must be consumed and closed in a transaction
+     */
+    default Cursor<Role> scanRoles() {
+        log.debug("scanning roles...");
+        MetricsScope.getMetrics().addCounter("scanRoles", 1);
+        return _scanRoles();
+    }
+
+    Cursor<Policy> _scanPolicies();
+
+    /**
+     * @return cursor over all policies, which must be consumed and closed in a transaction
+     */
+    default Cursor<Policy> scanPolicies() {
+        log.debug("scanning policies...");
+        MetricsScope.getMetrics().addCounter("scanPolicies", 1);
+        return _scanPolicies();
+    }
+
+    Cursor<UserRole> _scanUserRoles();
+
+    /**
+     * @return cursor over all user roles, which must be consumed and closed in a transaction
+     */
+    default Cursor<UserRole> scanUserRoles() {
+        log.debug("scanning user roles...");
+        MetricsScope.getMetrics().addCounter("scanUserRoles", 1);
+        return _scanUserRoles();
+    }
+
+    Cursor<EntityPolicy> _scanEntityPolicies();
+
+    /**
+     * @return cursor over all entity policies, which must be consumed and closed in a transaction
+     */
+    default Cursor<EntityPolicy> scanEntityPolicies() {
+        log.debug("scanning entity policies...");
+        MetricsScope.getMetrics().addCounter("scanEntityPolicies", 1);
+        return _scanEntityPolicies();
+    }
+
+    int _importUser(@Param("user") User user);
+
+    /**
+     * inserts users keeping their ids, one statement per row to be batched by a batch executor session
+     */
+    default void importUsers(Collection<User> users) {
+        validateCollectionNotEmptyContainsNoNull(users, "users");
+        users.forEach(user -> {
+            validateLongPositive(user.getId(), "user internal id");
+            validateStringNotBlank(user.getUserId(), "user id");
+            validateStringNotBlank(user.getUsername(), "username");
+        });
+        log.debug("importing {} users...", users.size());
+        long start = System.nanoTime();
+        for (User user : users) _importUser(user);
+        long end = System.nanoTime();
+        log.debug("imported {} users", users.size());
+        Metrics metrics = time("importUsers", start, end);
+        metrics.addCounter("importUsers", 1);
+        metrics.addMetric("importUsers.imported", users.size());
+    }
+
+    int _importRole(@Param("role") Role role);
+
+    /**
+     * inserts roles keeping their ids, one statement per row to be batched by a batch executor session
+     */
+    default void importRoles(Collection<Role> roles) {
+        validateCollectionNotEmptyContainsNoNull(roles, "roles");
+        roles.forEach(role -> {
+            validateLongPositive(role.getId(), "role id");
+            validateRole(role);
+        });
+        log.debug("importing {} roles...", roles.size());
+        long start = System.nanoTime();
+        for (Role role : roles) _importRole(role);
+        long end = System.nanoTime();
+        log.debug("imported {} roles", roles.size());
+        Metrics metrics = time("importRoles", start, end);
+        metrics.addCounter("importRoles", 1);
+        metrics.addMetric("importRoles.imported", roles.size());
+    }
+
+    int _importPolicy(@Param("policy") Policy policy);
+
+    /**
+     * inserts policies keeping their ids, one statement per row to be batched by a batch executor session
+     */
+    default void importPolicies(Collection<Policy> policies) {
+        validateCollectionNotEmptyContainsNoNull(policies, "policies");
+        policies.forEach(policy -> {
+            validateLongPositive(policy.getId(), "policy id");
+            validatePolicy(policy);
+        });
+        log.debug("importing {} policies...", policies.size());
+        long start = System.nanoTime();
+        for (Policy policy : policies) _importPolicy(policy);
+        long end = System.nanoTime();
+        log.debug("imported {} policies", policies.size());
+        Metrics metrics = time("importPolicies", start, end);
+        metrics.addCounter("importPolicies", 1);
+        metrics.addMetric("importPolicies.imported", policies.size());
+    }
+
+    int _importUserRole(@Param("userRole") UserRole userRole);
+
+    /**
+     * inserts user roles keeping their ids, one statement per row to be batched by a batch executor session
+     */
+    default void importUserRoles(Collection<UserRole> userRoles) {
+        validateCollectionNotEmptyContainsNoNull(userRoles, "user roles");
+        validateUserRoleKeys(userRoles);
+        log.debug("importing {} user roles...", userRoles.size());
+        long start = System.nanoTime();
+        for (UserRole userRole : userRoles) _importUserRole(userRole);
+        long end = System.nanoTime();
+        log.debug("imported {} user roles", userRoles.size());
+        Metrics metrics = time("importUserRoles", start, end);
+        metrics.addCounter("importUserRoles", 1);
+        metrics.addMetric("importUserRoles.imported", userRoles.size());
+    }
+
+    int _importEntityPolicy(@Param("entityPolicy") EntityPolicy entityPolicy);
+
+    /**
+     * inserts entity policies keeping their ids, one statement per row to be batched by a batch executor session
+     */
+    default void importEntityPolicies(Collection<EntityPolicy> entityPolicies) {
+        validateCollectionNotEmptyContainsNoNull(entityPolicies, "entity policies");
+        validateEntityPolicyKeys(entityPolicies);
+        log.debug("importing {} entity policies...", entityPolicies.size());
+        long start = System.nanoTime();
+        for (EntityPolicy entityPolicy : entityPolicies) _importEntityPolicy(entityPolicy);
+        long end = System.nanoTime();
+        log.debug("imported {} entity policies", entityPolicies.size());
+        Metrics metrics = time("importEntityPolicies", start, end);
+        metrics.addCounter("importEntityPolicies", 1);
+        metrics.addMetric("importEntityPolicies.imported", entityPolicies.size());
+    }
+
+    static void validateUserRoleKeys(Collection<UserRole> userRoles) {
+        validateCollectionNotEmptyContainsNoNull(userRoles, "user roles");
+        userRoles.forEach(ur -> {
+            validateLongPositive(ur.getUserId(), "user id");
+            validateLongPositive(ur.getRoleId(), "role id");
+        });
+    }
+
+    static void validateEntityPolicyKeys(Collection<EntityPolicy> entityPolicies) {
+        validateCollectionNotEmptyContainsNoNull(entityPolicies, "entity policies");
+        entityPolicies.forEach(ep -> {
+            validateObjectNotNull(ep.getEntityType(), "entity type");
+            validateLongPositive(ep.getEntityId(), "entity id");
+            validateLongPositive(ep.getPolicyId(), "policy id");
+        });
+    }
 }
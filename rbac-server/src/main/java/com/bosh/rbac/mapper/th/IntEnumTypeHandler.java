@@ -3,6 +3,7 @@ package com.bosh.rbac.mapper.th;
 import com.bosh.rbac.model.Action;
 import com.bosh.rbac.model.EntityType;
 import com.bosh.rbac.model.IntEnum;
+import com.bosh.rbac.model.IntEnums;
 import com.bosh.rbac.model.ResourceType;
 import org.apache.ibatis.type.BaseTypeHandler;
 import org.apache.ibatis.type.JdbcType;
@@ -13,13 +14,12 @@ import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Arrays;
 
 import static org.mib.common.validator.Validator.validateObjectNotNull;
 
 @MappedJdbcTypes({JdbcType.INTEGER})
 @MappedTypes({Action.class, EntityType.class, ResourceType.class})
-public class IntEnumTypeHandler<E extends Enum<?> & IntEnum> extends BaseTypeHandler<IntEnum> {
+public class IntEnumTypeHandler<E extends Enum<E> & IntEnum> extends BaseTypeHandler<IntEnum> {
 
     private final Class<E> type;
 
@@ -35,20 +35,24 @@ public class IntEnumTypeHandler<E extends Enum<?> & IntEnum> extends BaseTypeHan
 
     @Override
     public IntEnum getNullableResult(ResultSet resultSet, String s) throws SQLException {
-        return resultSet.wasNull() ? null : valueOf(resultSet.getInt(s));
+        int value = resultSet.getInt(s);
+        return resultSet.wasNull() ? null : valueOf(value);
     }
 
     @Override
     public IntEnum getNullableResult(ResultSet resultSet, int i) throws SQLException {
-        return resultSet.wasNull() ? null : valueOf(resultSet.getInt(i));
+        int value = resultSet.getInt(i);
+        return resultSet.wasNull() ? null : valueOf(value);
     }
 
     @Override
     public IntEnum getNullableResult(CallableStatement callableStatement, int i) throws SQLException {
-        return callableStatement.wasNull() ? null : valueOf(callableStatement.getInt(i));
+        int value = callableStatement.getInt(i);
+        return callableStatement.wasNull() ? null : valueOf(value);
     }
 
     private E valueOf(int value) {
-        return Arrays.stream(type.getEnumConstants()).filter(e -> e.getValue() == value).findFirst().orElse(null);
+        // an array lookup, this runs for every enum column of every row
+        return IntEnums.valueOf(type, value);
     }
 }
@@ -0,0 +1,38 @@
+package com.bosh.rbac.mapper.th;
+
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.utils.Fingerprints;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * binds a resource as its fingerprint, e.g. #{policy.resource, typeHandler=...}. fingerprints can't be read back as
+ * resources.
+ */
+public class ResourceFingerprintTypeHandler extends BaseTypeHandler<Resource> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement preparedStatement, int i, Resource resource, JdbcType jdbcType) throws SQLException {
+        preparedStatement.setLong(i, Fingerprints.resource(resource));
+    }
+
+    @Override
+    public Resource getNullableResult(ResultSet resultSet, String s) {
+        throw new UnsupportedOperationException("resource fingerprints can't be read as resources");
+    }
+
+    @Override
+    public Resource getNullableResult(ResultSet resultSet, int i) {
+        throw new UnsupportedOperationException("resource fingerprints can't be read as resources");
+    }
+
+    @Override
+    public Resource getNullableResult(CallableStatement callableStatement, int i) {
+        throw new UnsupportedOperationException("resource fingerprints can't be read as resources");
+    }
+}
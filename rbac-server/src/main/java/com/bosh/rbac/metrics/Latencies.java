@@ -0,0 +1,63 @@
+package com.bosh.rbac.metrics;
+
+import com.google.common.collect.Maps;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.mib.common.validator.Validator.validateStringNotBlank;
+
+/**
+ * nanosecond latency histograms by name, e.g. of mapper calls and rest endpoints. recording is wait free and takes no
+ * allocation once a name is known. histograms are read by windows, {@link #rotate} closes the current window and makes
+ * it the one {@link #summaries} tells about.
+ */
+public class Latencies {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final ConcurrentMap<String, Recorder> RECORDERS = new ConcurrentHashMap<>();
+    // last closed window of every name, guarded by the class
+    private static final Map<String, Histogram> WINDOWS = Maps.newHashMap();
+
+    private Latencies() {}
+
+    public static void record(String name, long nanos) {
+        Recorder recorder = RECORDERS.get(name);
+        if (recorder == null) recorder = RECORDERS.computeIfAbsent(name, n -> new Recorder(SIGNIFICANT_DIGITS));
+        // clocks may step back a little across cores
+        recorder.recordValue(Math.max(nanos, 0));
+    }
+
+    public static synchronized void rotate() {
+        // histograms of the window closed before are recycled
+        RECORDERS.forEach((name, recorder) -> WINDOWS.put(name, recorder.getIntervalHistogram(WINDOWS.get(name))));
+    }
+
+    /**
+     * drops what was recorded so far, including the last closed window
+     */
+    public static synchronized void reset() {
+        RECORDERS.values().forEach(Recorder::reset);
+        WINDOWS.clear();
+    }
+
+    /**
+     * @return summaries of the last closed window by name, names without latencies in the window are left out
+     */
+    public static synchronized Map<String, LatencySummary> summaries() {
+        Map<String, LatencySummary> summaries = Maps.newTreeMap();
+        WINDOWS.forEach((name, histogram) -> {
+            if (histogram.getTotalCount() > 0) summaries.put(name, LatencySummary.of(histogram));
+        });
+        return summaries;
+    }
+
+    public static synchronized LatencySummary summary(String name) {
+        validateStringNotBlank(name, "latency name");
+        Histogram histogram = WINDOWS.get(name);
+        return histogram == null || histogram.getTotalCount() == 0 ? null : LatencySummary.of(histogram);
+    }
+}
@@ -0,0 +1,72 @@
+package com.bosh.rbac.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+
+/**
+ * actuator endpoint of {@link Latencies}, e.g. GET /actuator/latencies. windows are closed every windowSeconds, so the
+ * percentiles are of the last full window rather than of everything since startup.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "latencies")
+public class LatencyEndpoint {
+
+    private final long windowSeconds;
+    private volatile ScheduledExecutorService scheduler;
+
+    @Autowired
+    public LatencyEndpoint(@Value("${rbac.latency.windowSeconds:60}") final long windowSeconds) {
+        validateLongPositive(windowSeconds, "latency window");
+        this.windowSeconds = windowSeconds;
+    }
+
+    @ReadOperation
+    public Map<String, LatencySummary> latencies() {
+        return Latencies.summaries();
+    }
+
+    @ReadOperation
+    public LatencySummary latency(@Selector String name) {
+        return Latencies.summary(name);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        log.info("resetting latencies");
+        Latencies.reset();
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("latency-window-%d").setDaemon(true).build()
+        );
+        scheduler.scheduleAtFixedRate(Latencies::rotate, windowSeconds, windowSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+}
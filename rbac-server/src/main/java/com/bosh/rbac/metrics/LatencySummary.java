@@ -0,0 +1,31 @@
+package com.bosh.rbac.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.HdrHistogram.Histogram;
+
+/**
+ * latency percentiles of a window in microseconds
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LatencySummary {
+
+    private long count;
+    private double p50;
+    private double p99;
+    private double p999;
+    private double max;
+
+    static LatencySummary of(Histogram histogram) {
+        return new LatencySummary(histogram.getTotalCount(), micros(histogram.getValueAtPercentile(50)),
+                micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                micros(histogram.getMaxValue()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
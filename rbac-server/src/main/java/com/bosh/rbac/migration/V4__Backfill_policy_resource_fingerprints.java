@@ -0,0 +1,43 @@
+package com.bosh.rbac.migration;
+
+import com.bosh.rbac.utils.Fingerprints;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * fills resource_fingerprint of the policies existing before the column was added, which sql of the databases can't
+ * compute. policies are read in pages by id, so neither the driver nor the migration holds the whole table.
+ */
+public class V4__Backfill_policy_resource_fingerprints extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (PreparedStatement select = connection.prepareStatement("select `id`, `resource_type`, `resource_value` from `policies`" +
+                " where `id`>? order by `id` limit " + BATCH_SIZE);
+             PreparedStatement update = connection.prepareStatement("update `policies` set `resource_fingerprint`=? where `id`=?")) {
+            long lastId = 0;
+            int pending;
+            do {
+                pending = 0;
+                select.setLong(1, lastId);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        update.setLong(1, Fingerprints.resource(rs.getInt(2), rs.getString(3)));
+                        update.setLong(2, lastId);
+                        update.addBatch();
+                        pending++;
+                    }
+                }
+                if (pending > 0) update.executeBatch();
+            } while (pending == BATCH_SIZE);
+        }
+    }
+}
@@ -1,39 +1,90 @@
 package com.bosh.rbac.service;
 
 import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.event.RbacChangeEvent;
 import com.bosh.rbac.mapper.RbacMapper;
-import com.bosh.rbac.model.Entity;
 import com.bosh.rbac.model.EntityPolicy;
 import com.bosh.rbac.model.EntityType;
 import com.bosh.rbac.model.Policy;
 import com.bosh.rbac.model.Role;
 import com.bosh.rbac.model.User;
 import com.bosh.rbac.model.UserRole;
+import com.bosh.rbac.rest.model.Assignment;
+import com.bosh.rbac.rest.model.AssignmentResult;
+import com.bosh.rbac.rest.model.ImportResult;
+import com.bosh.rbac.service.cache.ResourcePolicyFilter;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.mib.rest.exception.BadRequestException;
 import org.mib.rest.exception.ForbiddenException;
 import org.mib.rest.exception.ResourceNotFoundException;
 import org.mib.rest.exception.UnauthorizedException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ENTITY_POLICY_ASSIGNED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ENTITY_POLICY_UNASSIGNED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.POLICY_CREATED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.POLICY_DELETED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.POLICY_UPDATED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ROLE_CREATED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ROLE_DELETED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ROLE_UPDATED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.USER_ROLE_ASSIGNED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.USER_ROLE_UNASSIGNED;
 import static com.bosh.rbac.utils.Validator.validatePolicy;
 import static com.bosh.rbac.utils.Validator.validateRole;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.ASSIGNED;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.INVALID;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.NOT_FOUND;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.UNASSIGNED;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.UNCHANGED;
 import static org.mib.common.validator.Validator.validateLongPositive;
+import static org.mib.common.validator.Validator.validateObjectNotNull;
 import static org.mib.common.validator.Validator.validateStringNotBlank;
 
 @Slf4j
 @Service
 public class AdminService {
 
+    // rows per statement of a bulk assignment, keeps statements and their parameters reasonably sized
+    private static final int BULK_CHUNK_SIZE = 500;
+
     private final RbacMapper mapper;
+    private final ApplicationEventPublisher publisher;
+    private final ResourcePolicyFilter resourcePolicyFilter;
+    private final ExportService exportService;
+    private final ImportService importService;
+    private final int bulkMaxSize;
 
     @Autowired
-    public AdminService(final RbacMapper mapper) {
+    public AdminService(final RbacMapper mapper, final ApplicationEventPublisher publisher,
+                        final ResourcePolicyFilter resourcePolicyFilter, final ExportService exportService,
+                        final ImportService importService,
+                        @Value("${rbac.admin.bulk.maxSize:10000}") final int bulkMaxSize) {
+        validateLongPositive(bulkMaxSize, "bulk assignment max size");
         this.mapper = mapper;
+        this.publisher = publisher;
+        this.resourcePolicyFilter = resourcePolicyFilter;
+        this.exportService = exportService;
+        this.importService = importService;
+        this.bulkMaxSize = bulkMaxSize;
     }
 
     public Role createRole(Role role) {
@@ -45,6 +96,7 @@ public class AdminService {
         log.debug("creating role {}...", role);
         mapper.insertRole(role);
         log.debug("created role with id {}", role.getId());
+        publisher.publishEvent(RbacChangeEvent.role(this, ROLE_CREATED, role.getId()));
         return role;
     }
 
@@ -59,6 +111,7 @@ public class AdminService {
         role.setDescription(description);
         if (mapper.updateRole(role) != 1) throw new RuntimeException("failed to update role " + id + " description");
         log.debug("updated description for role {}", id);
+        publisher.publishEvent(RbacChangeEvent.role(this, ROLE_UPDATED, id));
         return role;
     }
 
@@ -66,16 +119,17 @@ public class AdminService {
         ensureAdmin();
         validateLongPositive(id, "role id");
         log.debug("deleting role {}...", id);
-        // check users assigned with this role
-        long userCount = mapper.countRoleUsers(id);
+        // check users assigned with this role, by the counter kept on the role
+        long userCount = mapper.getRoleUserCount(id);
         log.debug("role {} assigned to {} users", id, userCount);
         if (userCount > 0) throw new BadRequestException("role still assigned to users");
         // check policies assigned to this role
-        long policyCount = mapper.countEntityPolicies(new Entity(EntityType.Role, id));
+        long policyCount = mapper.getRolePolicyCount(id);
         log.debug("role {} assigned with {} policies", id, policyCount);
         if (policyCount > 0) throw new BadRequestException("role still assigned with policies");
         int deleted = mapper.deleteRoles(Lists.newArrayList(id));
         log.debug("deleted {} role", deleted);
+        if (deleted > 0) publisher.publishEvent(RbacChangeEvent.role(this, ROLE_DELETED, id));
     }
 
     public Policy createPolicy(Policy policy) {
@@ -85,8 +139,11 @@ public class AdminService {
         policy.setCreatedAt(now);
         policy.setUpdatedAt(now);
         log.debug("creating policy {}...", policy);
+        // the filter must know the resource before anyone could find the policy
+        resourcePolicyFilter.put(policy.getResource());
         mapper.insertPolicy(policy);
         log.debug("created policy with id {}", policy.getId());
+        publisher.publishEvent(RbacChangeEvent.policy(this, POLICY_CREATED, policy.getId()));
         return policy;
     }
 
@@ -101,6 +158,7 @@ public class AdminService {
         policy.setDescription(description);
         if (mapper.updatePolicy(policy) != 1) throw new RuntimeException("failed to update policy " + id + " description");
         log.debug("updated description for policy {}", id);
+        publisher.publishEvent(RbacChangeEvent.policy(this, POLICY_UPDATED, id));
         return policy;
     }
 
@@ -109,131 +167,349 @@ public class AdminService {
         validateLongPositive(id, "policy id");
         log.debug("deleting policy {}...", id);
         // check entities assigned with this policy
-        long entityCount = mapper.countPolicyEntities(id);
+        long entityCount = mapper.getPolicyEntityCount(id);
         log.debug("policy {} assigned to {} entities", id, entityCount);
         if (entityCount > 0) throw new BadRequestException("policy still assigned to entities");
         int deleted = mapper.deletePolicies(Lists.newArrayList(id));
         log.debug("deleted {} policy", deleted);
+        if (deleted > 0) publisher.publishEvent(RbacChangeEvent.policy(this, POLICY_DELETED, id));
     }
 
-    public void assignRoleToUser(String userId, long roleId) {
+    /**
+     * assigns the role by an insert that does nothing if the role doesn't exist or is assigned already, the role is
+     * only looked up if nothing is inserted, to tell one from the other. a change takes four statements: the user
+     * lookup, as the events and every cache they invalidate are keyed by the internal id no insert could hand back, the
+     * insert, the effective policies and the counter, which live in tables of their own. user assignments below are
+     * the same.
+     */
+    @Transactional
+    public AssignmentResult assignRoleToUser(String userId, long roleId) {
         ensureAdmin();
         validateStringNotBlank(userId, "user id");
         validateLongPositive(roleId, "role id");
         log.debug("assigning role {} to user {}...", roleId, userId);
-        User user = mapper.getUser(userId);
-        if (user == null) throw new ResourceNotFoundException("no user found for " + userId);
-        Role role = mapper.getRole(roleId);
-        if (role == null) throw new ResourceNotFoundException("no role found for " + roleId);
-        UserRole userRole = mapper.getUserRole(user.getId(), roleId);
-        if (userRole != null) {
+        Assignment assignment = Assignment.userRole(userId, roleId);
+        User user = findUser(userId);
+        if (mapper.assignUserRole(user.getId(), roleId) == 0) {
+            ensureRole(roleId);
             log.debug("role {} already assigned to user {}", roleId, userId);
-            return;
-        }
-        if (mapper.insertUserRole(user.getId(), roleId) != 1){
-            throw new RuntimeException("failed to assign role " + role.getName() + " to user " + userId);
+            return new AssignmentResult(assignment, UNCHANGED, "already assigned");
         }
-        log.debug("assigned role {} to user {}", role.getName(), userId);
+        mapper.insertUserRoleEffectivePolicies(user.getId(), roleId);
+        mapper.addRoleUserCount(roleId, 1);
+        log.debug("assigned role {} to user {}", roleId, userId);
+        publisher.publishEvent(RbacChangeEvent.userRole(this, USER_ROLE_ASSIGNED, user.getId(), roleId));
+        return new AssignmentResult(assignment, ASSIGNED, null);
     }
 
-    public void unassignRoleFromUser(String userId, long roleId) {
+    @Transactional
+    public AssignmentResult unassignRoleFromUser(String userId, long roleId) {
         ensureAdmin();
         validateStringNotBlank(userId, "user id");
         validateLongPositive(roleId, "role id");
         log.debug("unassigning role {} from user {}...", roleId, userId);
-        User user = mapper.getUser(userId);
-        if (user == null) throw new ResourceNotFoundException("no user found for " + userId);
-        Role role = mapper.getRole(roleId);
-        if (role == null) throw new ResourceNotFoundException("no role found for " + roleId);
-        UserRole userRole = mapper.getUserRole(user.getId(), roleId);
-        if (userRole == null) {
+        Assignment assignment = Assignment.userRole(userId, roleId);
+        User user = findUser(userId);
+        if (mapper.deleteUserRole(user.getId(), roleId) == 0) {
+            ensureRole(roleId);
             log.debug("role {} not assigned to user {}", roleId, userId);
-            return;
-        }
-        if (mapper.deleteUserRole(user.getId(), roleId) != 1){
-            throw new RuntimeException("failed to unassign role " + role.getName() + " from user " + userId);
+            return new AssignmentResult(assignment, UNCHANGED, "not assigned");
         }
-        log.debug("unassigned role {} from user {}", role.getName(), userId);
+        mapper.deleteUserRoleEffectivePolicies(user.getId(), roleId);
+        mapper.addRoleUserCount(roleId, -1);
+        log.debug("unassigned role {} from user {}", roleId, userId);
+        publisher.publishEvent(RbacChangeEvent.userRole(this, USER_ROLE_UNASSIGNED, user.getId(), roleId));
+        return new AssignmentResult(assignment, UNASSIGNED, null);
     }
 
-    public void assignPolicyToUser(String userId, long policyId) {
+    @Transactional
+    public AssignmentResult assignPolicyToUser(String userId, long policyId) {
         ensureAdmin();
         validateStringNotBlank(userId, "user id");
         validateLongPositive(policyId, "policy id");
         log.debug("assigning policy {} to user {}...", policyId, userId);
-        User user = mapper.getUser(userId);
-        if (user == null) throw new ResourceNotFoundException("no user found for " + userId);
-        Policy policy = mapper.getPolicy(policyId);
-        if (policy == null) throw new ResourceNotFoundException("no policy found for " + policyId);
-        EntityPolicy entityPolicy = mapper.getEntityPolicy(EntityType.User, user.getId(), policyId);
-        if (entityPolicy != null) {
-            log.debug("policy {} already assigned to user {}", policy.getName(), userId);
-            return;
-        }
-        if (mapper.insertEntityPolicy(EntityType.User, user.getId(), policyId) != 1) {
-            throw new RuntimeException("failed to assign policy " + policy.getName() + " to user " + userId);
+        Assignment assignment = Assignment.userPolicy(userId, policyId);
+        User user = findUser(userId);
+        if (mapper.assignEntityPolicy(EntityType.User, user.getId(), policyId) == 0) {
+            ensurePolicy(policyId);
+            log.debug("policy {} already assigned to user {}", policyId, userId);
+            return new AssignmentResult(assignment, UNCHANGED, "already assigned");
         }
-        log.debug("assigned policy {} to user {}", policy.getName(), userId);
+        mapper.insertEntityPolicyEffectivePolicies(EntityType.User, user.getId(), policyId);
+        mapper.addPolicyEntityCount(policyId, 1);
+        log.debug("assigned policy {} to user {}", policyId, userId);
+        publisher.publishEvent(RbacChangeEvent.entityPolicy(this, ENTITY_POLICY_ASSIGNED, EntityType.User, user.getId(), policyId));
+        return new AssignmentResult(assignment, ASSIGNED, null);
     }
 
-    public void unassignPolicyFromUser(String userId, long policyId) {
+    @Transactional
+    public AssignmentResult unassignPolicyFromUser(String userId, long policyId) {
         ensureAdmin();
         validateStringNotBlank(userId, "user id");
         validateLongPositive(policyId, "policy id");
         log.debug("unassigning policy {} from user {}...", policyId, userId);
-        User user = mapper.getUser(userId);
-        if (user == null) throw new ResourceNotFoundException("no user found for " + userId);
-        Policy policy = mapper.getPolicy(policyId);
-        if (policy == null) throw new ResourceNotFoundException("no policy found for " + policyId);
-        EntityPolicy entityPolicy = mapper.getEntityPolicy(EntityType.User, user.getId(), policyId);
-        if (entityPolicy == null) {
-            log.debug("policy {} not assigned to user {}", policy.getName(), userId);
-            return;
-        }
-        if (mapper.deleteEntityPolicy(EntityType.User, user.getId(), policyId) != 1) {
-            throw new RuntimeException("failed to unassign policy " + policy.getName() + " from user " + userId);
+        Assignment assignment = Assignment.userPolicy(userId, policyId);
+        User user = findUser(userId);
+        if (mapper.deleteEntityPolicy(EntityType.User, user.getId(), policyId) == 0) {
+            ensurePolicy(policyId);
+            log.debug("policy {} not assigned to user {}", policyId, userId);
+            return new AssignmentResult(assignment, UNCHANGED, "not assigned");
         }
-        log.debug("unassigned policy {} from user {}", policy.getName(), userId);
+        mapper.deleteEntityPolicyEffectivePolicies(EntityType.User, user.getId(), policyId);
+        mapper.addPolicyEntityCount(policyId, -1);
+        log.debug("unassigned policy {} from user {}", policyId, userId);
+        publisher.publishEvent(RbacChangeEvent.entityPolicy(this, ENTITY_POLICY_UNASSIGNED, EntityType.User, user.getId(), policyId));
+        return new AssignmentResult(assignment, UNASSIGNED, null);
     }
 
-    public void assignPolicyToRole(long roleId, long policyId) {
+    @Transactional
+    public AssignmentResult assignPolicyToRole(long roleId, long policyId) {
         ensureAdmin();
         validateLongPositive(roleId, "role id");
         validateLongPositive(policyId, "policy id");
         log.debug("assigning policy {} to role {}...", policyId, roleId);
-        Role role = mapper.getRole(roleId);
-        if (role == null) throw new ResourceNotFoundException("no role found for " + roleId);
-        Policy policy = mapper.getPolicy(policyId);
-        if (policy == null) throw new ResourceNotFoundException("no policy found for " + policyId);
-        EntityPolicy entityPolicy = mapper.getEntityPolicy(EntityType.Role, roleId, policyId);
-        if (entityPolicy != null) {
-            log.debug("policy {} already assigned to role {}", policy.getName(), role.getName());
-            return;
+        Assignment assignment = Assignment.rolePolicy(roleId, policyId);
+        if (mapper.assignEntityPolicy(EntityType.Role, roleId, policyId) == 0) {
+            ensureRole(roleId);
+            ensurePolicy(policyId);
+            log.debug("policy {} already assigned to role {}", policyId, roleId);
+            return new AssignmentResult(assignment, UNCHANGED, "already assigned");
         }
-        if (mapper.insertEntityPolicy(EntityType.Role, roleId, policyId) != 1) {
-            throw new RuntimeException("failed to assign policy " + policy.getName() + " to role " + role.getName());
-        }
-        log.debug("assigned policy {} to role {}", policy.getName(), role.getName());
+        mapper.insertEntityPolicyEffectivePolicies(EntityType.Role, roleId, policyId);
+        mapper.addRolePolicyCount(roleId, 1);
+        mapper.addPolicyEntityCount(policyId, 1);
+        log.debug("assigned policy {} to role {}", policyId, roleId);
+        publisher.publishEvent(RbacChangeEvent.entityPolicy(this, ENTITY_POLICY_ASSIGNED, EntityType.Role, roleId, policyId));
+        return new AssignmentResult(assignment, ASSIGNED, null);
     }
 
-    public void unassignPolicyFromRole(long roleId, long policyId) {
+    @Transactional
+    public AssignmentResult unassignPolicyFromRole(long roleId, long policyId) {
         ensureAdmin();
         validateLongPositive(roleId, "role id");
         validateLongPositive(policyId, "policy id");
         log.debug("unassigning policy {} from role {}...", policyId, roleId);
-        Role role = mapper.getRole(roleId);
-        if (role == null) throw new ResourceNotFoundException("no role found for " + roleId);
-        Policy policy = mapper.getPolicy(policyId);
-        if (policy == null) throw new ResourceNotFoundException("no policy found for " + policyId);
-        EntityPolicy entityPolicy = mapper.getEntityPolicy(EntityType.Role, roleId, policyId);
-        if (entityPolicy == null) {
-            log.debug("policy {} not assigned to role {}", policy.getName(), roleId);
-            return;
+        Assignment assignment = Assignment.rolePolicy(roleId, policyId);
+        if (mapper.deleteEntityPolicy(EntityType.Role, roleId, policyId) == 0) {
+            ensureRole(roleId);
+            ensurePolicy(policyId);
+            log.debug("policy {} not assigned to role {}", policyId, roleId);
+            return new AssignmentResult(assignment, UNCHANGED, "not assigned");
         }
-        if (mapper.deleteEntityPolicy(EntityType.Role, roleId, policyId) != 1) {
-            throw new RuntimeException("failed to unassign policy " + policy.getName() + " from role " + role.getName());
+        mapper.deleteEntityPolicyEffectivePolicies(EntityType.Role, roleId, policyId);
+        mapper.addRolePolicyCount(roleId, -1);
+        mapper.addPolicyEntityCount(policyId, -1);
+        log.debug("unassigned policy {} from role {}", policyId, roleId);
+        publisher.publishEvent(RbacChangeEvent.entityPolicy(this, ENTITY_POLICY_UNASSIGNED, EntityType.Role, roleId, policyId));
+        return new AssignmentResult(assignment, UNASSIGNED, null);
+    }
+
+    /**
+     * assigns roles to users, policies to users and policies to roles in one transaction
+     * @return result of each assignment in the same order
+     */
+    @Transactional
+    public List<AssignmentResult> assign(List<Assignment> assignments) {
+        return bulk(assignments, true);
+    }
+
+    /**
+     * unassigns roles from users, policies from users and policies from roles in one transaction
+     * @return result of each assignment in the same order
+     */
+    @Transactional
+    public List<AssignmentResult> unassign(List<Assignment> assignments) {
+        return bulk(assignments, false);
+    }
+
+    private List<AssignmentResult> bulk(List<Assignment> assignments, boolean assign) {
+        ensureAdmin();
+        validateObjectNotNull(assignments, "assignments");
+        if (assignments.size() > bulkMaxSize) {
+            throw new BadRequestException("at most " + bulkMaxSize + " assignments per request, got " + assignments.size());
+        }
+        log.debug("{} {} items...", assign ? "assigning" : "unassigning", assignments.size());
+        AssignmentResult[] results = new AssignmentResult[assignments.size()];
+        Set<String> userIds = Sets.newHashSet();
+        Set<Long> roleIds = Sets.newHashSet();
+        Set<Long> policyIds = Sets.newHashSet();
+        for (int i = 0; i < assignments.size(); i++) {
+            Assignment assignment = assignments.get(i);
+            String invalid = validateAssignment(assignment);
+            if (invalid != null) {
+                results[i] = new AssignmentResult(assignment, INVALID, invalid);
+                continue;
+            }
+            if (assignment.getUserId() != null) userIds.add(assignment.getUserId());
+            if (assignment.getRoleId() != null) roleIds.add(assignment.getRoleId());
+            if (assignment.getPolicyId() != null) policyIds.add(assignment.getPolicyId());
+        }
+        // one query per kind no matter how many items refer to it
+        Map<String, User> users = userIds.isEmpty()
+                ? Collections.emptyMap() : Maps.uniqueIndex(mapper.getUsers(userIds), User::getUserId);
+        Map<Long, Role> roles = roleIds.isEmpty()
+                ? Collections.emptyMap() : Maps.uniqueIndex(mapper.getRoles(roleIds), Role::getId);
+        Map<Long, Policy> policies = policyIds.isEmpty()
+                ? Collections.emptyMap() : Maps.uniqueIndex(mapper.getPolicies(policyIds), Policy::getId);
+
+        // keys without created at, each mapped to the first item asking for it
+        Map<UserRole, Integer> userRoles = Maps.newLinkedHashMap();
+        Map<EntityPolicy, Integer> entityPolicies = Maps.newLinkedHashMap();
+        for (int i = 0; i < assignments.size(); i++) {
+            if (results[i] != null) continue;
+            Assignment assignment = assignments.get(i);
+            User user = assignment.getUserId() == null ? null : users.get(assignment.getUserId());
+            if (assignment.getUserId() != null && user == null) {
+                results[i] = new AssignmentResult(assignment, NOT_FOUND, "no user found for " + assignment.getUserId());
+            } else if (assignment.getRoleId() != null && !roles.containsKey(assignment.getRoleId())) {
+                results[i] = new AssignmentResult(assignment, NOT_FOUND, "no role found for " + assignment.getRoleId());
+            } else if (assignment.getPolicyId() != null && !policies.containsKey(assignment.getPolicyId())) {
+                results[i] = new AssignmentResult(assignment, NOT_FOUND, "no policy found for " + assignment.getPolicyId());
+            } else if (assignment.getPolicyId() == null) {
+                if (userRoles.putIfAbsent(new UserRole(user.getId(), assignment.getRoleId(), null), i) != null) {
+                    results[i] = new AssignmentResult(assignment, UNCHANGED, "repeated in the request");
+                }
+            } else {
+                EntityPolicy key = user != null
+                        ? new EntityPolicy(EntityType.User, user.getId(), assignment.getPolicyId(), null)
+                        : new EntityPolicy(EntityType.Role, assignment.getRoleId(), assignment.getPolicyId(), null);
+                if (entityPolicies.putIfAbsent(key, i) != null) {
+                    results[i] = new AssignmentResult(assignment, UNCHANGED, "repeated in the request");
+                }
+            }
+        }
+
+        Set<UserRole> existingUserRoles = Sets.newHashSet();
+        for (List<UserRole> chunk : Iterables.partition(userRoles.keySet(), BULK_CHUNK_SIZE)) {
+            mapper.getUserRolesByKeys(chunk).forEach(ur ->
+                    existingUserRoles.add(new UserRole(ur.getUserId(), ur.getRoleId(), null)));
         }
-        log.debug("unassigned policy {} from user {}", policy.getName(), role.getName());
+        Set<EntityPolicy> existingEntityPolicies = Sets.newHashSet();
+        for (List<EntityPolicy> chunk : Iterables.partition(entityPolicies.keySet(), BULK_CHUNK_SIZE)) {
+            mapper.getEntityPoliciesByKeys(chunk).forEach(ep -> existingEntityPolicies.add(
+                    new EntityPolicy(ep.getEntityType(), ep.getEntityId(), ep.getPolicyId(), null)));
+        }
+        List<UserRole> changedUserRoles = changed(userRoles, existingUserRoles, assign, assignments, results);
+        List<EntityPolicy> changedEntityPolicies = changed(entityPolicies, existingEntityPolicies, assign, assignments, results);
+
+        // policies of roles are materialized before users join the roles, so a user assigned a role and the role
+        // assigned a policy in the same request gets the policy through the role once
+        for (EntityType entityType : EntityType.values()) {
+            List<EntityPolicy> ofType = Lists.newArrayList();
+            for (EntityPolicy ep : changedEntityPolicies) {
+                if (ep.getEntityType() == entityType) ofType.add(ep);
+            }
+            for (List<EntityPolicy> chunk : Lists.partition(ofType, BULK_CHUNK_SIZE)) {
+                if (assign) {
+                    if (mapper.insertEntityPolicies(chunk) != chunk.size()) {
+                        throw new RuntimeException("failed to assign " + chunk.size() + " entity policies");
+                    }
+                    mapper.insertEntityPoliciesEffectivePolicies(entityType, chunk);
+                } else {
+                    if (mapper.deleteEntityPoliciesByKeys(chunk) != chunk.size()) {
+                        throw new RuntimeException("failed to unassign " + chunk.size() + " entity policies");
+                    }
+                    mapper.deleteEntityPoliciesEffectivePolicies(entityType, chunk);
+                }
+            }
+        }
+        for (List<UserRole> chunk : Lists.partition(changedUserRoles, BULK_CHUNK_SIZE)) {
+            if (assign) {
+                if (mapper.insertUserRoles(chunk) != chunk.size()) {
+                    throw new RuntimeException("failed to assign " + chunk.size() + " user roles");
+                }
+                mapper.insertUserRolesEffectivePolicies(chunk);
+            } else {
+                if (mapper.deleteUserRolesByKeys(chunk) != chunk.size()) {
+                    throw new RuntimeException("failed to unassign " + chunk.size() + " user roles");
+                }
+                mapper.deleteUserRolesEffectivePolicies(chunk);
+            }
+        }
+        // counters of the roles and policies changed are recounted rather than adjusted one item at a time, in id order
+        // so concurrent bulk changes lock the rows in the same order
+        Set<Long> changedRoleIds = Sets.newTreeSet();
+        Set<Long> changedPolicyIds = Sets.newTreeSet();
+        changedUserRoles.forEach(ur -> changedRoleIds.add(ur.getRoleId()));
+        for (EntityPolicy ep : changedEntityPolicies) {
+            if (ep.getEntityType() == EntityType.Role) changedRoleIds.add(ep.getEntityId());
+            changedPolicyIds.add(ep.getPolicyId());
+        }
+        for (List<Long> chunk : Iterables.partition(changedRoleIds, BULK_CHUNK_SIZE)) mapper.refreshRoleCounters(chunk);
+        for (List<Long> chunk : Iterables.partition(changedPolicyIds, BULK_CHUNK_SIZE)) mapper.refreshPolicyCounters(chunk);
+        log.debug("{} {} user roles and {} entity policies", assign ? "assigned" : "unassigned",
+                changedUserRoles.size(), changedEntityPolicies.size());
+
+        changedEntityPolicies.forEach(ep -> publisher.publishEvent(RbacChangeEvent.entityPolicy(this,
+                assign ? ENTITY_POLICY_ASSIGNED : ENTITY_POLICY_UNASSIGNED, ep.getEntityType(), ep.getEntityId(), ep.getPolicyId())));
+        changedUserRoles.forEach(ur -> publisher.publishEvent(RbacChangeEvent.userRole(this,
+                assign ? USER_ROLE_ASSIGNED : USER_ROLE_UNASSIGNED, ur.getUserId(), ur.getRoleId())));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * fills in results of the items for the keys given
+     * @return keys to insert or delete, i.e. the ones not existing when assigning and existing when unassigning
+     */
+    private static <K> List<K> changed(Map<K, Integer> keys, Set<K> existing, boolean assign,
+                                       List<Assignment> assignments, AssignmentResult[] results) {
+        List<K> changed = Lists.newArrayList();
+        for (Map.Entry<K, Integer> entry : keys.entrySet()) {
+            Assignment assignment = assignments.get(entry.getValue());
+            if (existing.contains(entry.getKey()) == assign) {
+                results[entry.getValue()] = new AssignmentResult(assignment, UNCHANGED, assign ? "already assigned" : "not assigned");
+            } else {
+                results[entry.getValue()] = new AssignmentResult(assignment, assign ? ASSIGNED : UNASSIGNED, null);
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return why the assignment is invalid, null if it's valid
+     */
+    private static String validateAssignment(Assignment assignment) {
+        if (assignment == null) return "null assignment";
+        int set = (assignment.getUserId() != null ? 1 : 0) + (assignment.getRoleId() != null ? 1 : 0)
+                + (assignment.getPolicyId() != null ? 1 : 0);
+        if (set != 2) return "exactly two of user id, role id and policy id should be set";
+        if (assignment.getUserId() != null && StringUtils.isBlank(assignment.getUserId())) return "blank user id";
+        if (assignment.getRoleId() != null && assignment.getRoleId() <= 0) return "non positive role id";
+        if (assignment.getPolicyId() != null && assignment.getPolicyId() <= 0) return "non positive policy id";
+        return null;
+    }
+
+    /**
+     * @return body streaming the whole rbac state as ndjson, written once the response is being sent
+     */
+    public StreamingResponseBody export() {
+        ensureAdmin();
+        log.debug("exporting rbac state for {}...", RbacScope.getUser().getUserId());
+        return exportService::export;
+    }
+
+    /**
+     * imports ndjson of the export format, see {@link ImportService}
+     * @param skip number of lines committed by a previous attempt of the same input
+     */
+    public ImportResult importRecords(InputStream is, long skip) {
+        ensureAdmin();
+        return importService.importRecords(is, skip);
+    }
+
+    private User findUser(String userId) {
+        User user = mapper.getUser(userId);
+        if (user == null) throw new ResourceNotFoundException("no user found for " + userId);
+        return user;
+    }
+
+    private void ensureRole(long roleId) {
+        if (mapper.getRole(roleId) == null) throw new ResourceNotFoundException("no role found for " + roleId);
+    }
+
+    private void ensurePolicy(long policyId) {
+        if (mapper.getPolicy(policyId) == null) throw new ResourceNotFoundException("no policy found for " + policyId);
     }
 
     private void ensureAdmin() {
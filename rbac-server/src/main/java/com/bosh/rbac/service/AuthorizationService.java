@@ -3,15 +3,26 @@ package com.bosh.rbac.service;
 import com.bosh.rbac.auth.model.AuthRequest;
 import com.bosh.rbac.auth.model.AuthResponse;
 import com.bosh.rbac.auth.model.ResourceAccess;
+import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.datasource.ReadRoute;
 import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.service.engine.PolicyEngine;
+import com.bosh.rbac.service.engine.PolicySnapshot;
 import com.bosh.rbac.service.resource.ResourceDecorator;
 import com.bosh.rbac.utils.Validator;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.mib.common.validator.Validator.validateCollectionNotEmptyContainsNoNull;
@@ -23,12 +34,24 @@ public class AuthorizationService {
 
     private final Authorizer authorizer;
     private final ResourceDecorator resourceDecorator;
+    private final PolicyEngine engine;
+    private final boolean batchEnabled;
+    private final ExecutorService evaluationExecutor;
+    private final int parallelThreshold;
 
     @Autowired
     public AuthorizationService(final Authorizer authorizer,
-                                @Qualifier("resourceDecorator") final ResourceDecorator resourceDecorator) {
+                                @Qualifier("resourceDecorator") final ResourceDecorator resourceDecorator,
+                                final PolicyEngine engine,
+                                @Value("${rbac.authorization.batch.enabled:false}") final boolean batchEnabled,
+                                @Qualifier("evaluationExecutor") final ExecutorService evaluationExecutor,
+                                @Value("${rbac.authorization.parallel.threshold:32}") final int parallelThreshold) {
         this.authorizer = authorizer;
         this.resourceDecorator = resourceDecorator;
+        this.engine = engine;
+        this.batchEnabled = batchEnabled;
+        this.evaluationExecutor = evaluationExecutor;
+        this.parallelThreshold = parallelThreshold;
     }
 
     public AuthResponse authorize(AuthRequest request) {
@@ -36,20 +59,71 @@ public class AuthorizationService {
         List<ResourceAccess> resourceAccesses = request.getResourceAccesses();
         validateCollectionNotEmptyContainsNoNull(resourceAccesses, "resource accesses");
         resourceAccesses.forEach(Validator::validateResourceAccess);
-        // decorate resources
-        resourceAccesses.forEach(resourceAccess -> {
-            Resource resource = resourceAccess.getResource();
-            log.debug("decorating resource {}...", resource);
-            List<Resource> decoratedResources = resourceDecorator.decorate(resource);
-            log.debug("decorated with {}", decoratedResources);
-            if (decoratedResources == null || decoratedResources.isEmpty()) return;
-            if (resourceAccess.getDecoratedResources() == null) resourceAccess.setDecoratedResources(decoratedResources);
-            else resourceAccess.getDecoratedResources().addAll(decoratedResources);
+        // accesses are independent of each other, large requests are evaluated concurrently
+        boolean parallel = parallelThreshold > 0 && resourceAccesses.size() >= parallelThreshold;
+        // decorate resources, except the ones whose ancestors are looked up by the policy engine index
+        PolicySnapshot snapshot = engine.getSnapshot();
+        prefetch(resourceAccesses, snapshot);
+        evaluate(resourceAccesses, parallel, resourceAccess -> {
+            decorate(resourceAccess, snapshot);
+            return resourceAccess;
         });
         log.debug("authorizing request {}...", request);
         AuthResponse authResponse = new AuthResponse();
-        authResponse.setResults(resourceAccesses.stream().map(authorizer::authorize).collect(Collectors.toList()));
+        if (!batchEnabled) authResponse.setResults(evaluate(resourceAccesses, parallel, authorizer::authorize));
+        else if (!parallel) authResponse.setResults(authorizer.authorizeAll(resourceAccesses));
+        else {
+            // batches of threshold size are authorized concurrently and joined back in request order
+            List<List<ResourceAccess>> chunks = Lists.partition(resourceAccesses, parallelThreshold);
+            authResponse.setResults(evaluate(chunks, true, authorizer::authorizeAll).stream()
+                    .flatMap(List::stream).collect(Collectors.toList()));
+        }
         log.debug("authorized response {}", authResponse);
         return authResponse;
     }
+
+    private void prefetch(List<ResourceAccess> resourceAccesses, PolicySnapshot snapshot) {
+        // one bulk lookup for the whole request instead of one per resource
+        List<Resource> resources = Lists.newArrayListWithCapacity(resourceAccesses.size());
+        for (ResourceAccess resourceAccess : resourceAccesses) {
+            Resource resource = resourceAccess.getResource();
+            if (snapshot == null || !snapshot.indexesAncestors(resource.getType())) resources.add(resource);
+        }
+        if (!resources.isEmpty()) resourceDecorator.prefetch(resources);
+    }
+
+    private void decorate(ResourceAccess resourceAccess, PolicySnapshot snapshot) {
+        Resource resource = resourceAccess.getResource();
+        if (snapshot != null && snapshot.indexesAncestors(resource.getType())) return;
+        log.debug("decorating resource {}...", resource);
+        List<Resource> decoratedResources = resourceDecorator.decorate(resource);
+        log.debug("decorated with {}", decoratedResources);
+        if (decoratedResources == null || decoratedResources.isEmpty()) return;
+        if (resourceAccess.getDecoratedResources() == null) resourceAccess.setDecoratedResources(decoratedResources);
+        else resourceAccess.getDecoratedResources().addAll(decoratedResources);
+    }
+
+    private <I, T> List<T> evaluate(List<I> items, boolean parallel, Function<I, T> evaluation) {
+        if (!parallel) return items.stream().map(evaluation).collect(Collectors.toList());
+        List<Future<T>> futures = Lists.newArrayListWithCapacity(items.size());
+        for (I item : items) {
+            // evaluations read from wherever the request does
+            futures.add(evaluationExecutor.submit(ReadRoute.wrap(RbacScope.wrap(() -> evaluation.apply(item)))));
+        }
+        List<T> results = Lists.newArrayListWithCapacity(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted evaluating resource accesses", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("failed to evaluate resource accesses", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
 }
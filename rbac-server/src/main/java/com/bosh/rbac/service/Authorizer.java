@@ -9,16 +9,31 @@ import com.bosh.rbac.model.EntityPolicy;
 import com.bosh.rbac.model.EntityType;
 import com.bosh.rbac.model.Policy;
 import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.Role;
 import com.bosh.rbac.model.User;
+import com.bosh.rbac.service.cache.ResourcePolicyFilter;
+import com.bosh.rbac.service.cache.UserPolicyCache;
+import com.bosh.rbac.service.engine.GlobPolicyIndex;
+import com.bosh.rbac.service.engine.PolicyEngine;
+import com.bosh.rbac.service.engine.PolicySnapshot;
+import com.bosh.rbac.utils.Validator;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.bosh.rbac.utils.Validator.validateResourceAccess;
+import static org.mib.common.validator.Validator.validateCollectionNotEmptyContainsNoNull;
 
 @Slf4j
 @Service
@@ -26,41 +41,181 @@ public class Authorizer {
 
     private final RbacMapper mapper;
     private final PolicyPredicate predicate;
+    private final PolicyEngine engine;
+    private final UserPolicyCache userPolicyCache;
+    private final ResourcePolicyFilter resourcePolicyFilter;
+    private final GlobPolicyIndex globPolicyIndex;
 
     @Autowired
-    public Authorizer(final RbacMapper mapper, final PolicyPredicate predicate) {
+    public Authorizer(final RbacMapper mapper, final PolicyPredicate predicate, final PolicyEngine engine,
+                      final UserPolicyCache userPolicyCache, final ResourcePolicyFilter resourcePolicyFilter,
+                      final GlobPolicyIndex globPolicyIndex) {
         this.mapper = mapper;
         this.predicate = predicate;
+        this.engine = engine;
+        this.userPolicyCache = userPolicyCache;
+        this.resourcePolicyFilter = resourcePolicyFilter;
+        this.globPolicyIndex = globPolicyIndex;
     }
 
     ResourceAccessAuth authorize(ResourceAccess resourceAccess) {
         validateResourceAccess(resourceAccess);
         Action action = resourceAccess.getAction();
+        List<Resource> resources = resourcesOf(resourceAccess);
+        log.debug("authorizing {} access on resources {}...", action, resources);
+        // decide in memory when the policy engine has a snapshot loaded, otherwise go to database
+        PolicySnapshot snapshot = engine.getSnapshot();
+        // get all policies for the resources
+        List<Policy> candidates = snapshot == null ? getResourcesPolicies(resources)
+                : snapshot.getAccessPolicies(resourceAccess.getResource(), resourceAccess.getDecoratedResources());
+        // the database only finds policies on exact values, the snapshot has glob ones compiled already
+        if (snapshot == null) resources.forEach(resource -> globPolicyIndex.collect(resource, candidates));
+        // filter out policies that could not auth target action, ids are kept unboxed at the same indexes
+        List<Policy> policies = Lists.newArrayListWithCapacity(candidates.size());
+        long[] policyIds = new long[candidates.size()];
+        for (Policy policy : candidates) {
+            if (!predicate.pass(policy, resourceAccess)) continue;
+            policyIds[policies.size()] = policy.getId();
+            policies.add(policy);
+        }
+        int count = policies.size();
+        // get user or role that has been assigned with one of the policies
+        User user = RbacScope.getUser();
+        EntityPolicy entityPolicy;
+        if (count == 0) entityPolicy = null;
+        else if (snapshot != null) entityPolicy = snapshot.getUserPolicy(user.getId(), policyIds, count);
+        else {
+            // ids only get boxed where a cache or the mapper asks for them
+            List<Long> ids = Longs.asList(policyIds).subList(0, count);
+            entityPolicy = userPolicyCache.isEnabled() ? userPolicyCache.getUserPolicy(user.getId(), ids)
+                    : mapper.getUserPolicy(user.getId(), ids);
+        }
+        Role role = null;
+        Policy allowedBy = null;
+        if (entityPolicy != null) {
+            for (int i = 0; i < count && allowedBy == null; i++) {
+                if (policyIds[i] == entityPolicy.getPolicyId()) allowedBy = policies.get(i);
+            }
+            if (entityPolicy.getEntityType() == EntityType.Role) {
+                long roleId = entityPolicy.getEntityId();
+                role = snapshot == null ? mapper.getRole(roleId) : snapshot.getRole(roleId);
+            }
+        }
+        return toAuth(resourceAccess, allowedBy, entityPolicy, user, role);
+    }
+
+    /**
+     * authorizes all resource accesses of the same user with one policy query and one user policy query in total,
+     * plus one role query if any access is allowed through roles, results are in the order of the accesses
+     */
+    List<ResourceAccessAuth> authorizeAll(List<ResourceAccess> resourceAccesses) {
+        validateCollectionNotEmptyContainsNoNull(resourceAccesses, "resource accesses");
+        resourceAccesses.forEach(Validator::validateResourceAccess);
+        // in memory decisions and single accesses take no more round trips than the batch
+        if (resourceAccesses.size() == 1 || engine.getSnapshot() != null) {
+            return resourceAccesses.stream().map(this::authorize).collect(Collectors.toList());
+        }
+        Set<Resource> resources = Sets.newLinkedHashSet();
+        resourceAccesses.forEach(resourceAccess -> resources.addAll(resourcesOf(resourceAccess)));
+        log.debug("authorizing {} accesses on resources {}...", resourceAccesses.size(), resources);
+        ListMultimap<Resource, Policy> resourcePolicies = ArrayListMultimap.create();
+        getResourcesPolicies(Lists.newArrayList(resources)).forEach(p -> resourcePolicies.put(p.getResource(), p));
+        for (Resource resource : resources) {
+            List<Policy> globs = Lists.newArrayList();
+            globPolicyIndex.collect(resource, globs);
+            resourcePolicies.putAll(resource, globs);
+        }
+        // policies of every access that could auth its action
+        List<List<Policy>> accessPolicies = Lists.newArrayListWithCapacity(resourceAccesses.size());
+        Set<Long> policyIds = Sets.newLinkedHashSet();
+        for (ResourceAccess resourceAccess : resourceAccesses) {
+            List<Policy> policies = Lists.newArrayList();
+            for (Resource resource : resourcesOf(resourceAccess)) {
+                for (Policy policy : resourcePolicies.get(resource)) {
+                    if (!policies.contains(policy) && predicate.pass(policy, resourceAccess)) policies.add(policy);
+                }
+            }
+            policies.forEach(policy -> policyIds.add(policy.getId()));
+            accessPolicies.add(policies);
+        }
+        User user = RbacScope.getUser();
+        Map<Long, EntityPolicy> userPolicies = userPolicies(user, policyIds);
+        List<EntityPolicy> entityPolicies = Lists.newArrayListWithCapacity(resourceAccesses.size());
+        Set<Long> roleIds = Sets.newHashSet();
+        for (List<Policy> policies : accessPolicies) {
+            EntityPolicy entityPolicy = pick(policies, userPolicies);
+            if (entityPolicy != null && entityPolicy.getEntityType() == EntityType.Role) roleIds.add(entityPolicy.getEntityId());
+            entityPolicies.add(entityPolicy);
+        }
+        Map<Long, Role> roles = Maps.newHashMap();
+        if (!roleIds.isEmpty()) mapper.getRoles(roleIds).forEach(role -> roles.put(role.getId(), role));
+        List<ResourceAccessAuth> results = Lists.newArrayListWithCapacity(resourceAccesses.size());
+        for (int i = 0; i < resourceAccesses.size(); i++) {
+            EntityPolicy entityPolicy = entityPolicies.get(i);
+            Role role = null;
+            Policy allowedBy = null;
+            if (entityPolicy != null) {
+                role = roles.get(entityPolicy.getEntityId());
+                allowedBy = find(accessPolicies.get(i), entityPolicy.getPolicyId());
+            }
+            results.add(toAuth(resourceAccesses.get(i), allowedBy, entityPolicy, user, role));
+        }
+        return results;
+    }
+
+    private List<Policy> getResourcesPolicies(List<Resource> resources) {
+        // resources known to have no policy are not queried, no query at all if none of them might have one
+        List<Resource> covered = resourcePolicyFilter.filter(resources);
+        if (covered.isEmpty()) return Lists.newArrayList();
+        return mapper.getResourcesPolicies(covered);
+    }
+
+    /**
+     * @return for each of the policies assigned to the user, the assignment to use, direct ones preferred
+     */
+    private Map<Long, EntityPolicy> userPolicies(User user, Set<Long> policyIds) {
+        if (policyIds.isEmpty()) return Maps.newHashMap();
+        if (userPolicyCache.isEnabled()) return userPolicyCache.getUserPolicies(user.getId(), policyIds);
+        Map<Long, EntityPolicy> userPolicies = Maps.newHashMap();
+        // direct assignments are listed first
+        mapper.listUserPolicies(user.getId(), policyIds).forEach(ep -> userPolicies.putIfAbsent(ep.getPolicyId(), ep));
+        return userPolicies;
+    }
+
+    private static EntityPolicy pick(List<Policy> policies, Map<Long, EntityPolicy> userPolicies) {
+        EntityPolicy picked = null;
+        for (Policy policy : policies) {
+            EntityPolicy ep = userPolicies.get(policy.getId());
+            if (ep == null) continue;
+            if (ep.getEntityType() == EntityType.User) return ep;
+            if (picked == null) picked = ep;
+        }
+        return picked;
+    }
+
+    private static Policy find(List<Policy> policies, long policyId) {
+        for (Policy policy : policies) {
+            if (policy.getId() == policyId) return policy;
+        }
+        return null;
+    }
+
+    private static List<Resource> resourcesOf(ResourceAccess resourceAccess) {
         int size = 1;
         if (resourceAccess.getDecoratedResources() != null) size += resourceAccess.getDecoratedResources().size();
         List<Resource> resources = Lists.newArrayListWithCapacity(size);
         resources.add(resourceAccess.getResource());
         if (size > 1) resources.addAll(resourceAccess.getDecoratedResources());
-        log.debug("authorizing {} access on resources {}...", action, resources);
-        // get all policies for the resources
-        List<Policy> policies = mapper.getResourcesPolicies(resources);
-        // filter out policies that could not auth target action
-        policies = policies.stream().filter(p -> predicate.pass(p, resourceAccess)).collect(Collectors.toList());
-        List<Long> policyIds = policies.stream().map(Policy::getId).collect(Collectors.toList());
-        // get user or role that has been assigned with one of the policies
-        User user = RbacScope.getUser();
-        EntityPolicy entityPolicy = mapper.getUserPolicy(user.getId(), policyIds);
+        return resources;
+    }
+
+    private static ResourceAccessAuth toAuth(ResourceAccess resourceAccess, Policy allowedBy,
+                                             EntityPolicy entityPolicy, User user, Role role) {
         ResourceAccessAuth resourceAccessAuth = new ResourceAccessAuth();
         if (entityPolicy != null) {
             resourceAccessAuth.setAllow(true);
-            if (entityPolicy.getEntityType() == EntityType.User) {
-                resourceAccessAuth.setAllowedAsEntity(user);
-            } else {
-                resourceAccessAuth.setAllowedAsEntity(mapper.getRole(entityPolicy.getEntityId()));
-            }
-            resourceAccessAuth.setAllowedByPolicy(policies.stream().filter(
-                    p -> p.getId() == entityPolicy.getPolicyId()
-            ).findFirst().orElse(null));
+            resourceAccessAuth.setAllowedAsEntity(entityPolicy.getEntityType() == EntityType.User ? user : role);
+            resourceAccessAuth.setAllowedByPolicy(allowedBy);
         }
         resourceAccessAuth.setResourceAccess(resourceAccess);
         return resourceAccessAuth;
@@ -0,0 +1,42 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.mapper.RbacMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * fills user_effective_policies with rows missing for existing user policies and role policies of assigned users. the
+ * table is populated by its migration and maintained by {@link AdminService} afterwards, this is for assignments written
+ * to the database by other means.
+ */
+@Slf4j
+@Service
+public class EffectivePolicyBackfillJob {
+
+    private final RbacMapper mapper;
+    private final boolean backfillOnStartup;
+
+    @Autowired
+    public EffectivePolicyBackfillJob(final RbacMapper mapper,
+                                      @Value("${rbac.effectivePolicies.backfillOnStartup:false}") final boolean backfillOnStartup) {
+        this.mapper = mapper;
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    public int run() {
+        log.info("backfilling user effective policies...");
+        long start = System.currentTimeMillis();
+        int inserted = mapper.backfillUserEffectivePolicies();
+        log.info("backfilled {} user effective policies in {}ms", inserted, System.currentTimeMillis() - start);
+        return inserted;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        if (backfillOnStartup) run();
+    }
+}
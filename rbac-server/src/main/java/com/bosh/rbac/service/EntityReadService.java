@@ -6,11 +6,14 @@ import com.bosh.rbac.model.EntityType;
 import com.bosh.rbac.model.Policy;
 import com.bosh.rbac.model.Role;
 import com.bosh.rbac.model.User;
+import com.bosh.rbac.rest.model.CursorListPayload;
+import com.bosh.rbac.service.cache.EntityCountCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.mib.rest.exception.BadRequestException;
 import org.mib.rest.exception.ResourceNotFoundException;
 import org.mib.rest.model.list.Filter;
 import org.mib.rest.model.list.ListElementRequest;
@@ -22,17 +25,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
+import static org.mib.common.validator.Validator.validateLongPositive;
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
 @Slf4j
 @Service
 public class EntityReadService {
 
     private final RbacMapper mapper;
+    private final EntityCountCache countCache;
 
     @Autowired
-    public EntityReadService(final RbacMapper mapper) {
+    public EntityReadService(final RbacMapper mapper, final EntityCountCache countCache) {
         this.mapper = mapper;
+        this.countCache = countCache;
     }
 
     public User getUser(String userId) {
@@ -42,6 +51,10 @@ public class EntityReadService {
     }
 
     public ListPayload<User> listUsers(long offset, long limit, String search) {
+        return listUsers(offset, limit, search, ListTotal.EXACT);
+    }
+
+    public ListPayload<User> listUsers(long offset, long limit, String search, ListTotal total) {
         log.debug("listing users with offset {} limit {} and search query {}...", offset, limit, search);
         ListElementRequest ler = ListElementRequest.builder().offset(offset).limit(limit).build();
         if (StringUtils.isNotBlank(search)) {
@@ -49,12 +62,38 @@ public class EntityReadService {
             ler.escaped();
         }
         return ListPayload.<User>builder().offset(offset).list(mapper.listUsers(ler))
-                .total(mapper.countUsers(ler)).build();
+                .total(total(total, search, () -> mapper.countUsers(ler), countCache::countUsers)).build();
+    }
+
+    /**
+     * lists users by id after the cursor, which costs the same on every page unlike offset listings
+     * @param cursor continuation token of the previous page, blank for the first page
+     */
+    public CursorListPayload<User> listUsersAfter(String cursor, long limit, String search) {
+        log.debug("listing users after cursor {} with limit {} and search query {}...", cursor, limit, search);
+        long afterId = ListCursor.decode(cursor, 1)[0];
+        ListElementRequest ler = ListElementRequest.builder().offset(0).limit(fetchSize(limit)).build();
+        if (StringUtils.isNotBlank(search)) {
+            ler.setFilters(Lists.newArrayList(Filter.like("username", search)));
+            ler.escaped();
+        }
+        return page(mapper.listUsersAfter(ler, afterId), limit, user -> ListCursor.encode(user.getId()));
     }
 
     public ListPayload<User> listRoleUsers(long roleId, long offset, long limit) {
+        return listRoleUsers(roleId, offset, limit, ListTotal.EXACT);
+    }
+
+    public ListPayload<User> listRoleUsers(long roleId, long offset, long limit, ListTotal total) {
+        // the counter on the role is exact and as cheap as an estimate
+        LongSupplier count = () -> mapper.getRoleUserCount(roleId);
         return ListPayload.<User>builder().offset(offset).list(mapper.listRoleUsers(roleId, offset, limit))
-                .total(mapper.countRoleUsers(roleId)).build();
+                .total(total(total, count, count)).build();
+    }
+
+    public CursorListPayload<User> listRoleUsersAfter(long roleId, String cursor, long limit) {
+        long afterUserId = ListCursor.decode(cursor, 1)[0];
+        return page(mapper.listRoleUsersAfter(roleId, afterUserId, fetchSize(limit)), limit, user -> ListCursor.encode(user.getId()));
     }
 
     public Role getRole(long roleId) {
@@ -64,6 +103,10 @@ public class EntityReadService {
     }
 
     public ListPayload<Role> listRoles(long offset, long limit, String search) {
+        return listRoles(offset, limit, search, ListTotal.EXACT);
+    }
+
+    public ListPayload<Role> listRoles(long offset, long limit, String search, ListTotal total) {
         log.debug("listing roles with offset {} limit {} and search query {}...", offset, limit, search);
         ListElementRequest ler = ListElementRequest.builder().offset(offset).limit(limit).build();
         if (StringUtils.isNotBlank(search)) {
@@ -71,12 +114,32 @@ public class EntityReadService {
             ler.escaped();
         }
         return ListPayload.<Role>builder().offset(offset).list(mapper.listRoles(ler))
-                .total(mapper.countRoles(ler)).build();
+                .total(total(total, search, () -> mapper.countRoles(ler), countCache::countRoles)).build();
+    }
+
+    public CursorListPayload<Role> listRolesAfter(String cursor, long limit, String search) {
+        log.debug("listing roles after cursor {} with limit {} and search query {}...", cursor, limit, search);
+        long afterId = ListCursor.decode(cursor, 1)[0];
+        ListElementRequest ler = ListElementRequest.builder().offset(0).limit(fetchSize(limit)).build();
+        if (StringUtils.isNotBlank(search)) {
+            ler.setFilters(Lists.newArrayList(Filter.like("name", search)));
+            ler.escaped();
+        }
+        return page(mapper.listRolesAfter(ler, afterId), limit, role -> ListCursor.encode(role.getId()));
     }
 
     public ListPayload<Role> listUserRoles(long userId, long offset, long limit) {
+        return listUserRoles(userId, offset, limit, ListTotal.EXACT);
+    }
+
+    public ListPayload<Role> listUserRoles(long userId, long offset, long limit, ListTotal total) {
         return ListPayload.<Role>builder().offset(offset).list(mapper.listUserRoles(userId, offset, limit))
-                .total(mapper.countUserRoles(userId)).build();
+                .total(total(total, () -> mapper.countUserRoles(userId), () -> countCache.countUserRoles(userId))).build();
+    }
+
+    public CursorListPayload<Role> listUserRolesAfter(long userId, String cursor, long limit) {
+        long afterRoleId = ListCursor.decode(cursor, 1)[0];
+        return page(mapper.listUserRolesAfter(userId, afterRoleId, fetchSize(limit)), limit, role -> ListCursor.encode(role.getId()));
     }
 
     public Policy getPolicy(long policyId) {
@@ -86,6 +149,10 @@ public class EntityReadService {
     }
 
     public ListPayload<Policy> listPolicies(long offset, long limit, String search) {
+        return listPolicies(offset, limit, search, ListTotal.EXACT);
+    }
+
+    public ListPayload<Policy> listPolicies(long offset, long limit, String search, ListTotal total) {
         log.debug("listing policies with offset {} limit {} and search query {}...", offset, limit, search);
         ListElementRequest ler = ListElementRequest.builder().offset(offset).limit(limit).build();
         if (StringUtils.isNotBlank(search)) {
@@ -93,17 +160,60 @@ public class EntityReadService {
             ler.escaped();
         }
         return ListPayload.<Policy>builder().offset(offset).list(mapper.listPolicies(ler))
-                .total(mapper.countPolicies(ler)).build();
+                .total(total(total, search, () -> mapper.countPolicies(ler), countCache::countPolicies)).build();
+    }
+
+    public CursorListPayload<Policy> listPoliciesAfter(String cursor, long limit, String search) {
+        log.debug("listing policies after cursor {} with limit {} and search query {}...", cursor, limit, search);
+        long afterId = ListCursor.decode(cursor, 1)[0];
+        ListElementRequest ler = ListElementRequest.builder().offset(0).limit(fetchSize(limit)).build();
+        if (StringUtils.isNotBlank(search)) {
+            ler.setFilters(Lists.newArrayList(Filter.like("name", search)));
+            ler.escaped();
+        }
+        return page(mapper.listPoliciesAfter(ler, afterId), limit, policy -> ListCursor.encode(policy.getId()));
     }
 
     public ListPayload<Policy> listEntityPolicies(Entity entity, long offset, long limit) {
+        return listEntityPolicies(entity, offset, limit, ListTotal.EXACT);
+    }
+
+    public ListPayload<Policy> listEntityPolicies(Entity entity, long offset, long limit, ListTotal total) {
+        // roles keep counters of their policies, users don't
+        LongSupplier exact = entity.getType() == EntityType.Role
+                ? () -> mapper.getRolePolicyCount(entity.getId()) : () -> mapper.countEntityPolicies(entity);
+        LongSupplier estimate = entity.getType() == EntityType.Role ? exact : () -> countCache.countEntityPolicies(entity);
         return ListPayload.<Policy>builder().offset(offset).list(mapper.listEntityPolicies(entity, offset, limit))
-                .total(mapper.countEntityPolicies(entity)).build();
+                .total(total(total, exact, estimate)).build();
+    }
+
+    public CursorListPayload<Policy> listEntityPoliciesAfter(Entity entity, String cursor, long limit) {
+        long afterPolicyId = ListCursor.decode(cursor, 1)[0];
+        return page(mapper.listEntityPoliciesAfter(entity, afterPolicyId, fetchSize(limit)), limit,
+                policy -> ListCursor.encode(policy.getId()));
     }
 
     public ListPayload<Entity> listPolicyEntities(long policyId, long offset, long limit) {
-        ListPayload<Entity> lp = ListPayload.<Entity>builder().offset(offset).total(mapper.countPolicyEntities(policyId)).build();
-        List<Entity> identities = mapper.listPolicyEntities(policyId, offset, limit);
+        return listPolicyEntities(policyId, offset, limit, ListTotal.EXACT);
+    }
+
+    public ListPayload<Entity> listPolicyEntities(long policyId, long offset, long limit, ListTotal total) {
+        LongSupplier count = () -> mapper.getPolicyEntityCount(policyId);
+        ListPayload<Entity> lp = ListPayload.<Entity>builder().offset(offset).total(total(total, count, count)).build();
+        lp.setList(resolveEntities(mapper.listPolicyEntities(policyId, offset, limit)));
+        return lp;
+    }
+
+    public CursorListPayload<Entity> listPolicyEntitiesAfter(long policyId, String cursor, long limit) {
+        long[] key = ListCursor.decode(cursor, 2);
+        List<Entity> identities = mapper.listPolicyEntitiesAfter(policyId, entityAfter(key), fetchSize(limit));
+        // the cursor is taken from the identities, entities deleted since they were listed resolve to null
+        CursorListPayload<Entity> page = page(identities, limit, e -> ListCursor.encode(e.getType().getValue(), e.getId()));
+        page.setList(resolveEntities(page.getList()));
+        return page;
+    }
+
+    private List<Entity> resolveEntities(List<Entity> identities) {
         Set<Long> userIds = identities.stream().filter(
                 e -> e.getType() == EntityType.User
         ).map(Entity::getId).collect(Collectors.toSet());
@@ -119,10 +229,47 @@ public class EntityReadService {
         ler.getIns().put("id", roleIds);
         List<Role> roles = roleIds.isEmpty() ? ImmutableList.of() : mapper.listRoles(ler);
         Map<Long, Role> roleMap = roles.stream().collect(Collectors.toMap(Role::getId, Function.identity()));
-        List<Entity> entities = identities.stream().map(e ->
+        return identities.stream().map(e ->
             e.getType() == EntityType.Role ? roleMap.get(e.getId()) : userMap.get(e.getId())
         ).collect(Collectors.toList());
-        lp.setList(entities);
-        return lp;
+    }
+
+    /**
+     * like {@link #total(ListTotal, LongSupplier, LongSupplier)}, but searches are counted exactly, cached counts are of
+     * whole tables
+     */
+    private long total(ListTotal total, String search, LongSupplier exact, LongSupplier estimate) {
+        return total(total, exact, StringUtils.isNotBlank(search) ? exact : estimate);
+    }
+
+    /**
+     * estimates come from cached counts, exact totals are counted if counts aren't cached
+     */
+    private long total(ListTotal total, LongSupplier exact, LongSupplier estimate) {
+        validateObjectNotNull(total, "listing total");
+        if (total == ListTotal.NONE) return ListTotal.NOT_COUNTED;
+        if (total == ListTotal.ESTIMATE && countCache.isEnabled()) return estimate.getAsLong();
+        return exact.getAsLong();
+    }
+
+    private static Entity entityAfter(long[] key) {
+        if (key[0] == 0) return null;
+        EntityType type = key[0] < 0 || key[0] > Integer.MAX_VALUE ? null : EntityType.valueOf((int) key[0]);
+        if (type == null) throw new BadRequestException("invalid listing cursor entity type " + key[0]);
+        return new Entity(type, key[1]);
+    }
+
+    /**
+     * @return one more than the page size, so whether there is a next page is known without another query
+     */
+    private static long fetchSize(long limit) {
+        validateLongPositive(limit, "listing limit");
+        return limit + 1;
+    }
+
+    private static <T> CursorListPayload<T> page(List<T> fetched, long limit, Function<T, String> cursorOf) {
+        if (fetched.size() <= limit) return CursorListPayload.<T>builder().list(fetched).build();
+        List<T> list = Lists.newArrayList(fetched.subList(0, (int) limit));
+        return CursorListPayload.<T>builder().list(list).next(cursorOf.apply(list.get(list.size() - 1))).build();
     }
 }
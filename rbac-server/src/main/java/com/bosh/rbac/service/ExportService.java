@@ -0,0 +1,96 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.datasource.ReadRoute;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.rest.model.ExportRecord;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.mib.metrics.Metrics;
+import org.mib.metrics.MetricsScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * writes users, roles, policies, users_roles and entities_policies as ndjson of {@link ExportRecord}, in that order so
+ * rows come before assignments referring to them. rows are streamed from database cursors in one read only
+ * transaction, so memory stays flat however large the tables are and the tables are read at one snapshot where the
+ * isolation level gives one. the transaction runs on the export pool if there is one.
+ */
+@Slf4j
+@Service
+public class ExportService {
+
+    private static final int NEWLINE = '\n';
+
+    private final RbacMapper mapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter writer;
+
+    @Autowired
+    public ExportService(final RbacMapper mapper, final PlatformTransactionManager transactionManager,
+                         final ObjectMapper objectMapper) {
+        this.mapper = mapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        // records are written one after another to the same stream
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * @return number of records written
+     */
+    public long export(OutputStream os) throws IOException {
+        validateObjectNotNull(os, "export output stream");
+        log.info("exporting rbac state...");
+        long start = System.currentTimeMillis();
+        OutputStream out = new BufferedOutputStream(os);
+        long exported;
+        try {
+            // the connection is taken when the transaction begins, on the route of the thread at that time
+            exported = ReadRoute.export(() -> transactionTemplate.execute(status ->
+                    write(mapper::scanUsers, ExportRecord::of, out)
+                            + write(mapper::scanRoles, ExportRecord::of, out)
+                            + write(mapper::scanPolicies, ExportRecord::of, out)
+                            + write(mapper::scanUserRoles, ExportRecord::of, out)
+                            + write(mapper::scanEntityPolicies, ExportRecord::of, out)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        long end = System.currentTimeMillis();
+        log.info("exported {} records in {}ms", exported, end - start);
+        Metrics metrics = MetricsScope.getMetrics();
+        metrics.addTime("export", start, end, TimeUnit.MILLISECONDS);
+        metrics.addMetric("export.records", exported);
+        return exported;
+    }
+
+    private <T> long write(Supplier<Cursor<T>> scan, Function<T, ExportRecord> toRecord, OutputStream out) {
+        long written = 0;
+        try (Cursor<T> cursor = scan.get()) {
+            for (T row : cursor) {
+                writer.writeValue(out, toRecord.apply(row));
+                out.write(NEWLINE);
+                written++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,220 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Role;
+import com.bosh.rbac.model.User;
+import com.bosh.rbac.model.UserRole;
+import com.bosh.rbac.rest.model.ExportRecord;
+import com.bosh.rbac.rest.model.ImportResult;
+import com.bosh.rbac.service.cache.ResourcePolicyFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mib.metrics.Metrics;
+import org.mib.metrics.MetricsScope;
+import org.mib.rest.exception.BadRequestException;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.bosh.rbac.utils.Validator.validatePolicy;
+import static com.bosh.rbac.utils.Validator.validateRole;
+import static org.mib.common.validator.Validator.validateLongNotNegative;
+import static org.mib.common.validator.Validator.validateLongPositive;
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+import static org.mib.common.validator.Validator.validateStringNotBlank;
+
+/**
+ * imports ndjson of {@link ExportRecord}, e.g. the output of {@link ExportService}, keeping the ids of rows. lines are
+ * validated as they are read and written in chunks, each chunk through a batch executor in its own transaction with
+ * rows of a kind going out as one jdbc batch. an import stops at the first bad line or failed chunk, keeping the chunks
+ * committed before, and tells how many lines to skip to resume. effective policies and relation counters of imported
+ * assignments are backfilled once the import stops.
+ */
+@Slf4j
+@Service
+public class ImportService {
+
+    private final RbacMapper mapper;
+    private final SqlSessionTemplate batchSession;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ResourcePolicyFilter resourcePolicyFilter;
+    private final ApplicationEventPublisher publisher;
+    private final int chunkSize;
+
+    @Autowired
+    public ImportService(final RbacMapper mapper, final SqlSessionFactory sqlSessionFactory,
+                         final PlatformTransactionManager transactionManager, final ObjectMapper objectMapper,
+                         final ResourcePolicyFilter resourcePolicyFilter, final ApplicationEventPublisher publisher,
+                         @Value("${rbac.import.chunkSize:1000}") final int chunkSize) {
+        validateLongPositive(chunkSize, "import chunk size");
+        this.mapper = mapper;
+        this.batchSession = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.resourcePolicyFilter = resourcePolicyFilter;
+        this.publisher = publisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param skip number of lines committed by a previous attempt of the same input
+     */
+    public ImportResult importRecords(InputStream is, long skip) {
+        validateObjectNotNull(is, "import input stream");
+        validateLongNotNegative(skip, "import lines to skip");
+        log.info("importing rbac records skipping {} lines...", skip);
+        long start = System.currentTimeMillis();
+        ImportResult result = new ImportResult(skip, 0, false, null);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            Chunk chunk = new Chunk();
+            long line = 0;
+            String text;
+            String failure = null;
+            while ((text = reader.readLine()) != null) {
+                if (++line <= skip) continue;
+                try {
+                    if (StringUtils.isNotBlank(text)) chunk.add(parse(text));
+                } catch (Exception e) {
+                    failure = "invalid record at line " + line + ": " + e.getMessage();
+                    break;
+                }
+                chunk.lines++;
+                if (chunk.size() >= chunkSize) {
+                    commit(chunk, result);
+                    chunk = new Chunk();
+                }
+            }
+            // lines before a bad one are valid, so they are kept
+            commit(chunk, result);
+            result.setComplete(failure == null);
+            result.setError(failure);
+        } catch (Exception e) {
+            log.error("failed to import records after line {}", result.getCommittedLines(), e);
+            result.setError(e.getMessage());
+        } finally {
+            if (result.getImportedRecords() > 0) {
+                mapper.backfillUserEffectivePolicies();
+                // imported rows come without counters, and assignments could refer to rows of earlier imports
+                mapper.repairRoleCounters();
+                mapper.repairPolicyCounters();
+                publisher.publishEvent(RbacChangeEvent.imported(this));
+            }
+        }
+        long end = System.currentTimeMillis();
+        log.info("imported {} records up to line {} in {}ms, {}", result.getImportedRecords(), result.getCommittedLines(),
+                end - start, result.isComplete() ? "complete" : "stopped by " + result.getError());
+        Metrics metrics = MetricsScope.getMetrics();
+        metrics.addTime("import", start, end, TimeUnit.MILLISECONDS);
+        metrics.addMetric("import.records", result.getImportedRecords());
+        return result;
+    }
+
+    private void commit(Chunk chunk, ImportResult result) {
+        if (chunk.lines == 0) return;
+        if (chunk.size() > 0) {
+            // looked up once importing, the mapper is registered by its spring bean
+            RbacMapper batchMapper = batchSession.getMapper(RbacMapper.class);
+            transactionTemplate.execute(status -> {
+                // rows before the assignments referring to them, in one batch per kind
+                if (!chunk.users.isEmpty()) batchMapper.importUsers(chunk.users);
+                if (!chunk.roles.isEmpty()) batchMapper.importRoles(chunk.roles);
+                if (!chunk.policies.isEmpty()) {
+                    // the filter must know the resources before anyone could find the policies
+                    chunk.policies.forEach(policy -> resourcePolicyFilter.put(policy.getResource()));
+                    batchMapper.importPolicies(chunk.policies);
+                }
+                if (!chunk.userRoles.isEmpty()) batchMapper.importUserRoles(chunk.userRoles);
+                if (!chunk.entityPolicies.isEmpty()) batchMapper.importEntityPolicies(chunk.entityPolicies);
+                // failures surface here to roll the chunk back
+                batchSession.flushStatements();
+                return null;
+            });
+        }
+        result.setCommittedLines(result.getCommittedLines() + chunk.lines);
+        result.setImportedRecords(result.getImportedRecords() + chunk.size());
+        log.info("imported {} records up to line {}", result.getImportedRecords(), result.getCommittedLines());
+    }
+
+    private ExportRecord parse(String text) throws IOException {
+        ExportRecord record = objectMapper.readValue(text, ExportRecord.class);
+        int set = (record.getUser() != null ? 1 : 0) + (record.getRole() != null ? 1 : 0) + (record.getPolicy() != null ? 1 : 0)
+                + (record.getUserRole() != null ? 1 : 0) + (record.getEntityPolicy() != null ? 1 : 0);
+        if (set != 1) throw new BadRequestException("exactly one of user, role, policy, userRole and entityPolicy should be set");
+        Date now = new Date();
+        if (record.getUser() != null) {
+            User user = record.getUser();
+            validateLongPositive(user.getId(), "user internal id");
+            validateStringNotBlank(user.getUserId(), "user id");
+            validateStringNotBlank(user.getUsername(), "username");
+            if (user.getCreatedAt() == null) user.setCreatedAt(now);
+        } else if (record.getRole() != null) {
+            Role role = record.getRole();
+            validateLongPositive(role.getId(), "role id");
+            validateRole(role);
+            if (role.getCreatedAt() == null) role.setCreatedAt(now);
+            if (role.getUpdatedAt() == null) role.setUpdatedAt(role.getCreatedAt());
+        } else if (record.getPolicy() != null) {
+            Policy policy = record.getPolicy();
+            validateLongPositive(policy.getId(), "policy id");
+            validatePolicy(policy);
+            if (policy.getCreatedAt() == null) policy.setCreatedAt(now);
+            if (policy.getUpdatedAt() == null) policy.setUpdatedAt(policy.getCreatedAt());
+        } else if (record.getUserRole() != null) {
+            UserRole userRole = record.getUserRole();
+            validateLongPositive(userRole.getUserId(), "user internal id");
+            validateLongPositive(userRole.getRoleId(), "role id");
+            if (userRole.getCreatedAt() == null) userRole.setCreatedAt(now);
+        } else {
+            EntityPolicy entityPolicy = record.getEntityPolicy();
+            validateObjectNotNull(entityPolicy.getEntityType(), "entity type");
+            validateLongPositive(entityPolicy.getEntityId(), "entity id");
+            validateLongPositive(entityPolicy.getPolicyId(), "policy id");
+            if (entityPolicy.getCreatedAt() == null) entityPolicy.setCreatedAt(now);
+        }
+        return record;
+    }
+
+    private static class Chunk {
+
+        private final List<User> users = Lists.newArrayList();
+        private final List<Role> roles = Lists.newArrayList();
+        private final List<Policy> policies = Lists.newArrayList();
+        private final List<UserRole> userRoles = Lists.newArrayList();
+        private final List<EntityPolicy> entityPolicies = Lists.newArrayList();
+        // lines read including blank ones
+        private long lines;
+
+        private void add(ExportRecord record) {
+            if (record.getUser() != null) users.add(record.getUser());
+            else if (record.getRole() != null) roles.add(record.getRole());
+            else if (record.getPolicy() != null) policies.add(record.getPolicy());
+            else if (record.getUserRole() != null) userRoles.add(record.getUserRole());
+            else entityPolicies.add(record.getEntityPolicy());
+        }
+
+        private int size() {
+            return users.size() + roles.size() + policies.size() + userRoles.size() + entityPolicies.size();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bosh.rbac.service;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.primitives.Longs;
+import org.apache.commons.lang3.StringUtils;
+import org.mib.rest.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * continuation tokens of keyset listings, the listing key of the last element of a page in url safe base64. tokens are
+ * opaque to clients so the key could change without breaking them.
+ */
+final class ListCursor {
+
+    private static final Joiner JOINER = Joiner.on(',');
+    private static final Splitter SPLITTER = Splitter.on(',');
+
+    private ListCursor() {}
+
+    static String encode(long... key) {
+        String joined = JOINER.join(Longs.asList(key));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the listing key of the cursor, all zeros for a blank cursor which starts from the first page
+     */
+    static long[] decode(String cursor, int length) {
+        long[] key = new long[length];
+        if (StringUtils.isBlank(cursor)) return key;
+        try {
+            List<String> parts = SPLITTER.splitToList(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (parts.size() != length) throw new BadRequestException("invalid listing cursor " + cursor);
+            for (int i = 0; i < length; i++) {
+                key[i] = Long.parseLong(parts.get(i));
+                if (key[i] < 0) throw new BadRequestException("invalid listing cursor " + cursor);
+            }
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("invalid listing cursor " + cursor);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.bosh.rbac.service;
+
+import org.apache.commons.lang3.StringUtils;
+import org.mib.rest.exception.BadRequestException;
+
+/**
+ * how the total of an offset listing is computed. the exact total is a count query per listing, which is a full scan
+ * with search filters, an estimate is a cached count, and none leaves the total out as {@link #NOT_COUNTED}.
+ */
+public enum ListTotal {
+
+    NONE, EXACT, ESTIMATE;
+
+    public static final long NOT_COUNTED = -1;
+
+    /**
+     * @return the mode named case insensitively, exact if blank
+     */
+    public static ListTotal parse(String name) {
+        if (StringUtils.isBlank(name)) return EXACT;
+        for (ListTotal total : values()) {
+            if (total.name().equalsIgnoreCase(name.trim())) return total;
+        }
+        throw new BadRequestException("unknown listing total " + name + ", expecting none, exact or estimate");
+    }
+}
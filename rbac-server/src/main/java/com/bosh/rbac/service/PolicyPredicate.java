@@ -36,7 +36,8 @@ public class PolicyPredicate {
                     pass = false;
             }
         }
-        log.debug("policy {} for action {} testing result {}", policy, action, pass);
+        // guarded as more than two arguments allocate an array on every decision even with debug off
+        if (log.isDebugEnabled()) log.debug("policy {} for action {} testing result {}", policy, action, pass);
         return pass;
     }
 }
@@ -0,0 +1,48 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.mapper.RbacMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * recounts user_count and policy_count of roles and entity_count of policies from the relation tables. counters only
+ * drift when users_roles or entities_policies change without them, e.g. rows edited by hand or a table restored on its
+ * own, and a drift below zero is clamped rather than failing, so it goes unnoticed until a delete is refused or let
+ * through. the repair is one update per table over every role and every policy, counting the relations of each row
+ * twice through the role_id, entity and policy_id indexes, only rows that are off are written. that is a scan of both
+ * relation tables, better run off peak once they hold millions of rows.
+ */
+@Slf4j
+@Service
+public class RelationCounterRepairJob {
+
+    private final RbacMapper mapper;
+    private final boolean repairOnStartup;
+
+    @Autowired
+    public RelationCounterRepairJob(final RbacMapper mapper,
+                                    @Value("${rbac.relationCounters.repairOnStartup:false}") final boolean repairOnStartup) {
+        this.mapper = mapper;
+        this.repairOnStartup = repairOnStartup;
+    }
+
+    /**
+     * @return number of roles and policies whose counters were off
+     */
+    public int run() {
+        log.info("repairing relation counters...");
+        long start = System.currentTimeMillis();
+        int repaired = mapper.repairRoleCounters() + mapper.repairPolicyCounters();
+        log.info("repaired relation counters of {} roles and policies in {}ms", repaired, System.currentTimeMillis() - start);
+        return repaired;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        if (repairOnStartup) run();
+    }
+}
@@ -0,0 +1,128 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.datasource.ReadRoute;
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+import org.mib.metrics.MetricsScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+import static org.mib.common.validator.Validator.validateStringNotBlank;
+
+/**
+ * caches users by the user id callers identify themselves with, so authenticating a request needs no database round
+ * trip. unknown user ids are cached as well, for a much shorter time. users are not changed through the admin api, so
+ * user events only come from code publishing them, changes made in the database are seen once the ttl has passed.
+ */
+@Slf4j
+@Service
+public class AuthenticatedUserCache {
+
+    private final RbacMapper mapper;
+    private final boolean enabled;
+    private final long negativeTtlMillis;
+    private final Cache<String, CachedUser> cache;
+    // internal id of every cached user to its key, events carry the internal id
+    private final ConcurrentMap<Long, String> keys = Maps.newConcurrentMap();
+
+    @Autowired
+    public AuthenticatedUserCache(final RbacMapper mapper,
+                                  @Value("${rbac.cache.user.enabled:false}") final boolean enabled,
+                                  @Value("${rbac.cache.user.maxSize:10000}") final long maxSize,
+                                  @Value("${rbac.cache.user.ttlSeconds:60}") final long ttlSeconds,
+                                  @Value("${rbac.cache.user.negativeTtlSeconds:5}") final long negativeTtlSeconds) {
+        validateLongPositive(maxSize, "user cache max size");
+        validateLongPositive(ttlSeconds, "user cache ttl");
+        validateLongPositive(negativeTtlSeconds, "user cache negative ttl");
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.negativeTtlMillis = TimeUnit.SECONDS.toMillis(negativeTtlSeconds);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .removalListener(this::onRemoval)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return user with the user id, or null if there is no such user
+     */
+    public User getUser(String userId) {
+        validateStringNotBlank(userId, "user id");
+        CachedUser cached = cache.getIfPresent(userId);
+        if (cached != null && (cached.user != null || System.currentTimeMillis() < cached.expiresAt)) {
+            MetricsScope.getMetrics().addCounter("userCache.hit", 1);
+            return cached.user;
+        }
+        MetricsScope.getMetrics().addCounter("userCache.miss", 1);
+        // loaded from the primary, a lagging replica could bring back a user just invalidated
+        User user = ReadRoute.primary(() -> mapper.getUser(userId));
+        if (user != null) keys.put(user.getId(), userId);
+        // positive entries only expire by the cache ttl
+        cache.put(userId, new CachedUser(user, user == null ? System.currentTimeMillis() + negativeTtlMillis : Long.MAX_VALUE));
+        return user;
+    }
+
+    public void invalidate(String userId) {
+        cache.invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(RbacChangeEvent event) {
+        if (!enabled) return;
+        if (event.getType() == RbacChangeEvent.Type.IMPORTED) {
+            // users unknown so far could have been imported
+            log.debug("invalidating all cached users for {}", event);
+            invalidateAll();
+            return;
+        }
+        if (event.getType() != RbacChangeEvent.Type.USER_UPDATED && event.getType() != RbacChangeEvent.Type.USER_DELETED) return;
+        String userId = keys.get(event.getUserId());
+        if (userId == null) return;
+        log.debug("invalidating cached user {} for {}", userId, event);
+        cache.invalidate(userId);
+    }
+
+    private void onRemoval(RemovalNotification<String, CachedUser> notification) {
+        CachedUser removed = notification.getValue();
+        if (removed == null || removed.user == null) return;
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            // reloaded, the key still belongs to the id unless the user was recreated meanwhile
+            CachedUser current = cache.getIfPresent(notification.getKey());
+            if (current != null && current.user != null && current.user.getId() == removed.user.getId()) return;
+        }
+        keys.remove(removed.user.getId(), notification.getKey());
+    }
+
+    private static class CachedUser {
+
+        private final User user;
+        private final long expiresAt;
+
+        private CachedUser(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
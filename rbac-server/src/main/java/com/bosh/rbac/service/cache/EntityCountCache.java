@@ -0,0 +1,192 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.Entity;
+import com.bosh.rbac.model.EntityType;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.mib.metrics.MetricsScope;
+import org.mib.rest.model.list.ListElementRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * counts of users, roles, policies and their assignments for estimated listing totals. a count is loaded with a count
+ * query the first time it's asked for, and then kept up to date from admin changes of this instance until it expires,
+ * so it could be off by changes of other instances or changes committed while it was loading, for at most the ttl.
+ * users are created outside of the admin apis, with no change to follow, so the user count is reloaded after user
+ * deletions and is otherwise as old as the ttl at most.
+ */
+@Slf4j
+@Service
+public class EntityCountCache {
+
+    private enum Kind {
+        USERS, ROLES, POLICIES, ROLE_USERS, USER_ROLES, USER_POLICIES, ROLE_POLICIES, POLICY_ENTITIES
+    }
+
+    @ToString
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Key {
+        private final Kind kind;
+        private final long id;
+    }
+
+    private static final Key USERS = new Key(Kind.USERS, 0);
+    private static final Key ROLES = new Key(Kind.ROLES, 0);
+    private static final Key POLICIES = new Key(Kind.POLICIES, 0);
+
+    private final RbacMapper mapper;
+    private final boolean enabled;
+    private final Cache<Key, AtomicLong> cache;
+
+    @Autowired
+    public EntityCountCache(final RbacMapper mapper,
+                            @Value("${rbac.cache.count.enabled:false}") final boolean enabled,
+                            @Value("${rbac.cache.count.maxSize:100000}") final long maxSize,
+                            @Value("${rbac.cache.count.ttlSeconds:300}") final long ttlSeconds) {
+        validateLongPositive(maxSize, "count cache max size");
+        validateLongPositive(ttlSeconds, "count cache ttl");
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long countUsers() {
+        return get(USERS, () -> mapper.countUsers(all()));
+    }
+
+    public long countRoles() {
+        return get(ROLES, () -> mapper.countRoles(all()));
+    }
+
+    public long countPolicies() {
+        return get(POLICIES, () -> mapper.countPolicies(all()));
+    }
+
+    public long countRoleUsers(long roleId) {
+        return get(new Key(Kind.ROLE_USERS, roleId), () -> mapper.countRoleUsers(roleId));
+    }
+
+    public long countUserRoles(long userId) {
+        return get(new Key(Kind.USER_ROLES, userId), () -> mapper.countUserRoles(userId));
+    }
+
+    public long countEntityPolicies(Entity entity) {
+        validateObjectNotNull(entity, "entity");
+        return get(entityPoliciesKey(entity.getType(), entity.getId()), () -> mapper.countEntityPolicies(entity));
+    }
+
+    public long countPolicyEntities(long policyId) {
+        return get(new Key(Kind.POLICY_ENTITIES, policyId), () -> mapper.countPolicyEntities(policyId));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(RbacChangeEvent event) {
+        if (!enabled) return;
+        switch (event.getType()) {
+            case USER_DELETED:
+                // users created since the count was loaded are not in it, a decrement could take it below the truth
+                cache.invalidate(USERS);
+                cache.invalidate(new Key(Kind.USER_ROLES, event.getUserId()));
+                cache.invalidate(new Key(Kind.USER_POLICIES, event.getUserId()));
+                break;
+            case ROLE_CREATED:
+                add(ROLES, 1);
+                break;
+            case ROLE_DELETED:
+                add(ROLES, -1);
+                cache.invalidate(new Key(Kind.ROLE_USERS, event.getRoleId()));
+                cache.invalidate(new Key(Kind.ROLE_POLICIES, event.getRoleId()));
+                break;
+            case POLICY_CREATED:
+                add(POLICIES, 1);
+                break;
+            case POLICY_DELETED:
+                add(POLICIES, -1);
+                cache.invalidate(new Key(Kind.POLICY_ENTITIES, event.getPolicyId()));
+                break;
+            case USER_ROLE_ASSIGNED:
+            case USER_ROLE_UNASSIGNED: {
+                int delta = event.getType() == RbacChangeEvent.Type.USER_ROLE_ASSIGNED ? 1 : -1;
+                add(new Key(Kind.ROLE_USERS, event.getRoleId()), delta);
+                add(new Key(Kind.USER_ROLES, event.getUserId()), delta);
+                break;
+            }
+            case ENTITY_POLICY_ASSIGNED:
+            case ENTITY_POLICY_UNASSIGNED: {
+                int delta = event.getType() == RbacChangeEvent.Type.ENTITY_POLICY_ASSIGNED ? 1 : -1;
+                Key key = event.getUserId() > 0 ? entityPoliciesKey(EntityType.User, event.getUserId())
+                        : entityPoliciesKey(EntityType.Role, event.getRoleId());
+                add(key, delta);
+                add(new Key(Kind.POLICY_ENTITIES, event.getPolicyId()), delta);
+                break;
+            }
+            case IMPORTED:
+                invalidateAll();
+                break;
+            default:
+                // updates don't change any count
+                break;
+        }
+    }
+
+    private long get(Key key, LongSupplier loader) {
+        AtomicLong count = cache.getIfPresent(key);
+        if (count != null) {
+            MetricsScope.getMetrics().addCounter("countCache.hit", 1);
+        } else {
+            MetricsScope.getMetrics().addCounter("countCache.miss", 1);
+            try {
+                count = cache.get(key, () -> new AtomicLong(loader.getAsLong()));
+            } catch (ExecutionException e) {
+                throw new RuntimeException("failed to count " + key, e.getCause());
+            }
+        }
+        // changes applied to a count loaded after them could take it below zero
+        return Math.max(0, count.get());
+    }
+
+    /**
+     * adjusts a count only if it's cached, the next load counts the change otherwise
+     */
+    private void add(Key key, long delta) {
+        AtomicLong count = cache.getIfPresent(key);
+        if (count != null) count.addAndGet(delta);
+    }
+
+    private static Key entityPoliciesKey(EntityType type, long id) {
+        return new Key(type == EntityType.User ? Kind.USER_POLICIES : Kind.ROLE_POLICIES, id);
+    }
+
+    private static ListElementRequest all() {
+        return ListElementRequest.builder().offset(0).limit(0).build();
+    }
+}
@@ -0,0 +1,193 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Resource;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.mib.metrics.Metrics;
+import org.mib.metrics.MetricsScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * bloom filter over resources having at least one policy, so accesses on resources no policy covers are denied without
+ * querying policies. resources are added before their policies are inserted and the filter is rebuilt periodically to
+ * shed deleted policies. filtering never queries the database, so policies created or imported on other instances stay
+ * invisible here until the next rebuild, accesses they grant are denied for up to the refresh interval. the largest
+ * policy id seen is advanced by the changes of this instance, a rebuild finding a larger one in the database counts
+ * the policies it missed meanwhile.
+ */
+@Slf4j
+@Service
+public class ResourcePolicyFilter {
+
+    private static final long MIN_EXPECTED_INSERTIONS = 10000;
+    // resources added longer ago than this without showing up in a rebuild belong to failed policy creations
+    private static final long PENDING_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final RbacMapper mapper;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final long refreshIntervalSeconds;
+    private final AtomicReference<BloomFilter<Resource>> filter = new AtomicReference<>();
+    private final ConcurrentMap<Resource, Long> pending = Maps.newConcurrentMap();
+    private final AtomicLong maxPolicyId = new AtomicLong();
+    private volatile ScheduledExecutorService scheduler;
+
+    @Autowired
+    public ResourcePolicyFilter(final RbacMapper mapper,
+                                @Value("${rbac.policyFilter.enabled:false}") final boolean enabled,
+                                @Value("${rbac.policyFilter.falsePositiveRate:0.01}") final double falsePositiveRate,
+                                @Value("${rbac.policyFilter.refreshIntervalSeconds:300}") final long refreshIntervalSeconds) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("policy filter false positive rate should be in (0, 1)");
+        }
+        validateLongPositive(refreshIntervalSeconds, "policy filter refresh interval");
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return resources that might have policies, all of them if the filter is disabled or not built yet
+     */
+    public List<Resource> filter(List<Resource> resources) {
+        BloomFilter<Resource> current = filter.get();
+        if (!enabled || current == null) return resources;
+        List<Resource> covered = Lists.newArrayListWithCapacity(resources.size());
+        for (Resource resource : resources) {
+            if (current.mightContain(resource)) covered.add(resource);
+        }
+        if (covered.size() == resources.size()) return covered;
+        MetricsScope.getMetrics().addCounter("resourcePolicyFilter.filtered", resources.size() - covered.size());
+        return covered;
+    }
+
+    /**
+     * to be called before a policy on the resource is inserted
+     */
+    public void put(Resource resource) {
+        validateObjectNotNull(resource, "resource");
+        if (!enabled) return;
+        // recorded first, so a rebuild racing with this call either sees it pending or swaps in before the put below
+        pending.put(resource, System.currentTimeMillis());
+        BloomFilter<Resource> current = filter.get();
+        if (current != null) current.put(resource);
+    }
+
+    public synchronized void rebuild() {
+        log.debug("rebuilding resource policy filter...");
+        long start = System.currentTimeMillis();
+        // read before the policies, so a policy created meanwhile is at worst counted as missed by the next rebuild
+        long builtMaxPolicyId = mapper.getMaxPolicyId();
+        List<Policy> policies = mapper.listAllPolicies();
+        Set<Resource> resources = Sets.newHashSetWithExpectedSize(policies.size());
+        policies.forEach(policy -> resources.add(policy.getResource()));
+        BloomFilter<Resource> built = BloomFilter.create(ResourceFunnel.INSTANCE,
+                Math.max(MIN_EXPECTED_INSERTIONS, resources.size() * 2L), falsePositiveRate);
+        resources.forEach(built::put);
+        // resources of policies not committed when loading stay pending, the others are in the database now
+        for (Map.Entry<Resource, Long> entry : pending.entrySet()) {
+            if (resources.contains(entry.getKey())) pending.remove(entry.getKey(), entry.getValue());
+            else if (entry.getValue() < start - PENDING_RETENTION_MILLIS) pending.remove(entry.getKey(), entry.getValue());
+            else built.put(entry.getKey());
+        }
+        filter.set(built);
+        // resources put while building went to the replaced filter
+        pending.keySet().forEach(built::put);
+        long known = maxPolicyId.getAndAccumulate(builtMaxPolicyId, Math::max);
+        long end = System.currentTimeMillis();
+        log.info("rebuilt resource policy filter over {} resources in {}ms", resources.size(), end - start);
+        Metrics metrics = MetricsScope.getMetrics();
+        metrics.addTime("resourcePolicyFilter.rebuild", start, end, TimeUnit.MILLISECONDS);
+        metrics.addCounter("resourcePolicyFilter.rebuild", 1);
+        // the first build has nothing to compare with
+        if (known > 0 && builtMaxPolicyId > known) metrics.addCounter("resourcePolicyFilter.missed", builtMaxPolicyId - known);
+    }
+
+    public long getMaxPolicyId() {
+        return maxPolicyId.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(RbacChangeEvent event) {
+        if (!enabled) return;
+        switch (event.getType()) {
+            case POLICY_CREATED:
+                maxPolicyId.accumulateAndGet(event.getPolicyId(), Math::max);
+                break;
+            case IMPORTED:
+                // imported policies keep their ids, one query per import rather than one per filtered access
+                maxPolicyId.accumulateAndGet(mapper.getMaxPolicyId(), Math::max);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (!enabled || scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("policy-filter-%d").setDaemon(true).build()
+        );
+        safeRebuild();
+        scheduler.scheduleWithFixedDelay(this::safeRebuild, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    private void safeRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("failed to rebuild resource policy filter, keeping the previous one", e);
+        }
+    }
+
+    private enum ResourceFunnel implements Funnel<Resource> {
+        INSTANCE;
+
+        @Override
+        public void funnel(Resource resource, PrimitiveSink into) {
+            into.putInt(resource.getType().getValue()).putString(resource.getValue(), StandardCharsets.UTF_8);
+        }
+    }
+}
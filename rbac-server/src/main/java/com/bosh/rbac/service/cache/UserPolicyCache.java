@@ -0,0 +1,187 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.datasource.ReadRoute;
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.EntityType;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import lombok.extern.slf4j.Slf4j;
+import org.mib.metrics.MetricsScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+
+/**
+ * caches every policy a user is assigned with, directly or through roles, so repeated authorizations of the same user
+ * take no database round trip. entries are invalidated precisely on admin changes of this instance, the ttl bounds
+ * staleness for changes made through other instances.
+ */
+@Slf4j
+@Service
+public class UserPolicyCache {
+
+    private final RbacMapper mapper;
+    private final boolean enabled;
+    private final Cache<Long, UserPolicies> cache;
+    // bumped before every invalidation, so a load racing with a change takes its entry back out
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public UserPolicyCache(final RbacMapper mapper,
+                           @Value("${rbac.cache.userPolicy.enabled:false}") final boolean enabled,
+                           @Value("${rbac.cache.userPolicy.maxSize:100000}") final long maxSize,
+                           @Value("${rbac.cache.userPolicy.ttlSeconds:3600}") final long ttlSeconds) {
+        validateLongPositive(maxSize, "user policy cache max size");
+        validateLongPositive(ttlSeconds, "user policy cache ttl");
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .removalListener(this::onRemoval)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * same as {@link RbacMapper#getUserPolicy}, policies assigned directly to the user take precedence over the ones
+     * assigned through roles
+     */
+    public EntityPolicy getUserPolicy(long userId, Collection<Long> policyIds) {
+        return userPolicies(userId).find(policyIds);
+    }
+
+    /**
+     * same as {@link RbacMapper#listUserPolicies} in one lookup of the user
+     * @return for each of the policies assigned to the user, the assignment to use, direct ones preferred
+     */
+    public Map<Long, EntityPolicy> getUserPolicies(long userId, Collection<Long> policyIds) {
+        return userPolicies(userId).findAll(policyIds);
+    }
+
+    public void invalidate(long userId) {
+        generation.incrementAndGet();
+        cache.invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(RbacChangeEvent event) {
+        if (!enabled) return;
+        switch (event.getType()) {
+            case USER_ROLE_ASSIGNED:
+            case USER_ROLE_UNASSIGNED:
+                log.debug("invalidating cached policies of user {} for {}", event.getUserId(), event);
+                invalidate(event.getUserId());
+                break;
+            case ENTITY_POLICY_ASSIGNED:
+            case ENTITY_POLICY_UNASSIGNED:
+                if (event.getUserId() > 0) {
+                    log.debug("invalidating cached policies of user {} for {}", event.getUserId(), event);
+                    invalidate(event.getUserId());
+                } else {
+                    List<Long> userIds = mapper.listRoleUserIds(event.getRoleId());
+                    log.debug("invalidating cached policies of {} users with role {} for {}", userIds.size(), event.getRoleId(), event);
+                    generation.incrementAndGet();
+                    cache.invalidateAll(userIds);
+                }
+                break;
+            case IMPORTED:
+                log.debug("invalidating all cached policies for {}", event);
+                invalidateAll();
+                break;
+            default:
+                // roles and policies could only be deleted once unassigned, and updates don't change assignments
+                break;
+        }
+    }
+
+    private UserPolicies userPolicies(long userId) {
+        UserPolicies userPolicies = cache.getIfPresent(userId);
+        if (userPolicies != null) {
+            MetricsScope.getMetrics().addCounter("userPolicyCache.hit", 1);
+            return userPolicies;
+        }
+        MetricsScope.getMetrics().addCounter("userPolicyCache.miss", 1);
+        return load(userId);
+    }
+
+    private UserPolicies load(long userId) {
+        long loadGeneration = generation.get();
+        // invalidated entries are reloaded from the primary, a lagging replica could bring back what was just changed
+        UserPolicies userPolicies = new UserPolicies(ReadRoute.primary(() -> mapper.listUserEntityPolicies(userId)));
+        // put before checking, an invalidation after the check then finds the entry, one before it is seen by the check
+        cache.put(userId, userPolicies);
+        if (generation.get() != loadGeneration) cache.asMap().remove(userId, userPolicies);
+        return userPolicies;
+    }
+
+    private void onRemoval(RemovalNotification<Long, UserPolicies> notification) {
+        if (notification.wasEvicted()) MetricsScope.getMetrics().addCounter("userPolicyCache.eviction", 1);
+        else MetricsScope.getMetrics().addCounter("userPolicyCache.invalidation", 1);
+    }
+
+    private static class UserPolicies {
+
+        private final Map<Long, EntityPolicy> direct;
+        private final Map<Long, EntityPolicy> viaRoles;
+
+        private UserPolicies(List<EntityPolicy> entityPolicies) {
+            Map<Long, EntityPolicy> direct = Maps.newHashMap();
+            Map<Long, EntityPolicy> viaRoles = Maps.newHashMap();
+            for (EntityPolicy ep : entityPolicies) {
+                if (ep.getEntityType() == EntityType.User) direct.putIfAbsent(ep.getPolicyId(), ep);
+                else viaRoles.putIfAbsent(ep.getPolicyId(), ep);
+            }
+            this.direct = ImmutableMap.copyOf(direct);
+            this.viaRoles = ImmutableMap.copyOf(viaRoles);
+        }
+
+        private EntityPolicy find(Collection<Long> policyIds) {
+            for (Long policyId : policyIds) {
+                EntityPolicy ep = direct.get(policyId);
+                if (ep != null) return ep;
+            }
+            for (Long policyId : policyIds) {
+                EntityPolicy ep = viaRoles.get(policyId);
+                if (ep != null) return ep;
+            }
+            return null;
+        }
+
+        private Map<Long, EntityPolicy> findAll(Collection<Long> policyIds) {
+            Map<Long, EntityPolicy> found = Maps.newHashMapWithExpectedSize(policyIds.size());
+            for (Long policyId : policyIds) {
+                EntityPolicy ep = direct.get(policyId);
+                if (ep == null) ep = viaRoles.get(policyId);
+                if (ep != null) found.put(policyId, ep);
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * policies whose resource values are globs, compiled into a {@link PolicyGlobTrie} per resource type. hdfs values are
+ * segmented by / and column values by ., both hierarchical like their decoration, other types match as a whole. only
+ * read once built.
+ */
+public final class GlobPolicies {
+
+    private final Map<ResourceType, PolicyGlobTrie> tries = Maps.newEnumMap(ResourceType.class);
+    private int size;
+
+    /**
+     * @param policies policies of which the ones with glob values are compiled, the others are ignored
+     */
+    public GlobPolicies(Collection<Policy> policies) {
+        for (Policy policy : policies) {
+            Resource resource = policy.getResource();
+            if (!PolicyGlobTrie.isGlob(resource.getValue())) continue;
+            tries.computeIfAbsent(resource.getType(), GlobPolicies::newTrie).insert(policy);
+            size++;
+        }
+    }
+
+    /**
+     * adds glob policies matching the resource to the output list, unless the list has a policy with the same id already
+     */
+    public void collect(Resource resource, List<Policy> out) {
+        PolicyGlobTrie trie = tries.get(resource.getType());
+        if (trie != null) trie.collect(resource.getValue(), out);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static PolicyGlobTrie newTrie(ResourceType type) {
+        switch (type) {
+            case HDFS:
+                return new PolicyGlobTrie('/', true);
+            case COLUMN:
+                return new PolicyGlobTrie('.', true);
+            default:
+                // no value contains it, so values are single segments
+                return new PolicyGlobTrie('\0', false);
+        }
+    }
+}
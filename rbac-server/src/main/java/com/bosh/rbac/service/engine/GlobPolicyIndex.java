@@ -0,0 +1,130 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Resource;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.mib.metrics.Metrics;
+import org.mib.metrics.MetricsScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+
+/**
+ * keeps policies with glob values compiled in memory for authorizations going to database, which only finds policies
+ * on exact values. the index is reloaded in the background shortly after policies are created or deleted through this
+ * instance, and periodically to pick up the ones of other instances, which go unseen until then. decisions on a
+ * {@link PolicySnapshot} use the globs compiled with it instead.
+ */
+@Slf4j
+@Service
+public class GlobPolicyIndex {
+
+    private final RbacMapper mapper;
+    private final boolean enabled;
+    private final long refreshIntervalSeconds;
+    private final long reloadDelayMillis;
+    private final AtomicReference<GlobPolicies> globPolicies = new AtomicReference<>();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean(false);
+    private volatile ScheduledExecutorService scheduler;
+
+    @Autowired
+    public GlobPolicyIndex(final RbacMapper mapper,
+                           @Value("${rbac.globPolicies.enabled:false}") final boolean enabled,
+                           @Value("${rbac.globPolicies.refreshIntervalSeconds:60}") final long refreshIntervalSeconds,
+                           @Value("${rbac.globPolicies.reloadDelayMillis:200}") final long reloadDelayMillis) {
+        validateLongPositive(refreshIntervalSeconds, "glob policies refresh interval");
+        validateLongPositive(reloadDelayMillis, "glob policies reload delay");
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+        this.reloadDelayMillis = reloadDelayMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * adds glob policies matching the resource to the output list, unless the list has a policy with the same id
+     * already, nothing if the index is disabled or not loaded yet
+     */
+    public void collect(Resource resource, List<Policy> out) {
+        GlobPolicies current = globPolicies.get();
+        if (current != null) current.collect(resource, out);
+    }
+
+    public synchronized void refresh() {
+        log.debug("loading glob policies...");
+        long start = System.currentTimeMillis();
+        GlobPolicies loaded = new GlobPolicies(mapper.listGlobPolicies());
+        globPolicies.set(loaded);
+        long end = System.currentTimeMillis();
+        log.info("loaded {} glob policies in {}ms", loaded.size(), end - start);
+        Metrics metrics = MetricsScope.getMetrics();
+        metrics.addTime("globPolicyIndex.refresh", start, end, TimeUnit.MILLISECONDS);
+        metrics.addCounter("globPolicyIndex.refresh", 1);
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (!enabled || scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("glob-policies-%d").setDaemon(true).build()
+        );
+        safeRefresh();
+        scheduler.scheduleWithFixedDelay(this::safeRefresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(RbacChangeEvent event) {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null) return;
+        switch (event.getType()) {
+            case POLICY_CREATED:
+            case POLICY_DELETED:
+            case IMPORTED:
+                log.debug("scheduling glob policies reload for {}", event);
+                // changes arriving while a reload is pending are covered by it, the flag is reset before loading starts
+                if (!reloadScheduled.compareAndSet(false, true)) return;
+                executor.schedule(() -> {
+                    reloadScheduled.set(false);
+                    safeRefresh();
+                }, reloadDelayMillis, TimeUnit.MILLISECONDS);
+                break;
+            default:
+                // resource values of policies never change
+                break;
+        }
+    }
+
+    private void safeRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("failed to load glob policies, keeping the previous ones", e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.model.EntityPolicy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * immutable index of policy assignments of one entity type, keyed by entity id and policy id. kept in sorted primitive
+ * arrays, entity ids once with offsets into the policy ids of each entity, so lookups are two binary searches without
+ * boxing.
+ */
+final class GrantIndex {
+
+    private static final Comparator<EntityPolicy> ORDER =
+            Comparator.comparingLong(EntityPolicy::getEntityId).thenComparingLong(EntityPolicy::getPolicyId);
+
+    private final long[] entityIds;
+    // policies of entityIds[i] are at [offsets[i], offsets[i + 1])
+    private final int[] offsets;
+    private final long[] policyIds;
+    private final EntityPolicy[] grants;
+
+    GrantIndex(Collection<EntityPolicy> entityPolicies) {
+        EntityPolicy[] sorted = entityPolicies.toArray(new EntityPolicy[0]);
+        Arrays.sort(sorted, ORDER);
+        long[] entityIds = new long[sorted.length];
+        int[] offsets = new int[sorted.length + 1];
+        long[] policyIds = new long[sorted.length];
+        EntityPolicy[] grants = new EntityPolicy[sorted.length];
+        int entities = 0, size = 0;
+        for (EntityPolicy ep : sorted) {
+            boolean newEntity = entities == 0 || entityIds[entities - 1] != ep.getEntityId();
+            // the first of duplicated assignments wins
+            if (!newEntity && policyIds[size - 1] == ep.getPolicyId()) continue;
+            if (newEntity) {
+                entityIds[entities] = ep.getEntityId();
+                offsets[entities++] = size;
+            }
+            policyIds[size] = ep.getPolicyId();
+            grants[size++] = ep;
+        }
+        offsets[entities] = size;
+        this.entityIds = Arrays.copyOf(entityIds, entities);
+        this.offsets = Arrays.copyOf(offsets, entities + 1);
+        this.policyIds = Arrays.copyOf(policyIds, size);
+        this.grants = Arrays.copyOf(grants, size);
+    }
+
+    EntityPolicy get(long entityId, long policyId) {
+        int entity = Arrays.binarySearch(entityIds, entityId);
+        if (entity < 0) return null;
+        int index = Arrays.binarySearch(policyIds, offsets[entity], offsets[entity + 1], policyId);
+        return index < 0 ? null : grants[index];
+    }
+
+    int size() {
+        return grants.length;
+    }
+}
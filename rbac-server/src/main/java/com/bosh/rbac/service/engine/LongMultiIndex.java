@@ -0,0 +1,62 @@
+package com.bosh.rbac.service.engine;
+
+import java.util.Arrays;
+
+/**
+ * immutable multimap of long keys to sorted distinct long values, in flat primitive arrays
+ */
+final class LongMultiIndex {
+
+    private final long[] keys;
+    // values of keys[i] are at [offsets[i], offsets[i + 1])
+    private final int[] offsets;
+    private final long[] values;
+
+    /**
+     * @param pairs key and value of each pair, as {key, value} arrays in any order, duplicate pairs are kept once
+     */
+    LongMultiIndex(long[][] pairs) {
+        long[][] sorted = pairs.clone();
+        Arrays.sort(sorted, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        long[] keys = new long[sorted.length];
+        int[] offsets = new int[sorted.length + 1];
+        long[] values = new long[sorted.length];
+        int keyCount = 0, size = 0;
+        for (long[] pair : sorted) {
+            boolean newKey = keyCount == 0 || keys[keyCount - 1] != pair[0];
+            if (!newKey && values[size - 1] == pair[1]) continue;
+            if (newKey) {
+                keys[keyCount] = pair[0];
+                offsets[keyCount++] = size;
+            }
+            values[size++] = pair[1];
+        }
+        offsets[keyCount] = size;
+        this.keys = Arrays.copyOf(keys, keyCount);
+        this.offsets = Arrays.copyOf(offsets, keyCount + 1);
+        this.values = Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @return index of the key to pass to {@link #from} and {@link #to}, negative if absent
+     */
+    int indexOf(long key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    int from(int keyIndex) {
+        return offsets[keyIndex];
+    }
+
+    int to(int keyIndex) {
+        return offsets[keyIndex + 1];
+    }
+
+    long value(int index) {
+        return values[index];
+    }
+
+    int size() {
+        return values.length;
+    }
+}
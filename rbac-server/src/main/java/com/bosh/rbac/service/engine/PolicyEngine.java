@@ -0,0 +1,124 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.mib.metrics.Metrics;
+import org.mib.metrics.MetricsScope;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mib.common.validator.Validator.validateLongPositive;
+
+/**
+ * keeps an in-process {@link PolicySnapshot} of all policies, roles and assignments so authorization decisions need no
+ * database round trip. the snapshot is reloaded shortly after every admin change on this instance, and periodically to
+ * pick up changes made through other instances.
+ */
+@Slf4j
+@Service
+public class PolicyEngine {
+
+    private final RbacMapper mapper;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long refreshIntervalSeconds;
+    private final long reloadDelayMillis;
+    private final AtomicReference<PolicySnapshot> snapshot = new AtomicReference<>();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean(false);
+    private volatile ScheduledExecutorService scheduler;
+
+    @Autowired
+    public PolicyEngine(final RbacMapper mapper, final PlatformTransactionManager transactionManager,
+                        @Value("${rbac.engine.enabled:false}") final boolean enabled,
+                        @Value("${rbac.engine.refreshIntervalSeconds:60}") final long refreshIntervalSeconds,
+                        @Value("${rbac.engine.reloadDelayMillis:200}") final long reloadDelayMillis) {
+        validateLongPositive(refreshIntervalSeconds, "engine refresh interval");
+        validateLongPositive(reloadDelayMillis, "engine reload delay");
+        this.mapper = mapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+        this.reloadDelayMillis = reloadDelayMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return current snapshot, or null if the engine is disabled or has not finished its first load yet, in which
+     * case callers should fall back to the database
+     */
+    public PolicySnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    public void refresh() {
+        log.debug("loading policy snapshot...");
+        long start = System.currentTimeMillis();
+        // one read only transaction, so all tables are read as of the same point and assignments agree with the rows
+        PolicySnapshot loaded = transactionTemplate.execute(status -> new PolicySnapshot(mapper.listAllPolicies(),
+                mapper.listAllRoles(), mapper.listAllUserRoles(), mapper.listAllEntityPolicies()));
+        long end = System.currentTimeMillis();
+        snapshot.set(loaded);
+        log.info("loaded policy snapshot {} in {}ms", loaded, end - start);
+        Metrics metrics = MetricsScope.getMetrics();
+        metrics.addTime("policyEngine.refresh", start, end, TimeUnit.MILLISECONDS);
+        metrics.addCounter("policyEngine.refresh", 1);
+    }
+
+    // migrations must have run before the first load, which is why it doesn't happen in bean initialization
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (!enabled || scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("policy-engine-%d").setDaemon(true).build()
+        );
+        safeRefresh();
+        scheduler.scheduleWithFixedDelay(this::safeRefresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(RbacChangeEvent event) {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null) return;
+        log.debug("scheduling policy snapshot reload for {}", event);
+        // changes arriving while a reload is pending are covered by it, the flag is reset before loading starts
+        if (!reloadScheduled.compareAndSet(false, true)) return;
+        executor.schedule(() -> {
+            reloadScheduled.set(false);
+            safeRefresh();
+        }, reloadDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void safeRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("failed to load policy snapshot, keeping the previous one", e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.model.Policy;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * trie of glob policies of one resource type keyed by the segments of their values. in a segment * matches any
+ * characters and ? one character, while a segment of ** matches any number of segments. literal segments are looked up
+ * by hash and only the distinct wildcard segments of a node are tried, so matching a value walks its segments once no
+ * matter how many glob policies there are. for hierarchical types a policy also matches whatever is below the values it
+ * matches, the same as exact policies on ancestors do through decoration.
+ */
+class PolicyGlobTrie {
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private final char separator;
+    private final boolean hierarchical;
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * @param separator separator of segments, a value is a single segment if it doesn't contain it
+     * @param hierarchical whether policies match values below the ones they match
+     */
+    PolicyGlobTrie(char separator, boolean hierarchical) {
+        this.separator = separator;
+        this.hierarchical = hierarchical;
+    }
+
+    static boolean isGlob(String value) {
+        return value.indexOf('*') >= 0 || value.indexOf('?') >= 0;
+    }
+
+    void insert(Policy policy) {
+        Node node = root;
+        for (String segment : segmentsOf(policy.getResource().getValue())) {
+            node = node.child(segment);
+        }
+        node.policies.add(policy);
+        size++;
+    }
+
+    /**
+     * adds policies matching the value to the output list, unless the list has a policy with the same id already
+     */
+    void collect(String value, List<Policy> out) {
+        List<String> segments = segmentsOf(value);
+        if (segments.isEmpty()) return;
+        List<Node> active = Lists.newArrayList();
+        enter(root, active);
+        for (int i = 0; i < segments.size() && !active.isEmpty(); i++) {
+            String segment = segments.get(i);
+            List<Node> next = Lists.newArrayListWithCapacity(active.size());
+            for (Node node : active) {
+                // a ** node consumes the segment and stays active
+                if (node.anySegments) enter(node, next);
+                Node literal = node.literals.get(segment);
+                if (literal != null) enter(literal, next);
+                for (Map.Entry<String, Node> entry : node.patterns.entrySet()) {
+                    if (matches(entry.getKey(), segment)) enter(entry.getValue(), next);
+                }
+            }
+            active = next;
+            if (hierarchical || i == segments.size() - 1) {
+                for (Node node : active) {
+                    for (Policy policy : node.policies) {
+                        if (!containsId(out, policy.getId())) out.add(policy);
+                    }
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * matches a glob segment of * and ? wildcards against the whole of a segment
+     */
+    static boolean matches(String pattern, String segment) {
+        int p = 0, s = 0, star = -1, mark = 0;
+        while (s < segment.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == segment.charAt(s))) {
+                p++;
+                s++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                mark = s;
+            } else if (star >= 0) {
+                // let the last star take one more character
+                p = star + 1;
+                s = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') p++;
+        return p == pattern.length();
+    }
+
+    private List<String> segmentsOf(String value) {
+        List<String> segments = Lists.newArrayList();
+        int start = 0;
+        while (start <= value.length()) {
+            int end = value.indexOf(separator, start);
+            if (end < 0) end = value.length();
+            // empty segments are skipped, the same as when decorating
+            if (end > start) segments.add(value.substring(start, end));
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static void enter(Node node, List<Node> active) {
+        if (!containsIdentical(active, node)) active.add(node);
+        // ** also matches no segment at all
+        if (node.anySegmentsChild != null && !containsIdentical(active, node.anySegmentsChild)) active.add(node.anySegmentsChild);
+    }
+
+    private static boolean containsIdentical(List<Node> nodes, Node node) {
+        for (Node n : nodes) {
+            if (n == node) return true;
+        }
+        return false;
+    }
+
+    private static boolean containsId(List<Policy> policies, long id) {
+        for (Policy policy : policies) {
+            if (policy.getId() == id) return true;
+        }
+        return false;
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> literals = Maps.newHashMap();
+        private final Map<String, Node> patterns = Maps.newLinkedHashMap();
+        private final List<Policy> policies = Lists.newArrayListWithCapacity(1);
+        // child for a ** segment, and whether this node is one
+        private Node anySegmentsChild;
+        private boolean anySegments;
+
+        private Node child(String segment) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                if (anySegmentsChild == null) {
+                    anySegmentsChild = new Node();
+                    anySegmentsChild.anySegments = true;
+                }
+                return anySegmentsChild;
+            }
+            return (isGlob(segment) ? patterns : literals).computeIfAbsent(segment, k -> new Node());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.service.resource.HDFSAncestorIterator;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * trie of hdfs policies keyed by path segments, the scheme prefix (e.g. hdfs://) being the root key and the authority
+ * the first segment. a policy only sits on a trie node if its value is exactly what {@link
+ * com.bosh.rbac.service.resource.HDFSResourceDecorator} would produce for that ancestor, so one walk down the path
+ * yields the same policies as decorating the path and querying every ancestor. children are looked up by regions of the
+ * path, so the walk doesn't create any string.
+ */
+class PolicyPathTrie {
+
+    private static final String SCHEME_SEPARATOR = "://";
+
+    // children of the root are keyed by scheme prefix
+    private final Node root = new Node();
+    private int size;
+
+    boolean insert(Policy policy) {
+        String value = policy.getResource().getValue();
+        String prefix = prefixOf(value);
+        String[] fields = value.substring(prefix.length()).split("/");
+        List<String> segments = Lists.newArrayListWithCapacity(fields.length);
+        StringBuilder canonical = new StringBuilder(prefix);
+        for (String field : fields) {
+            if (field.isEmpty()) continue;
+            if (!segments.isEmpty()) canonical.append('/');
+            canonical.append(field);
+            segments.add(field);
+        }
+        // values the decorator never produces as an ancestor could only be matched exactly
+        if (segments.isEmpty() || !canonical.toString().equals(value)) return false;
+        Node node = root.addChild(prefix);
+        for (String segment : segments) {
+            node = node.addChild(segment);
+        }
+        node.policies.add(policy);
+        size++;
+        return true;
+    }
+
+    /**
+     * adds policies of every ancestor of the path, the path itself excluded, to the output list
+     */
+    void collectAncestors(String path, List<Policy> out) {
+        HDFSAncestorIterator ancestors = new HDFSAncestorIterator(path);
+        Node node = root.child(path, 0, ancestors.getPrefixLength());
+        while (node != null && ancestors.next()) {
+            node = node.child(path, ancestors.getSegmentStart(), ancestors.getSegmentEnd());
+            if (node == null) return;
+            for (Policy policy : node.policies) {
+                if (!containsIdentical(out, policy)) out.add(policy);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    static boolean containsIdentical(List<Policy> policies, Policy policy) {
+        for (Policy p : policies) {
+            if (p == policy) return true;
+        }
+        return false;
+    }
+
+    private static String prefixOf(String path) {
+        int index = path.indexOf(SCHEME_SEPARATOR);
+        return index < 0 ? "" : path.substring(0, index + SCHEME_SEPARATOR.length());
+    }
+
+    private static class Node {
+
+        private final List<Policy> policies = Lists.newArrayListWithCapacity(1);
+        // open addressing table of children, allocated with the first child
+        private String[] keys;
+        private Node[] children;
+        private int childCount;
+
+        private Node child(String s, int from, int to) {
+            if (keys == null) return null;
+            int length = to - from;
+            int mask = keys.length - 1;
+            for (int i = hash(s, from, to) & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (keys[i].length() == length && keys[i].regionMatches(0, s, from, length)) return children[i];
+            }
+            return null;
+        }
+
+        private Node addChild(String key) {
+            Node child = child(key, 0, key.length());
+            if (child != null) return child;
+            if (keys == null || (childCount + 1) * 2 > keys.length) {
+                String[] oldKeys = keys;
+                Node[] oldChildren = children;
+                keys = new String[keys == null ? 4 : keys.length * 2];
+                children = new Node[keys.length];
+                for (int i = 0; oldKeys != null && i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) put(oldKeys[i], oldChildren[i]);
+                }
+            }
+            child = new Node();
+            put(key, child);
+            childCount++;
+            return child;
+        }
+
+        private void put(String key, Node child) {
+            int mask = keys.length - 1;
+            int i = hash(key, 0, key.length()) & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = key;
+            children[i] = child;
+        }
+
+        private static int hash(String s, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + s.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.EntityType;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.bosh.rbac.model.Role;
+import com.bosh.rbac.model.UserRole;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * immutable, indexed copy of policies, roles and their assignments, answering the same questions as
+ * {@link com.bosh.rbac.mapper.RbacMapper#getResourcesPolicies}, {@link com.bosh.rbac.mapper.RbacMapper#getUserPolicy}
+ * and {@link com.bosh.rbac.mapper.RbacMapper#getRole} without any database access. hdfs policies are additionally
+ * indexed in a {@link PolicyPathTrie}, so hdfs resources don't need to be decorated with their ancestors, and policies
+ * with glob values are compiled into {@link GlobPolicies} matched against every resource of an access. roles and
+ * assignments are kept in sorted primitive arrays, so deciding on a user doesn't box any id.
+ */
+@ToString(of = {"loadedAt", "policyCount", "roleCount", "userRoleCount", "entityPolicyCount"})
+public class PolicySnapshot {
+
+    private final ImmutableListMultimap<Resource, Policy> resourcePolicies;
+    private final PolicyPathTrie hdfsTrie;
+    private final GlobPolicies globPolicies;
+    private final long[] roleIds;
+    private final Role[] roles;
+    private final LongMultiIndex userRoles;
+    private final GrantIndex userPolicies;
+    private final GrantIndex rolePolicies;
+    private final @Getter long loadedAt;
+    private final @Getter int policyCount;
+    private final @Getter int roleCount;
+    private final @Getter int userRoleCount;
+    private final @Getter int entityPolicyCount;
+
+    PolicySnapshot(Collection<Policy> policies, Collection<Role> roles, Collection<UserRole> userRoles,
+                   Collection<EntityPolicy> entityPolicies) {
+        validateObjectNotNull(policies, "policies");
+        validateObjectNotNull(roles, "roles");
+        validateObjectNotNull(userRoles, "user roles");
+        validateObjectNotNull(entityPolicies, "entity policies");
+        ImmutableListMultimap.Builder<Resource, Policy> rpb = ImmutableListMultimap.builder();
+        this.hdfsTrie = new PolicyPathTrie();
+        policies.forEach(policy -> {
+            rpb.put(policy.getResource(), policy);
+            if (policy.getResource().getType() == ResourceType.HDFS) hdfsTrie.insert(policy);
+        });
+        this.resourcePolicies = rpb.build();
+        this.globPolicies = new GlobPolicies(policies);
+        this.roles = roles.toArray(new Role[0]);
+        Arrays.sort(this.roles, Comparator.comparingLong(Role::getId));
+        this.roleIds = new long[this.roles.length];
+        for (int i = 0; i < this.roles.length; i++) {
+            this.roleIds[i] = this.roles[i].getId();
+        }
+        long[][] urs = new long[userRoles.size()][];
+        int i = 0;
+        for (UserRole ur : userRoles) {
+            urs[i++] = new long[] {ur.getUserId(), ur.getRoleId()};
+        }
+        this.userRoles = new LongMultiIndex(urs);
+        List<EntityPolicy> ups = Lists.newArrayList(), rps = Lists.newArrayList();
+        entityPolicies.forEach(ep -> (ep.getEntityType() == EntityType.User ? ups : rps).add(ep));
+        this.userPolicies = new GrantIndex(ups);
+        this.rolePolicies = new GrantIndex(rps);
+        this.loadedAt = System.currentTimeMillis();
+        this.policyCount = policies.size();
+        this.roleCount = roles.size();
+        this.userRoleCount = userRoles.size();
+        this.entityPolicyCount = entityPolicies.size();
+    }
+
+    public List<Policy> getResourcesPolicies(Collection<Resource> resources) {
+        List<Policy> policies = Lists.newArrayList();
+        for (Resource resource : resources) {
+            collectExact(resource, policies);
+        }
+        return policies;
+    }
+
+    /**
+     * @return policies on the resource, on its ancestors if the resource type is indexed by path, and on each of the
+     * decorated resources, plus glob policies matching any of them
+     */
+    public List<Policy> getAccessPolicies(Resource resource, Collection<Resource> decoratedResources) {
+        List<Policy> policies = Lists.newArrayList();
+        collectExact(resource, policies);
+        if (indexesAncestors(resource.getType())) hdfsTrie.collectAncestors(resource.getValue(), policies);
+        globPolicies.collect(resource, policies);
+        if (decoratedResources != null) {
+            for (Resource decorated : decoratedResources) {
+                collectExact(decorated, policies);
+                globPolicies.collect(decorated, policies);
+            }
+        }
+        return policies;
+    }
+
+    /**
+     * @return whether policies on ancestors of resources with this type are found without decorating the resources
+     */
+    public boolean indexesAncestors(ResourceType type) {
+        return type == ResourceType.HDFS;
+    }
+
+    public EntityPolicy getUserPolicy(long userId, Collection<Long> policyIds) {
+        long[] ids = Longs.toArray(policyIds);
+        return getUserPolicy(userId, ids, ids.length);
+    }
+
+    /**
+     * same as {@link #getUserPolicy(long, Collection)} on the first count ids, without boxing
+     */
+    public EntityPolicy getUserPolicy(long userId, long[] policyIds, int count) {
+        // policies assigned directly to the user take precedence over the ones assigned through roles
+        for (int i = 0; i < count; i++) {
+            EntityPolicy ep = userPolicies.get(userId, policyIds[i]);
+            if (ep != null) return ep;
+        }
+        int user = userRoles.indexOf(userId);
+        if (user < 0) return null;
+        int from = userRoles.from(user), to = userRoles.to(user);
+        for (int i = 0; i < count; i++) {
+            for (int j = from; j < to; j++) {
+                EntityPolicy ep = rolePolicies.get(userRoles.value(j), policyIds[i]);
+                if (ep != null) return ep;
+            }
+        }
+        return null;
+    }
+
+    public Role getRole(long roleId) {
+        int index = Arrays.binarySearch(roleIds, roleId);
+        return index < 0 ? null : roles[index];
+    }
+
+    private void collectExact(Resource resource, List<Policy> out) {
+        for (Policy policy : resourcePolicies.get(resource)) {
+            if (!PolicyPathTrie.containsIdentical(out, policy)) out.add(policy);
+        }
+    }
+}
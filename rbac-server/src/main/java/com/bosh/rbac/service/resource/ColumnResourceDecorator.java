@@ -1,27 +1,289 @@
 package com.bosh.rbac.service.resource;
 
+import com.bosh.rbac.context.RbacScope;
 import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.mib.metrics.Metrics;
+import org.mib.metrics.MetricsScope;
+import org.mib.rest.client.HttpExecution;
 import org.mib.rest.client.HttpOperator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static org.mib.common.validator.Validator.validateLongPositive;
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+import static org.mib.common.validator.Validator.validateStringNotBlank;
+
+/**
+ * decorates column resources named like db.table.column with column resources of their enclosing objects (db and
+ * db.table), so one table or database wide policy covers all of its columns, and with tag resources of the column
+ * resolved through the tag service which takes a json array of columns and answers a json object of each column to its
+ * tag names. tags are cached per column, {@link #prefetch} resolves the columns of a whole request missing from the
+ * cache in one call, and concurrent lookups of the same column share one call. calls run off the calling thread, which
+ * waits for them at most the timeout. columns whose tags could not be resolved in time are decorated with nothing and
+ * skipped without calling again for a short while, so an outage of the tag service costs a request one timeout rather
+ * than one per column. that could only deny accesses tags would have allowed.
+ */
 @Slf4j
 @Service
 public class ColumnResourceDecorator implements ResourceDecorator {
 
+    private static final TypeReference<Map<String, List<String>>> TAGS_TR = new TypeReference<Map<String, List<String>>>() {};
+
     private final HttpOperator http;
+    private final boolean hierarchical;
+    private final boolean enabled;
+    private final String tagEndpoint;
+    private final long timeoutMillis;
+    private final Cache<String, List<Resource>> cache;
+    private final Cache<String, Boolean> failed;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, CompletableFuture<List<Resource>>> inFlight = Maps.newConcurrentMap();
 
     @Autowired
-    public ColumnResourceDecorator(final HttpOperator http) {
+    public ColumnResourceDecorator(final HttpOperator http,
+                                   @Value("${rbac.decorator.column.hierarchical:true}") final boolean hierarchical,
+                                   @Value("${rbac.decorator.column.enabled:false}") final boolean enabled,
+                                   @Value("${rbac.decorator.column.tagEndpoint:}") final String tagEndpoint,
+                                   @Value("${rbac.decorator.column.cache.maxSize:100000}") final long cacheMaxSize,
+                                   @Value("${rbac.decorator.column.cache.ttlSeconds:300}") final long cacheTtlSeconds,
+                                   @Value("${rbac.decorator.column.timeoutMillis:1000}") final long timeoutMillis,
+                                   @Value("${rbac.decorator.column.failureTtlMillis:5000}") final long failureTtlMillis) {
+        if (enabled) validateStringNotBlank(tagEndpoint, "column tag endpoint");
+        validateLongPositive(cacheMaxSize, "column tag cache max size");
+        validateLongPositive(cacheTtlSeconds, "column tag cache ttl");
+        validateLongPositive(timeoutMillis, "column tag timeout");
+        validateLongPositive(failureTtlMillis, "column tag failure ttl");
         this.http = http;
+        this.hierarchical = hierarchical;
+        this.enabled = enabled;
+        this.tagEndpoint = tagEndpoint;
+        this.timeoutMillis = timeoutMillis;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.failed = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(failureTtlMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.executor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("column-tags-%d").setDaemon(true).build()
+        );
+    }
+
+    /**
+     * @return whether tags are resolved through the tag service
+     */
+    public boolean isEnabled() {
+        return enabled;
     }
 
     @Override
     public List<Resource> decorate(Resource resource) {
-        // TODO: call API to retrieve tags
+        validateObjectNotNull(resource, "resource");
+        if (resource.getType() != ResourceType.COLUMN) return EMPTY;
+        String column = resource.getValue();
+        validateStringNotBlank(column, "column resource value");
+        List<Resource> ancestors = hierarchical ? ancestorsOf(column) : EMPTY;
+        List<Resource> tags = enabled ? tagsOf(column) : EMPTY;
+        if (tags.isEmpty()) return ancestors;
+        if (ancestors.isEmpty()) return tags;
+        return ImmutableList.<Resource>builder().addAll(ancestors).addAll(tags).build();
+    }
+
+    @Override
+    public void prefetch(Collection<Resource> resources) {
+        validateObjectNotNull(resources, "resources");
+        if (!enabled) return;
+        Set<String> columns = Sets.newHashSet();
+        for (Resource resource : resources) {
+            if (resource == null || resource.getType() != ResourceType.COLUMN || StringUtils.isBlank(resource.getValue())) continue;
+            String column = resource.getValue();
+            if (cache.getIfPresent(column) == null && failed.getIfPresent(column) == null) columns.add(column);
+        }
+        if (columns.isEmpty()) return;
+        // one timeout for the whole request, columns not resolved by then are skipped by the decorations that follow
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Map.Entry<String, CompletableFuture<List<Resource>>> entry : resolve(columns).entrySet()) {
+            await(entry.getKey(), entry.getValue(), deadline - System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return whether decorating the column resource again gives the same result until tags change, which isn't the case
+     * if its tags couldn't be fetched
+     */
+    public boolean isResolved(Resource resource) {
+        validateObjectNotNull(resource, "resource");
+        if (!enabled) return true;
+        return resource.getValue() != null && cache.getIfPresent(resource.getValue()) != null;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        failed.invalidateAll();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private List<Resource> tagsOf(String column) {
+        List<Resource> tags = cache.getIfPresent(column);
+        if (tags != null) {
+            MetricsScope.getMetrics().addCounter("columnTags.hit", 1);
+            return tags;
+        }
+        if (failed.getIfPresent(column) != null) {
+            MetricsScope.getMetrics().addCounter("columnTags.skipped", 1);
+            return EMPTY;
+        }
+        MetricsScope.getMetrics().addCounter("columnTags.miss", 1);
+        return await(column, resolve(Collections.singleton(column)).get(column), timeoutMillis);
+    }
+
+    /**
+     * fetches tags of the columns no one is fetching yet in one call, and joins the calls in flight for the others
+     * @return pending or completed tags of every column
+     */
+    private Map<String, CompletableFuture<List<Resource>>> resolve(Set<String> columns) {
+        Map<String, CompletableFuture<List<Resource>>> futures = Maps.newHashMapWithExpectedSize(columns.size());
+        Map<String, CompletableFuture<List<Resource>>> owned = Maps.newHashMap();
+        for (String column : columns) {
+            CompletableFuture<List<Resource>> future = new CompletableFuture<>();
+            CompletableFuture<List<Resource>> existing = inFlight.putIfAbsent(column, future);
+            if (existing != null) {
+                MetricsScope.getMetrics().addCounter("columnTags.coalesced", 1);
+                futures.put(column, existing);
+                continue;
+            }
+            // a call may have completed since the cache was checked
+            List<Resource> cached = cache.getIfPresent(column);
+            if (cached != null) {
+                inFlight.remove(column, future);
+                future.complete(cached);
+            } else {
+                owned.put(column, future);
+            }
+            futures.put(column, future);
+        }
+        if (!owned.isEmpty()) fetchAsync(owned);
+        return futures;
+    }
+
+    private void fetchAsync(Map<String, CompletableFuture<List<Resource>>> owned) {
+        Metrics metrics = MetricsScope.getMetrics();
+        try {
+            executor.execute(RbacScope.wrap(() -> fetch(owned, metrics)));
+        } catch (RejectedExecutionException e) {
+            log.warn("failed to fetch tags of {} columns, decorating them with no tag", owned.size(), e);
+            owned.forEach((column, future) -> {
+                inFlight.remove(column, future);
+                future.complete(EMPTY);
+            });
+        }
+    }
+
+    private void fetch(Map<String, CompletableFuture<List<Resource>>> owned, Metrics metrics) {
+        List<String> columns = Lists.newArrayList(owned.keySet());
+        log.debug("fetching tags of columns {}...", columns);
+        long start = System.currentTimeMillis();
+        Map<String, List<String>> tags = null;
+        try {
+            tags = HttpExecution.post(tagEndpoint).jsonBody(columns).executeForJson(http, TAGS_TR);
+            log.debug("fetched tags {}", tags);
+        } catch (Exception e) {
+            log.warn("failed to fetch tags of {} columns, decorating them with no tag", columns.size(), e);
+            metrics.addCounter("columnTags.failure", 1);
+        } finally {
+            // cached before leaving the in flight map, so no lookup in between fetches again
+            for (Map.Entry<String, CompletableFuture<List<Resource>>> entry : owned.entrySet()) {
+                List<Resource> resources = EMPTY;
+                if (tags != null) {
+                    resources = toResources(tags.get(entry.getKey()));
+                    cache.put(entry.getKey(), resources);
+                    failed.invalidate(entry.getKey());
+                } else {
+                    failed.put(entry.getKey(), Boolean.TRUE);
+                }
+                inFlight.remove(entry.getKey(), entry.getValue());
+                entry.getValue().complete(resources);
+            }
+        }
+        long end = System.currentTimeMillis();
+        metrics.addTime("columnTags.fetch", start, end, TimeUnit.MILLISECONDS);
+        metrics.addMetric("columnTags.fetch.columns", columns.size());
+    }
+
+    private List<Resource> await(String column, CompletableFuture<List<Resource>> future, long waitMillis) {
+        try {
+            return future.get(Math.max(waitMillis, 0), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("interrupted waiting for tags of column {}, decorating it with no tag", column);
+        } catch (TimeoutException e) {
+            // the call goes on and caches what it gets, until then the column isn't waited for again
+            log.warn("timed out waiting for tags of column {}, decorating it with no tag", column);
+            MetricsScope.getMetrics().addCounter("columnTags.timeout", 1);
+            failed.put(column, Boolean.TRUE);
+        } catch (ExecutionException e) {
+            log.warn("failed waiting for tags of column {}, decorating it with no tag", column, e);
+        }
         return EMPTY;
     }
+
+    /**
+     * @return the enclosing objects outermost first, e.g. db and db.table for db.table.column, none if the name has an
+     * empty part
+     */
+    private static List<Resource> ancestorsOf(String column) {
+        int end = column.indexOf('.');
+        if (end < 0) return EMPTY;
+        List<Resource> ancestors = Lists.newArrayListWithCapacity(2);
+        int start = 0;
+        while (end >= 0) {
+            if (end == start) return EMPTY;
+            ancestors.add(new Resource(ResourceType.COLUMN, column.substring(0, end)));
+            start = end + 1;
+            end = column.indexOf('.', start);
+        }
+        return start == column.length() ? EMPTY : ancestors;
+    }
+
+    private static List<Resource> toResources(List<String> tags) {
+        if (tags == null || tags.isEmpty()) return EMPTY;
+        ImmutableList.Builder<Resource> resources = ImmutableList.builder();
+        for (String tag : tags) {
+            if (StringUtils.isNotBlank(tag)) resources.add(new Resource(ResourceType.TAG, tag));
+        }
+        return resources.build();
+    }
 }
@@ -0,0 +1,104 @@
+package com.bosh.rbac.service.resource;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * walks the ancestors of an hdfs path the way {@link HDFSResourceDecorator} decorates it, the scheme prefix (e.g.
+ * hdfs://) kept on every ancestor, empty segments skipped and the last segment excluded. it only tracks offsets into the
+ * path, so consumers matching segments in place (e.g. a trie) allocate nothing, while {@link #ancestor()} materializes
+ * the current ancestor for the ones that need strings (e.g. sql parameters).
+ * <pre>
+ *     HDFSAncestorIterator it = new HDFSAncestorIterator(path);
+ *     while (it.next()) consume(it.ancestor());
+ * </pre>
+ */
+public final class HDFSAncestorIterator {
+
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private final String path;
+    private final int prefixLength;
+    // start of the last non-empty segment, ancestors end before it
+    private final int limit;
+    private boolean started;
+    private int segmentStart;
+    private int segmentEnd;
+    // whether the current ancestor is a prefix of the path, which doesn't hold after empty segments
+    private boolean contiguous = true;
+
+    public HDFSAncestorIterator(String path) {
+        validateObjectNotNull(path, "hdfs path");
+        this.path = path;
+        int index = path.indexOf(SCHEME_SEPARATOR);
+        this.prefixLength = index < 0 ? 0 : index + SCHEME_SEPARATOR.length();
+        int end = path.length();
+        while (end > prefixLength && path.charAt(end - 1) == '/') end--;
+        int start = end;
+        while (start > prefixLength && path.charAt(start - 1) != '/') start--;
+        this.limit = start;
+        this.segmentStart = prefixLength;
+        this.segmentEnd = prefixLength;
+    }
+
+    /**
+     * moves to the next ancestor
+     * @return false if there is none left
+     */
+    public boolean next() {
+        int start = segmentEnd;
+        while (start < limit && path.charAt(start) == '/') start++;
+        if (start >= limit) return false;
+        // ancestors are joined with single separators and the first one follows the prefix directly
+        if (start - segmentEnd != (started ? 1 : 0)) contiguous = false;
+        started = true;
+        segmentStart = start;
+        // segments before the limit are always followed by a separator
+        segmentEnd = path.indexOf('/', start);
+        return true;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * @return offset of the first character of the current segment in the path
+     */
+    public int getSegmentStart() {
+        return segmentStart;
+    }
+
+    /**
+     * @return offset right after the last character of the current segment in the path
+     */
+    public int getSegmentEnd() {
+        return segmentEnd;
+    }
+
+    public String segment() {
+        return path.substring(segmentStart, segmentEnd);
+    }
+
+    /**
+     * @return the current ancestor, a substring of the path unless empty segments were skipped to reach it
+     */
+    public String ancestor() {
+        if (contiguous) return path.substring(0, segmentEnd);
+        StringBuilder sb = new StringBuilder(segmentEnd).append(path, 0, prefixLength);
+        int start = prefixLength;
+        while (start < segmentEnd) {
+            int end = path.indexOf('/', start);
+            if (end < 0 || end > segmentEnd) end = segmentEnd;
+            if (end > start) {
+                if (sb.length() > prefixLength) sb.append('/');
+                sb.append(path, start, end);
+            }
+            start = end + 1;
+        }
+        return sb.toString();
+    }
+}
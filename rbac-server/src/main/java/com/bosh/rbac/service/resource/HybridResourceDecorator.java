@@ -1,15 +1,33 @@
 package com.bosh.rbac.service.resource;
 
 import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
+import org.mib.metrics.MetricsScope;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import static org.mib.common.validator.Validator.validateLongNotNegative;
+import static org.mib.common.validator.Validator.validateLongPositive;
 import static org.mib.common.validator.Validator.validateObjectNotNull;
 
+/**
+ * decorates resources by type, optionally memoizing the decorated resources per resource as immutable lists shared by
+ * all callers. hdfs ancestors only depend on the path so they never expire by default, column tags are kept shorter than
+ * the tag cache of {@link ColumnResourceDecorator} and only once the tags were actually resolved.
+ */
 @Slf4j
 @Service
 @Qualifier("resourceDecorator")
@@ -17,18 +35,66 @@ public class HybridResourceDecorator implements ResourceDecorator {
 
     private final HDFSResourceDecorator hdfsResourceDecorator;
     private final ColumnResourceDecorator columnResourceDecorator;
+    private final Map<ResourceType, Cache<Resource, List<Resource>>> caches = Maps.newEnumMap(ResourceType.class);
 
     @Autowired
     public HybridResourceDecorator(final HDFSResourceDecorator hdfsResourceDecorator,
-                                   final ColumnResourceDecorator columnResourceDecorator) {
+                                   final ColumnResourceDecorator columnResourceDecorator,
+                                   @Value("${rbac.decorator.cache.enabled:false}") final boolean cacheEnabled,
+                                   @Value("${rbac.decorator.cache.maxSize:100000}") final long cacheMaxSize,
+                                   @Value("${rbac.decorator.cache.hdfs.ttlSeconds:0}") final long hdfsTtlSeconds,
+                                   @Value("${rbac.decorator.cache.column.ttlSeconds:60}") final long columnTtlSeconds) {
+        validateLongPositive(cacheMaxSize, "decoration cache max size");
+        validateLongNotNegative(hdfsTtlSeconds, "hdfs decoration cache ttl");
+        validateLongNotNegative(columnTtlSeconds, "column decoration cache ttl");
         this.hdfsResourceDecorator = hdfsResourceDecorator;
         this.columnResourceDecorator = columnResourceDecorator;
+        if (cacheEnabled) {
+            caches.put(ResourceType.HDFS, buildCache(cacheMaxSize, hdfsTtlSeconds));
+            caches.put(ResourceType.COLUMN, buildCache(cacheMaxSize, columnTtlSeconds));
+        }
     }
 
     @Override
     public List<Resource> decorate(Resource resource) {
         validateObjectNotNull(resource, "resource");
         validateObjectNotNull(resource.getType(), "resource type");
+        Cache<Resource, List<Resource>> cache = caches.get(resource.getType());
+        if (cache == null) return decorateByType(resource);
+        String metricPrefix = "decorationCache." + resource.getType().name().toLowerCase();
+        List<Resource> decorated = cache.getIfPresent(resource);
+        if (decorated != null) {
+            MetricsScope.getMetrics().addCounter(metricPrefix + ".hit", 1);
+            return decorated;
+        }
+        MetricsScope.getMetrics().addCounter(metricPrefix + ".miss", 1);
+        decorated = decorateByType(resource);
+        decorated = decorated == null || decorated.isEmpty() ? EMPTY : ImmutableList.copyOf(decorated);
+        if (resource.getType() != ResourceType.COLUMN || columnResourceDecorator.isResolved(resource)) {
+            // keyed by a copy, callers may reuse their resource objects
+            cache.put(new Resource(resource.getType(), resource.getValue()), decorated);
+        }
+        return decorated;
+    }
+
+    /**
+     * @return statistics of the decoration cache of the resource type, null if it's not cached
+     */
+    public CacheStats stats(ResourceType type) {
+        Cache<Resource, List<Resource>> cache = caches.get(type);
+        return cache == null ? null : cache.stats();
+    }
+
+    public long size(ResourceType type) {
+        Cache<Resource, List<Resource>> cache = caches.get(type);
+        return cache == null ? 0 : cache.size();
+    }
+
+    public void invalidateAll() {
+        caches.values().forEach(Cache::invalidateAll);
+    }
+
+    private List<Resource> decorateByType(Resource resource) {
         switch (resource.getType()) {
             case HDFS:
                 return hdfsResourceDecorator.decorate(resource);
@@ -38,4 +104,18 @@ public class HybridResourceDecorator implements ResourceDecorator {
                 return EMPTY;
         }
     }
+
+    @Override
+    public void prefetch(Collection<Resource> resources) {
+        validateObjectNotNull(resources, "resources");
+        // hdfs ancestors are derived from the path alone
+        columnResourceDecorator.prefetch(resources);
+    }
+
+    private static Cache<Resource, List<Resource>> buildCache(long maxSize, long ttlSeconds) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats();
+        // no ttl means entries only leave the cache when evicted
+        if (ttlSeconds > 0) builder.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS);
+        return builder.build();
+    }
 }
@@ -3,6 +3,7 @@ package com.bosh.rbac.service.resource;
 import com.bosh.rbac.model.Resource;
 import com.google.common.collect.ImmutableList;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ResourceDecorator {
@@ -12,4 +13,9 @@ public interface ResourceDecorator {
     default List<Resource> decorate(Resource resource) {
         return EMPTY;
     }
+
+    /**
+     * resolves whatever decorating the resources needs in bulk, ahead of decorating them one by one
+     */
+    default void prefetch(Collection<Resource> resources) {}
 }
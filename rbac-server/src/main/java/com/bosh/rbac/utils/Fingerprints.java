@@ -0,0 +1,31 @@
+package com.bosh.rbac.utils;
+
+import com.bosh.rbac.model.Resource;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mib.common.validator.Validator.validateObjectNotNull;
+
+/**
+ * 64 bit fingerprints stored along rows for compact indexed lookups. they are persisted, so the functions must never
+ * change, and distinct inputs could share a fingerprint, so hits are to be verified against the actual values.
+ */
+public class Fingerprints {
+
+    private static final HashFunction FARM_HASH = Hashing.farmHashFingerprint64();
+
+    private Fingerprints() {}
+
+    public static long resource(Resource resource) {
+        validateObjectNotNull(resource, "resource");
+        validateObjectNotNull(resource.getType(), "resource type");
+        return resource(resource.getType().getValue(), resource.getValue());
+    }
+
+    public static long resource(int type, String value) {
+        validateObjectNotNull(value, "resource value");
+        return FARM_HASH.newHasher().putInt(type).putString(value, StandardCharsets.UTF_8).hash().asLong();
+    }
+}
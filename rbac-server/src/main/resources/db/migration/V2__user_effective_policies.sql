@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS `user_effective_policies` (
+  `user_id` BIGINT UNSIGNED NOT NULL,
+  `policy_id` BIGINT UNSIGNED NOT NULL,
+  `via_entity_type` TINYINT(1) UNSIGNED NOT NULL,
+  `via_entity_id` BIGINT UNSIGNED NOT NULL,
+  `created_at` DATETIME(3) NOT NULL,
+  PRIMARY KEY (`user_id`, `policy_id`, `via_entity_type`, `via_entity_id`),
+  KEY (`via_entity_type`, `via_entity_id`, `policy_id`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+INSERT INTO `user_effective_policies` (`user_id`, `policy_id`, `via_entity_type`, `via_entity_id`, `created_at`)
+SELECT ep.`entity_id`, ep.`policy_id`, 1, ep.`entity_id`, ep.`created_at` FROM `entities_policies` ep
+WHERE ep.`entity_type` = 1
+UNION ALL
+SELECT ur.`user_id`, ep.`policy_id`, 2, ur.`role_id`, ep.`created_at` FROM `users_roles` ur, `entities_policies` ep
+WHERE ep.`entity_type` = 2 AND ep.`entity_id` = ur.`role_id`;
@@ -0,0 +1,3 @@
+ALTER TABLE `policies`
+  ADD COLUMN `resource_fingerprint` BIGINT NOT NULL DEFAULT 0 AFTER `resource_value`,
+  ADD KEY (`resource_fingerprint`);
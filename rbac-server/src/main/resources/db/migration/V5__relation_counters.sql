@@ -0,0 +1,11 @@
+ALTER TABLE `roles`
+  ADD COLUMN `user_count` BIGINT NOT NULL DEFAULT 0,
+  ADD COLUMN `policy_count` BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE `policies` ADD COLUMN `entity_count` BIGINT NOT NULL DEFAULT 0;
+
+UPDATE `roles` r SET
+  `user_count` = (SELECT COUNT(1) FROM `users_roles` ur WHERE ur.`role_id` = r.`id`),
+  `policy_count` = (SELECT COUNT(1) FROM `entities_policies` ep WHERE ep.`entity_type` = 2 AND ep.`entity_id` = r.`id`);
+
+UPDATE `policies` p SET `entity_count` = (SELECT COUNT(1) FROM `entities_policies` ep WHERE ep.`policy_id` = p.`id`);
@@ -0,0 +1,82 @@
+package com.bosh.rbac.context;
+
+import com.bosh.rbac.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("ut")
+class RbacScopeTest {
+
+    @Autowired
+    @Qualifier("evaluationExecutor")
+    private ExecutorService executor;
+
+    @AfterEach
+    void destroy() {
+        RbacScope.clearContext();
+        MDC.clear();
+    }
+
+    @Test
+    void testWrapCallable() throws Exception {
+        RbacContext context = new RbacContext("rId1", "uId1");
+        User user = new User();
+        user.setId(1);
+        context.setUser(user);
+        RbacScope.setContext(context);
+        MDC.put("uId", "uId1");
+        MDC.put("rId", "rId1");
+
+        assertSame(user, executor.submit(RbacScope.wrap(RbacScope::getUser)).get());
+        assertEquals("rId1", executor.submit(RbacScope.wrap(() -> MDC.get("rId"))).get());
+        // nothing leaks into the executing thread
+        assertThrows(IllegalStateException.class, () -> {
+            try {
+                executor.submit(RbacScope::getContext).get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        });
+        assertNull(executor.submit(() -> MDC.get("rId")).get());
+    }
+
+    @Test
+    void testWrapRestoresCallerScope() {
+        RbacScope.setContext(new RbacContext("rId1", "uId1"));
+        MDC.put("rId", "rId1");
+        Runnable wrapped = RbacScope.wrap(() -> {
+            assertEquals("rId1", RbacScope.getRequestId());
+            assertEquals("rId1", MDC.get("rId"));
+        });
+        RbacScope.setContext(new RbacContext("rId2", "uId2"));
+        MDC.put("rId", "rId2");
+        // run by the calling thread itself, e.g. when the executor queue is full
+        wrapped.run();
+        assertEquals("rId2", RbacScope.getRequestId());
+        assertEquals("rId2", MDC.get("rId"));
+
+        AtomicReference<String> requestId = new AtomicReference<>();
+        Runnable captured = RbacScope.wrap(() -> requestId.set(RbacScope.getRequestId()));
+        RbacScope.clearContext();
+        MDC.clear();
+        captured.run();
+        assertEquals("rId2", requestId.get());
+        assertNull(RbacScope.clearContext());
+        assertNull(MDC.get("rId"));
+    }
+}
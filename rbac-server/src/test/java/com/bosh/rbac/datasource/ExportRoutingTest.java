@@ -0,0 +1,61 @@
+package com.bosh.rbac.datasource;
+
+import com.bosh.rbac.service.ExportService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "rbac.export.cursorFetch.enabled=true",
+        "rbac.export.datasource.driver-class-name=org.hsqldb.jdbc.JDBCDriver",
+        "rbac.export.datasource.jdbc-url=jdbc:hsqldb:mem:rbac;sql.syntax_mys=true",
+        "rbac.export.datasource.username=sa",
+        "rbac.export.datasource.password=",
+        "rbac.export.datasource.minimum-idle=0"
+})
+@ActiveProfiles("ut")
+class ExportRoutingTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    @Qualifier("exportDataSource")
+    private HikariDataSource exportDataSource;
+    @Autowired
+    private ExportService exportService;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `users` values (1, 'uId1', 'user1', 0, timestamp '2017-10-20 00:10:30')");
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `users`");
+    }
+
+    @Test
+    void testExportOnExportPool() throws Exception {
+        // the export pool starts with the first connection taken from it, which nothing but exports takes
+        assertEquals(1L, (long) jdbc.queryForObject("select count(*) from `users`", Long.class));
+        assertNull(exportDataSource.getHikariPoolMXBean());
+        assertFalse(ReadRoute.isExport());
+        assertTrue(ReadRoute.export(ReadRoute::isExport));
+        assertEquals(1, exportService.export(new ByteArrayOutputStream()));
+        assertNotNull(exportDataSource.getHikariPoolMXBean());
+    }
+}
@@ -0,0 +1,101 @@
+package com.bosh.rbac.datasource;
+
+import com.bosh.rbac.context.RbacContext;
+import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.Role;
+import com.bosh.rbac.service.AdminService;
+import com.bosh.rbac.service.EntityReadService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mib.rest.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "rbac.replica.enabled=true",
+        "rbac.replica.primaryPinMillis=60000",
+        "rbac.replica.datasource.driver-class-name=org.hsqldb.jdbc.JDBCDriver",
+        "rbac.replica.datasource.jdbc-url=jdbc:hsqldb:mem:rbac_replica;sql.syntax_mys=true",
+        "rbac.replica.datasource.username=sa",
+        "rbac.replica.datasource.password="
+})
+@ActiveProfiles("ut")
+class ReplicaRoutingTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+    @Autowired
+    private RbacMapper mapper;
+    @Autowired
+    private EntityReadService entityReadService;
+    @Autowired
+    private AdminService adminService;
+    @Autowired
+    private ReplicaRouting routing;
+
+    private JdbcTemplate replicaJdbc;
+
+    @BeforeEach
+    void setup() {
+        Flyway.configure().dataSource(replicaDataSource).baselineOnMigrate(true)
+                .locations("classpath:testdb/migration", "classpath:com/bosh/rbac/migration").load().migrate();
+        replicaJdbc = new JdbcTemplate(replicaDataSource);
+        jdbc.execute("insert into `users` values" +
+                "(1, 'uId1', 'user1', 1, timestamp '2017-10-20 00:10:30')," +
+                "(2, 'uId2', 'user2', 0, timestamp '2017-10-20 00:10:30')");
+        // the replica hasn't caught up with user 2 yet
+        replicaJdbc.execute("insert into `users` values (1, 'uId1', 'user1', 1, timestamp '2017-10-20 00:10:30')");
+    }
+
+    @AfterEach
+    void destroy() {
+        RbacScope.clearContext();
+        jdbc.execute("delete from `users`");
+        jdbc.execute("delete from `roles`");
+        replicaJdbc.execute("delete from `users`");
+    }
+
+    @Test
+    void testReadsOnReplica() throws Exception {
+        assertTrue(routing.isEnabled());
+        assertEquals("user2", entityReadService.getUser("uId2").getUsername());
+        assertEquals("user1", routing.read(() -> entityReadService.getUser("uId1")).getUsername());
+        assertThrows(ResourceNotFoundException.class, () -> routing.read(() -> entityReadService.getUser("uId2")));
+        // the route is carried over to other threads and restored afterwards
+        assertTrue(ReadRoute.replica(() -> ReadRoute.wrap(ReadRoute::isReplica)).call());
+        assertFalse(ReadRoute.isReplica());
+        assertNotNull(ReadRoute.replica(() -> ReadRoute.primary(() -> mapper.getUser("uId2"))));
+    }
+
+    @Test
+    void testReadYourWrites() {
+        RbacScope.setContext(new RbacContext("rId", "uId1"));
+        RbacScope.setUser(entityReadService.getUser("uId1"));
+        Role role = new Role();
+        role.setName("analyst");
+        role.setDescription("read only");
+        long roleId = adminService.createRole(role).getId();
+        // the admin reads the role just created, others don't until the replica catches up
+        assertEquals("analyst", routing.read(() -> mapper.getRole(roleId)).getName());
+        RbacScope.setContext(new RbacContext("rId", "uId2"));
+        assertNull(routing.read(() -> mapper.getRole(roleId)));
+    }
+}
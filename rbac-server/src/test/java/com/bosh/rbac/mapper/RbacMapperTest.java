@@ -1,7 +1,9 @@
 package com.bosh.rbac.mapper;
 
 import com.bosh.rbac.model.*;
+import com.bosh.rbac.utils.Fingerprints;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,6 +17,8 @@ import org.springframework.test.context.ActiveProfiles;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -39,10 +43,10 @@ class RbacMapperTest {
                 "(1, 'uId1', 'user1', 0, timestamp '2017-10-20 00:10:30')," +
                 "(2, 'uId2', 'user2', 0, timestamp '2017-10-20 00:10:30')," +
                 "(3, 'uId3', 'user3', 0, timestamp '2017-10-20 00:10:30')");
-        jdbc.execute("insert into `roles` values" +
+        jdbc.execute("insert into `roles` (`id`, `name`, `description`, `created_at`, `updated_at`) values" +
                 "(1, 'admin', 'administrator', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
                 "(2, 'analyst', 'read only', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
-        jdbc.execute("insert into `policies` values" +
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
                 "(1, 'hdfs_reader', 'hdfs read only role', 1, 'hdfs://host:8020/data', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
                 "(2, 'hdfs_writer', 'hdfs write role', 1, 'hdfs://host:8020/data', 2, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
                 "(3, 'tag_reader', 'tag read only role', 3, 'tag1', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
@@ -57,6 +61,10 @@ class RbacMapperTest {
                 "(2, 2, 3, timestamp '2017-10-20 00:10:30')," +
                 "(1, 3, 1, timestamp '2017-10-20 00:10:30')," +
                 "(1, 3, 4, timestamp '2017-10-20 00:10:30')");
+        mapper.backfillUserEffectivePolicies();
+        mapper.backfillPolicyFingerprints();
+        mapper.repairRoleCounters();
+        mapper.repairPolicyCounters();
     }
 
     @AfterEach
@@ -66,6 +74,7 @@ class RbacMapperTest {
         jdbc.execute("delete from `policies`");
         jdbc.execute("delete from `users_roles`");
         jdbc.execute("delete from `entities_policies`");
+        jdbc.execute("delete from `user_effective_policies`");
     }
 
     @Test
@@ -219,6 +228,55 @@ class RbacMapperTest {
         assertEquals(Lists.newArrayList(policy3, policy4), mapper.getResourcesPolicies(Lists.newArrayList(r2)));
     }
 
+    @Test
+    void testRelationCounters() {
+        assertEquals(1, mapper.getRoleUserCount(1));
+        assertEquals(2, mapper.getRolePolicyCount(1));
+        assertEquals(2, mapper.getPolicyEntityCount(4));
+        assertEquals(0, mapper.getRoleUserCount(99));
+
+        assertEquals(1, mapper.addRoleUserCount(1, 1));
+        assertEquals(2, mapper.getRoleUserCount(1));
+        assertEquals(1, mapper.addPolicyEntityCount(4, -1));
+        assertEquals(1, mapper.getPolicyEntityCount(4));
+        // never below zero
+        assertEquals(1, mapper.addRolePolicyCount(2, -5));
+        assertEquals(0, mapper.getRolePolicyCount(2));
+
+        assertEquals(1, mapper.refreshRoleCounters(Lists.newArrayList(1L)));
+        assertEquals(1, mapper.getRoleUserCount(1));
+        assertEquals(1, mapper.repairRoleCounters());
+        assertEquals(2, mapper.getRolePolicyCount(2));
+        assertEquals(1, mapper.repairPolicyCounters());
+        assertEquals(2, mapper.getPolicyEntityCount(4));
+        // counters in line are left alone
+        assertEquals(0, mapper.repairRoleCounters());
+        assertEquals(0, mapper.refreshPolicyCounters(Lists.newArrayList(1L, 4L)));
+    }
+
+    @Test
+    void testResourceFingerprints() {
+        Resource r1 = new Resource(ResourceType.HDFS, "hdfs://host:8020/data");
+        Resource r2 = new Resource(ResourceType.TAG, "tag1");
+        assertEquals(Fingerprints.resource(r1), (long) jdbc.queryForObject("select `resource_fingerprint` from `policies` where `id`=1", Long.class));
+        assertEquals(0, mapper.backfillPolicyFingerprints());
+
+        Policy policy = createPolicy();
+        assertEquals(1, mapper.insertPolicy(policy));
+        assertEquals(Lists.newArrayList(policy), mapper.getResourcesPolicies(Lists.newArrayList(policy.getResource())));
+
+        // policies of another resource sharing the fingerprint are dropped
+        jdbc.update("update `policies` set `resource_fingerprint`=? where `id`=3", Fingerprints.resource(r1));
+        assertEquals(Lists.newArrayList(mapper.getPolicy(1), mapper.getPolicy(2)), mapper.getResourcesPolicies(Lists.newArrayList(r1)));
+        assertEquals(Lists.newArrayList(mapper.getPolicy(4)), mapper.getResourcesPolicies(Lists.newArrayList(r2)));
+
+        jdbc.update("update `policies` set `resource_fingerprint`=0 where `id` in (3, 4)");
+        // as written by versions without fingerprints, found by value
+        assertEquals(Lists.newArrayList(mapper.getPolicy(3), mapper.getPolicy(4)), mapper.getResourcesPolicies(Lists.newArrayList(r2)));
+        assertEquals(2, mapper.backfillPolicyFingerprints());
+        assertEquals(Lists.newArrayList(mapper.getPolicy(3), mapper.getPolicy(4)), mapper.getResourcesPolicies(Lists.newArrayList(r2)));
+    }
+
     @Test
     void testUserRoleRead() {
         UserRole ur1 = new UserRole(1, 1, DATE), ur2 = new UserRole(2, 2, DATE);
@@ -248,6 +306,18 @@ class RbacMapperTest {
         assertNotNull(mapper.getUserRole(3, 1));
     }
 
+    @Test
+    void testUserRoleAssign() {
+        assertEquals(1, mapper.assignUserRole(3, 1));
+        assertNotNull(mapper.getUserRole(3, 1));
+        // assigned already
+        assertEquals(0, mapper.assignUserRole(3, 1));
+        // missing user or role
+        assertEquals(0, mapper.assignUserRole(99, 1));
+        assertEquals(0, mapper.assignUserRole(3, 99));
+        assertNull(mapper.getUserRole(3, 99));
+    }
+
     @Test
     void testUserRoleDelete() {
         assertNotNull(mapper.getUserRole(1, 1));
@@ -274,6 +344,64 @@ class RbacMapperTest {
         assertNull(mapper.getUserPolicy(2, Lists.newArrayList(2L)));
     }
 
+    @Test
+    void testUserEffectivePolicies() {
+        assertEquals(0, mapper.backfillUserEffectivePolicies());
+        assertEquals(Sets.newHashSet(new EntityPolicy(EntityType.User, 3, 1, DATE), new EntityPolicy(EntityType.User, 3, 4, DATE)),
+                Sets.newHashSet(mapper.listUserEntityPolicies(3)));
+
+        assertEquals(1, mapper.insertUserRole(3, 1));
+        assertEquals(2, mapper.insertUserRoleEffectivePolicies(3, 1));
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 2, DATE), mapper.getUserPolicy(3, Lists.newArrayList(2L)));
+        // direct assignments are preferred
+        assertEquals(new EntityPolicy(EntityType.User, 3, 4, DATE), mapper.getUserPolicy(3, Lists.newArrayList(4L)));
+        assertEquals(1, mapper.deleteEntityPolicy(EntityType.User, 3, 4));
+        assertEquals(1, mapper.deleteEntityPolicyEffectivePolicies(EntityType.User, 3, 4));
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 4, DATE), mapper.getUserPolicy(3, Lists.newArrayList(4L)));
+
+        assertEquals(1, mapper.insertEntityPolicy(EntityType.Role, 1, 3));
+        assertEquals(2, mapper.insertEntityPolicyEffectivePolicies(EntityType.Role, 1, 3));
+        assertEquals(EntityType.Role, mapper.getUserPolicy(1, Lists.newArrayList(3L)).getEntityType());
+        assertEquals(EntityType.Role, mapper.getUserPolicy(3, Lists.newArrayList(3L)).getEntityType());
+        assertEquals(2, mapper.deleteEntityPolicyEffectivePolicies(EntityType.Role, 1, 3));
+        assertNull(mapper.getUserPolicy(1, Lists.newArrayList(3L)));
+
+        assertEquals(2, mapper.deleteUserRoleEffectivePolicies(3, 1));
+        assertEquals(new EntityPolicy(EntityType.User, 3, 1, DATE), mapper.getUserPolicy(3, Lists.newArrayList(1L, 2L, 4L)));
+        assertNull(mapper.getUserPolicy(3, Lists.newArrayList(2L, 4L)));
+    }
+
+    @Test
+    void testBulkAssignments() {
+        assertEquals(Sets.newHashSet("uId1", "uId3"), mapper.getUsers(Lists.newArrayList("uId1", "uId3", "uId4")).stream()
+                .map(User::getUserId).collect(Collectors.toSet()));
+        assertEquals(2, mapper.getPolicies(Lists.newArrayList(1L, 4L, 5L)).size());
+
+        UserRole ur11 = new UserRole(1, 1, null), ur32 = new UserRole(3, 2, null);
+        EntityPolicy rp22 = new EntityPolicy(EntityType.Role, 2, 2, null), up13 = new EntityPolicy(EntityType.User, 1, 3, null);
+        assertEquals(Lists.newArrayList(new UserRole(1, 1, DATE)), mapper.getUserRolesByKeys(Lists.newArrayList(ur11, ur32)));
+        assertEquals(Lists.newArrayList(), mapper.getEntityPoliciesByKeys(Lists.newArrayList(rp22, up13)));
+
+        // policies of roles go first, so user 3 gets policy 2 through role 2 once
+        assertEquals(2, mapper.insertEntityPolicies(Lists.newArrayList(rp22, up13)));
+        assertEquals(1, mapper.insertEntityPoliciesEffectivePolicies(EntityType.Role, Lists.newArrayList(rp22)));
+        assertEquals(1, mapper.insertEntityPoliciesEffectivePolicies(EntityType.User, Lists.newArrayList(up13)));
+        assertEquals(1, mapper.insertUserRoles(Lists.newArrayList(ur32)));
+        assertEquals(3, mapper.insertUserRolesEffectivePolicies(Lists.newArrayList(ur32)));
+        assertEquals(2, mapper.getEntityPoliciesByKeys(Lists.newArrayList(rp22, up13)).size());
+        assertEquals(EntityType.Role, mapper.getUserPolicy(3, Lists.newArrayList(2L)).getEntityType());
+        assertEquals(EntityType.User, mapper.getUserPolicy(1, Lists.newArrayList(3L)).getEntityType());
+
+        assertEquals(2, mapper.deleteEntityPoliciesByKeys(Lists.newArrayList(rp22, up13)));
+        assertEquals(2, mapper.deleteEntityPoliciesEffectivePolicies(EntityType.Role, Lists.newArrayList(rp22)));
+        assertEquals(1, mapper.deleteEntityPoliciesEffectivePolicies(EntityType.User, Lists.newArrayList(up13)));
+        assertEquals(2, mapper.deleteUserRolesByKeys(Lists.newArrayList(ur11, ur32)));
+        assertEquals(4, mapper.deleteUserRolesEffectivePolicies(Lists.newArrayList(ur11, ur32)));
+        assertEquals(Lists.newArrayList(), mapper.getUserRolesByKeys(Lists.newArrayList(ur11, ur32)));
+        assertNull(mapper.getUserPolicy(3, Lists.newArrayList(2L, 3L)));
+        assertNull(mapper.getUserPolicy(1, Lists.newArrayList(2L, 3L, 4L)));
+    }
+
     @Test
     void testEntityPolicyRead() {
         EntityPolicy ep1 = new EntityPolicy(EntityType.Role, 1, 2, DATE), ep2 = new EntityPolicy(EntityType.Role, 1, 4, DATE);
@@ -314,6 +442,21 @@ class RbacMapperTest {
         assertNotNull(mapper.getEntityPolicy(EntityType.Role, 1, 1));
     }
 
+    @Test
+    void testEntityPolicyAssign() {
+        assertEquals(1, mapper.assignEntityPolicy(EntityType.Role, 1, 1));
+        assertEquals(1, mapper.assignEntityPolicy(EntityType.User, 1, 1));
+        assertNotNull(mapper.getEntityPolicy(EntityType.Role, 1, 1));
+        assertNotNull(mapper.getEntityPolicy(EntityType.User, 1, 1));
+        // assigned already
+        assertEquals(0, mapper.assignEntityPolicy(EntityType.Role, 1, 1));
+        // missing entity or policy, the entity is looked up in the table of its type
+        assertEquals(0, mapper.assignEntityPolicy(EntityType.Role, 3, 1));
+        assertEquals(0, mapper.assignEntityPolicy(EntityType.User, 99, 1));
+        assertEquals(0, mapper.assignEntityPolicy(EntityType.User, 1, 99));
+        assertNull(mapper.getEntityPolicy(EntityType.Role, 3, 1));
+    }
+
     @Test
     void testEntityPolicyDelete() {
         assertNotNull(mapper.getEntityPolicy(EntityType.Role, 1, 2));
@@ -333,6 +476,45 @@ class RbacMapperTest {
         assertEquals(0, mapper.countPolicyEntities(1));
     }
 
+    @Test
+    void testListAfter() {
+        ListElementRequest ler = ListElementRequest.builder().offset(0).limit(2).build();
+        assertEquals(Lists.newArrayList(1L, 2L), ids(mapper.listUsersAfter(ler, 0)));
+        assertEquals(Lists.newArrayList(3L), ids(mapper.listUsersAfter(ler, 2)));
+        assertTrue(mapper.listUsersAfter(ler, 3).isEmpty());
+        ler.setFilters(Lists.newArrayList(Filter.like("username", "user3")));
+        assertEquals(Lists.newArrayList(3L), ids(mapper.listUsersAfter(ler, 1)));
+
+        ler = ListElementRequest.builder().offset(0).limit(1).build();
+        assertEquals(Lists.newArrayList(1L), ids(mapper.listRolesAfter(ler, 0)));
+        assertEquals(Lists.newArrayList(2L), ids(mapper.listRolesAfter(ler, 1)));
+        ler.setLimit(10);
+        assertEquals(Lists.newArrayList(3L, 4L), policyIds(mapper.listPoliciesAfter(ler, 2)));
+
+        assertEquals(Lists.newArrayList(2L), ids(mapper.listRoleUsersAfter(2, 0, 10)));
+        assertTrue(mapper.listRoleUsersAfter(2, 2, 10).isEmpty());
+        assertEquals(Lists.newArrayList(1L), ids(mapper.listUserRolesAfter(1, 0, 10)));
+        assertTrue(mapper.listUserRolesAfter(1, 1, 10).isEmpty());
+
+        Entity user3 = new Entity(EntityType.User, 3), role2 = new Entity(EntityType.Role, 2);
+        assertEquals(Lists.newArrayList(user3, role2), mapper.listPolicyEntitiesAfter(1, null, 10));
+        assertEquals(Lists.newArrayList(user3), mapper.listPolicyEntitiesAfter(1, null, 1));
+        assertEquals(Lists.newArrayList(role2), mapper.listPolicyEntitiesAfter(1, user3, 10));
+        assertTrue(mapper.listPolicyEntitiesAfter(1, role2, 10).isEmpty());
+
+        Entity role1 = new Entity(EntityType.Role, 1);
+        assertEquals(Lists.newArrayList(2L, 4L), policyIds(mapper.listEntityPoliciesAfter(role1, 0, 10)));
+        assertEquals(Lists.newArrayList(4L), policyIds(mapper.listEntityPoliciesAfter(role1, 2, 10)));
+    }
+
+    private static List<Long> ids(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getId).collect(Collectors.toList());
+    }
+
+    private static List<Long> policyIds(List<Policy> policies) {
+        return policies.stream().map(Policy::getId).collect(Collectors.toList());
+    }
+
     private User createUser() {
         User user = new User();
         user.setUserId(randomAlphanumeric(10));
@@ -0,0 +1,50 @@
+package com.bosh.rbac.mapper.th;
+
+import com.bosh.rbac.model.Action;
+import com.bosh.rbac.model.EntityType;
+import com.bosh.rbac.model.IntEnums;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("ut")
+class IntEnumsTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testValueOf() {
+        for (Action action : Action.values()) assertSame(action, Action.valueOf(action.getValue()));
+        for (EntityType type : EntityType.values()) assertSame(type, EntityType.valueOf(type.getValue()));
+        for (ResourceType type : ResourceType.values()) assertSame(type, IntEnums.valueOf(ResourceType.class, type.getValue()));
+        assertNull(Action.valueOf(0));
+        assertNull(Action.valueOf(-1));
+        assertNull(ResourceType.valueOf(5));
+        assertThrows(IllegalArgumentException.class, () -> IntEnums.of(EntityType.class, 3));
+    }
+
+    @Test
+    void testJson() throws Exception {
+        assertEquals("\"Write\"", objectMapper.writeValueAsString(Action.Write));
+        assertSame(Action.Write, objectMapper.readValue("\"Write\"", Action.class));
+        // numbers are values rather than ordinals
+        assertSame(Action.Read, objectMapper.readValue("1", Action.class));
+        assertSame(EntityType.Role, objectMapper.readValue("\"2\"", EntityType.class));
+        assertEquals(new Resource(ResourceType.TAG, "tag1"),
+                objectMapper.readValue("{\"type\":3,\"value\":\"tag1\"}", Resource.class));
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue("\"Delete\"", Action.class));
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue("0", Action.class));
+    }
+}
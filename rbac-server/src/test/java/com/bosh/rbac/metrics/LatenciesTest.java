@@ -0,0 +1,65 @@
+package com.bosh.rbac.metrics;
+
+import com.bosh.rbac.mapper.RbacMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("ut")
+class LatenciesTest {
+
+    @Autowired
+    private RbacMapper mapper;
+    @Autowired
+    private LatencyEndpoint endpoint;
+
+    @AfterEach
+    void destroy() {
+        endpoint.reset();
+    }
+
+    @Test
+    void testWindows() {
+        for (long i = 1; i <= 1000; i++) Latencies.record("test", i * 1000);
+        // nothing until the window is closed
+        assertNull(endpoint.latency("test"));
+        Latencies.rotate();
+        LatencySummary summary = endpoint.latency("test");
+        assertEquals(1000, summary.getCount());
+        assertEquals(500, summary.getP50(), 1);
+        assertEquals(990, summary.getP99(), 1);
+        assertEquals(999, summary.getP999(), 1);
+        assertEquals(1000, summary.getMax(), 1);
+
+        // the next window starts empty
+        Latencies.record("test", 5000);
+        Latencies.rotate();
+        assertEquals(1, endpoint.latency("test").getCount());
+        Latencies.rotate();
+        assertNull(endpoint.latency("test"));
+
+        Latencies.record("test", 5000);
+        Latencies.rotate();
+        endpoint.reset();
+        assertTrue(endpoint.latencies().isEmpty());
+    }
+
+    @Test
+    void testMapperLatencies() {
+        mapper.getUser("uId1");
+        mapper.getUser("uId2");
+        Latencies.rotate();
+        LatencySummary summary = endpoint.latencies().get("mapper.getUser");
+        assertNotNull(summary);
+        assertEquals(2, summary.getCount());
+        assertTrue(summary.getMax() > 0);
+    }
+}
@@ -0,0 +1,98 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.context.RbacContext;
+import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.EntityType;
+import com.bosh.rbac.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.ASSIGNED;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.UNASSIGNED;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.UNCHANGED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * assignments against the test database, where the primary keys of the relation tables make a repeated insert a no-op
+ */
+@SpringBootTest
+@ActiveProfiles("ut")
+class AdminServiceAssignmentTest {
+
+    @Mock
+    private User user;
+    @Mock
+    private RbacContext context;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private RbacMapper mapper;
+    @Autowired
+    private AdminService admin;
+
+    @BeforeEach
+    void setup() {
+        when(context.getUser()).thenReturn(user);
+        when(user.isAdmin()).thenReturn(true);
+        RbacScope.setContext(context);
+        jdbc.execute("insert into `users` values (1, 'uId1', 'user1', 0, timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `roles` (`id`, `name`, `description`, `created_at`, `updated_at`) values" +
+                "(1, 'analyst', 'read only', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(1, 'tag_reader', 'tag read only role', 3, 'tag1', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        mapper.backfillPolicyFingerprints();
+        mapper.repairRoleCounters();
+        mapper.repairPolicyCounters();
+    }
+
+    @AfterEach
+    void destroy() {
+        RbacScope.clearContext();
+        jdbc.execute("delete from `users`");
+        jdbc.execute("delete from `roles`");
+        jdbc.execute("delete from `policies`");
+        jdbc.execute("delete from `users_roles`");
+        jdbc.execute("delete from `entities_policies`");
+        jdbc.execute("delete from `user_effective_policies`");
+    }
+
+    @Test
+    void testAssignRoleTwice() {
+        assertEquals(ASSIGNED, admin.assignRoleToUser("uId1", 1).getOutcome());
+        assertEquals(UNCHANGED, admin.assignRoleToUser("uId1", 1).getOutcome());
+        assertEquals(1, count("select count(*) from `users_roles` where `user_id`=1 and `role_id`=1"));
+        assertEquals(1, mapper.getRoleUserCount(1));
+
+        assertEquals(UNASSIGNED, admin.unassignRoleFromUser("uId1", 1).getOutcome());
+        assertEquals(UNCHANGED, admin.unassignRoleFromUser("uId1", 1).getOutcome());
+        assertEquals(0, count("select count(*) from `users_roles`"));
+        assertEquals(0, mapper.getRoleUserCount(1));
+    }
+
+    @Test
+    void testAssignPolicyTwice() {
+        assertEquals(ASSIGNED, admin.assignPolicyToUser("uId1", 1).getOutcome());
+        assertEquals(UNCHANGED, admin.assignPolicyToUser("uId1", 1).getOutcome());
+        assertEquals(ASSIGNED, admin.assignPolicyToRole(1, 1).getOutcome());
+        assertEquals(UNCHANGED, admin.assignPolicyToRole(1, 1).getOutcome());
+        assertEquals(1, count("select count(*) from `entities_policies` where `entity_type`=" + EntityType.User.getValue() +
+                " and `entity_id`=1 and `policy_id`=1"));
+        assertEquals(1, count("select count(*) from `entities_policies` where `entity_type`=" + EntityType.Role.getValue() +
+                " and `entity_id`=1 and `policy_id`=1"));
+        assertEquals(2, mapper.getPolicyEntityCount(1));
+        assertEquals(1, mapper.getRolePolicyCount(1));
+    }
+
+    private long count(String sql) {
+        return jdbc.queryForObject(sql, Long.class);
+    }
+}
@@ -4,6 +4,8 @@ import com.bosh.rbac.context.RbacContext;
 import com.bosh.rbac.context.RbacScope;
 import com.bosh.rbac.mapper.RbacMapper;
 import com.bosh.rbac.model.*;
+import com.bosh.rbac.rest.model.Assignment;
+import com.bosh.rbac.rest.model.AssignmentResult;
 import com.google.common.collect.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,13 +20,20 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.ASSIGNED;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.INVALID;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.NOT_FOUND;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.UNASSIGNED;
+import static com.bosh.rbac.rest.model.AssignmentResult.Outcome.UNCHANGED;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -126,22 +135,23 @@ class AdminServiceTest {
     void testInvalidRoleDelete() {
         assertThrows(IllegalArgumentException.class, () -> admin.deleteRole(0));
 
-        when(mapper.countRoleUsers(1)).thenReturn(1L);
+        when(mapper.getRoleUserCount(1)).thenReturn(1L);
         assertThrows(BadRequestException.class, () -> admin.deleteRole(1));
 
-        when(mapper.countRoleUsers(1)).thenReturn(0L);
-        when(mapper.countEntityPolicies(eq(new Entity(EntityType.Role, 1)))).thenReturn(1L);
+        when(mapper.getRoleUserCount(1)).thenReturn(0L);
+        when(mapper.getRolePolicyCount(1)).thenReturn(1L);
         assertThrows(BadRequestException.class, () -> admin.deleteRole(1));
     }
 
     @Test
     void testRoleDelete() {
-        Entity entity = new Entity(EntityType.Role, 1);
-        when(mapper.countRoleUsers(1)).thenReturn(0L);
-        when(mapper.countEntityPolicies(eq(entity))).thenReturn(0L);
+        when(mapper.getRoleUserCount(1)).thenReturn(0L);
+        when(mapper.getRolePolicyCount(1)).thenReturn(0L);
         admin.deleteRole(1);
-        verify(mapper).countRoleUsers(1);
-        verify(mapper).countEntityPolicies(eq(entity));
+        verify(mapper).getRoleUserCount(1);
+        verify(mapper).getRolePolicyCount(1);
+        verify(mapper, never()).countRoleUsers(anyLong());
+        verify(mapper, never()).countEntityPolicies(any(Entity.class));
         verify(mapper).deleteRoles(eq(Lists.newArrayList(1L)));
     }
 
@@ -229,15 +239,16 @@ class AdminServiceTest {
     void testInvalidPolicyDelete() {
         assertThrows(IllegalArgumentException.class, () -> admin.deletePolicy(0));
 
-        when(mapper.countPolicyEntities(1)).thenReturn(1L);
+        when(mapper.getPolicyEntityCount(1)).thenReturn(1L);
         assertThrows(BadRequestException.class, () -> admin.deletePolicy(1));
     }
 
     @Test
     void testPolicyDelete() {
-        when(mapper.countPolicyEntities(1)).thenReturn(0L);
+        when(mapper.getPolicyEntityCount(1)).thenReturn(0L);
         admin.deletePolicy(1);
-        verify(mapper).countPolicyEntities(1);
+        verify(mapper).getPolicyEntityCount(1);
+        verify(mapper, never()).countPolicyEntities(anyLong());
         verify(mapper).deletePolicies(eq(Lists.newArrayList(1L)));
     }
 
@@ -261,41 +272,29 @@ class AdminServiceTest {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
         when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getUserRole(1, 1)).thenReturn(mock(UserRole.class));
+        when(mapper.assignUserRole(1, 1)).thenReturn(0);
 
-        admin.assignRoleToUser("user", 1);
+        assertEquals(UNCHANGED, admin.assignRoleToUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
+        // looked up only to tell a missing role from an unchanged assignment
         verify(mapper).getRole(1);
-        verify(mapper).getUserRole(1, 1);
-        verify(mapper, never()).insertUserRole(anyLong(), anyLong());
-    }
-
-    @Test
-    void testRoleAssignmentFailure() {
-        when(mapper.getUser("user")).thenReturn(user);
-        when(user.getId()).thenReturn(1L);
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getUserRole(1, 1)).thenReturn(null);
-        when(mapper.insertUserRole(1, 1)).thenReturn(0);
-
-        assertThrows(RuntimeException.class, () -> admin.assignRoleToUser("user", 1));
+        verify(mapper, never()).insertUserRoleEffectivePolicies(anyLong(), anyLong());
+        verify(mapper, never()).addRoleUserCount(anyLong(), anyLong());
     }
 
     @Test
     void testRoleAssignment() {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getUserRole(1, 1)).thenReturn(null);
-        when(mapper.insertUserRole(1, 1)).thenReturn(1);
+        when(mapper.assignUserRole(1, 1)).thenReturn(1);
 
-        admin.assignRoleToUser("user", 1);
+        assertEquals(ASSIGNED, admin.assignRoleToUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
-        verify(mapper).getRole(1);
-        verify(mapper).getUserRole(1, 1);
-        verify(mapper).insertUserRole(1, 1);
+        verify(mapper, never()).getRole(anyLong());
+        verify(mapper).insertUserRoleEffectivePolicies(1, 1);
+        verify(mapper).addRoleUserCount(1, 1);
     }
 
     @Test
@@ -318,41 +317,28 @@ class AdminServiceTest {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
         when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getUserRole(1, 1)).thenReturn(null);
+        when(mapper.deleteUserRole(1, 1)).thenReturn(0);
 
-        admin.unassignRoleFromUser("user", 1);
+        assertEquals(UNCHANGED, admin.unassignRoleFromUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
+        // looked up only to tell a missing role from an unchanged assignment
         verify(mapper).getRole(1);
-        verify(mapper).getUserRole(1, 1);
-        verify(mapper, never()).deleteUserRole(anyLong(), anyLong());
-    }
-
-    @Test
-    void testRoleUnassignmentFailure() {
-        when(mapper.getUser("user")).thenReturn(user);
-        when(user.getId()).thenReturn(1L);
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getUserRole(1, 1)).thenReturn(mock(UserRole.class));
-        when(mapper.deleteUserRole(1, 1)).thenReturn(0);
-
-        assertThrows(RuntimeException.class, () -> admin.unassignRoleFromUser("user", 1));
+        verify(mapper, never()).deleteUserRoleEffectivePolicies(anyLong(), anyLong());
     }
 
     @Test
     void testRoleUnassignment() {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getUserRole(1, 1)).thenReturn(mock(UserRole.class));
         when(mapper.deleteUserRole(1, 1)).thenReturn(1);
 
-        admin.unassignRoleFromUser("user", 1);
+        assertEquals(UNASSIGNED, admin.unassignRoleFromUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
-        verify(mapper).getRole(1);
-        verify(mapper).getUserRole(1, 1);
-        verify(mapper).deleteUserRole(1, 1);
+        verify(mapper, never()).getRole(anyLong());
+        verify(mapper).deleteUserRoleEffectivePolicies(1, 1);
+        verify(mapper).addRoleUserCount(1, -1);
     }
 
     @Test
@@ -375,41 +361,27 @@ class AdminServiceTest {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
         when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.User, 1, 1)).thenReturn(mock(EntityPolicy.class));
+        when(mapper.assignEntityPolicy(EntityType.User, 1, 1)).thenReturn(0);
 
-        admin.assignPolicyToUser("user", 1);
+        assertEquals(UNCHANGED, admin.assignPolicyToUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
+        // looked up only to tell a missing policy from an unchanged assignment
         verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.User, 1, 1);
-        verify(mapper, never()).insertEntityPolicy(any(EntityType.class), anyLong(), anyLong());
-    }
-
-    @Test
-    void testPolicyToUserAssignmentFailure() {
-        when(mapper.getUser("user")).thenReturn(user);
-        when(user.getId()).thenReturn(1L);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.User, 1, 1)).thenReturn(null);
-        when(mapper.insertEntityPolicy(EntityType.User, 1, 1)).thenReturn(0);
-
-        assertThrows(RuntimeException.class, () -> admin.assignPolicyToUser("user", 1));
+        verify(mapper, never()).insertEntityPolicyEffectivePolicies(any(EntityType.class), anyLong(), anyLong());
     }
 
     @Test
     void testPolicyToUserAssignment() {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.User, 1, 1)).thenReturn(null);
-        when(mapper.insertEntityPolicy(EntityType.User, 1, 1)).thenReturn(1);
+        when(mapper.assignEntityPolicy(EntityType.User, 1, 1)).thenReturn(1);
 
-        admin.assignPolicyToUser("user", 1);
+        assertEquals(ASSIGNED, admin.assignPolicyToUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
-        verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.User, 1, 1);
-        verify(mapper).insertEntityPolicy(EntityType.User, 1, 1);
+        verify(mapper, never()).getPolicy(anyLong());
+        verify(mapper).insertEntityPolicyEffectivePolicies(EntityType.User, 1, 1);
     }
 
     @Test
@@ -432,41 +404,27 @@ class AdminServiceTest {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
         when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.User, 1, 1)).thenReturn(null);
+        when(mapper.deleteEntityPolicy(EntityType.User, 1, 1)).thenReturn(0);
 
-        admin.unassignPolicyFromUser("user", 1);
+        assertEquals(UNCHANGED, admin.unassignPolicyFromUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
+        // looked up only to tell a missing policy from an unchanged assignment
         verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.User, 1, 1);
-        verify(mapper, never()).deleteEntityPolicy(any(EntityType.class), anyLong(), anyLong());
-    }
-
-    @Test
-    void testPolicyToUserUnassignmentFailure() {
-        when(mapper.getUser("user")).thenReturn(user);
-        when(user.getId()).thenReturn(1L);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.User, 1, 1)).thenReturn(mock(EntityPolicy.class));
-        when(mapper.deleteEntityPolicy(EntityType.User, 1, 1)).thenReturn(0);
-
-        assertThrows(RuntimeException.class, () -> admin.unassignPolicyFromUser("user", 1));
+        verify(mapper, never()).deleteEntityPolicyEffectivePolicies(any(EntityType.class), anyLong(), anyLong());
     }
 
     @Test
     void testPolicyToUserUnassignment() {
         when(mapper.getUser("user")).thenReturn(user);
         when(user.getId()).thenReturn(1L);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.User, 1, 1)).thenReturn(mock(EntityPolicy.class));
         when(mapper.deleteEntityPolicy(EntityType.User, 1, 1)).thenReturn(1);
 
-        admin.unassignPolicyFromUser("user", 1);
+        assertEquals(UNASSIGNED, admin.unassignPolicyFromUser("user", 1).getOutcome());
 
         verify(mapper).getUser("user");
-        verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.User, 1, 1);
-        verify(mapper).deleteEntityPolicy(EntityType.User, 1, 1);
+        verify(mapper, never()).getPolicy(anyLong());
+        verify(mapper).deleteEntityPolicyEffectivePolicies(EntityType.User, 1, 1);
     }
 
     @Test
@@ -486,39 +444,27 @@ class AdminServiceTest {
     void testDuplicatePolicyToRoleAssignment() {
         when(mapper.getRole(1)).thenReturn(role);
         when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.Role, 1, 1)).thenReturn(mock(EntityPolicy.class));
+        when(mapper.assignEntityPolicy(EntityType.Role, 1, 1)).thenReturn(0);
 
-        admin.assignPolicyToRole(1, 1);
+        assertEquals(UNCHANGED, admin.assignPolicyToRole(1, 1).getOutcome());
 
+        // looked up only to tell a missing role or policy from an unchanged assignment
         verify(mapper).getRole(1);
         verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.Role, 1, 1);
-        verify(mapper, never()).insertEntityPolicy(any(EntityType.class), anyLong(), anyLong());
-    }
-
-    @Test
-    void testPolicyToRoleAssignmentFailure() {
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.Role, 1, 1)).thenReturn(null);
-        when(mapper.insertEntityPolicy(EntityType.Role, 1, 1)).thenReturn(0);
-
-        assertThrows(RuntimeException.class, () -> admin.assignPolicyToRole(1, 1));
+        verify(mapper, never()).insertEntityPolicyEffectivePolicies(any(EntityType.class), anyLong(), anyLong());
     }
 
     @Test
     void testPolicyToRoleAssignment() {
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.Role, 1, 1)).thenReturn(null);
-        when(mapper.insertEntityPolicy(EntityType.Role, 1, 1)).thenReturn(1);
+        when(mapper.assignEntityPolicy(EntityType.Role, 1, 1)).thenReturn(1);
 
-        admin.assignPolicyToRole(1, 1);
+        assertEquals(ASSIGNED, admin.assignPolicyToRole(1, 1).getOutcome());
 
-        verify(mapper).getRole(1);
-        verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.Role, 1, 1);
-        verify(mapper).insertEntityPolicy(EntityType.Role, 1, 1);
+        verify(mapper, never()).getRole(anyLong());
+        verify(mapper, never()).getPolicy(anyLong());
+        verify(mapper).insertEntityPolicyEffectivePolicies(EntityType.Role, 1, 1);
+        verify(mapper).addRolePolicyCount(1, 1);
+        verify(mapper).addPolicyEntityCount(1, 1);
     }
 
     @Test
@@ -538,38 +484,93 @@ class AdminServiceTest {
     void testDuplicatePolicyToRoleUnassignment() {
         when(mapper.getRole(1)).thenReturn(role);
         when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.Role, 1, 1)).thenReturn(null);
+        when(mapper.deleteEntityPolicy(EntityType.Role, 1, 1)).thenReturn(0);
 
-        admin.unassignPolicyFromRole(1, 1);
+        assertEquals(UNCHANGED, admin.unassignPolicyFromRole(1, 1).getOutcome());
 
+        // looked up only to tell a missing role or policy from an unchanged assignment
         verify(mapper).getRole(1);
         verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.Role, 1, 1);
-        verify(mapper, never()).deleteEntityPolicy(any(EntityType.class), anyLong(), anyLong());
-    }
-
-    @Test
-    void testPolicyToRoleUnassignmentFailure() {
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.Role, 1, 1)).thenReturn(mock(EntityPolicy.class));
-        when(mapper.deleteEntityPolicy(EntityType.Role, 1, 1)).thenReturn(0);
-
-        assertThrows(RuntimeException.class, () -> admin.unassignPolicyFromRole(1, 1));
+        verify(mapper, never()).deleteEntityPolicyEffectivePolicies(any(EntityType.class), anyLong(), anyLong());
     }
 
     @Test
     void testPolicyToRoleUnassignment() {
-        when(mapper.getRole(1)).thenReturn(role);
-        when(mapper.getPolicy(1)).thenReturn(policy);
-        when(mapper.getEntityPolicy(EntityType.Role, 1, 1)).thenReturn(mock(EntityPolicy.class));
         when(mapper.deleteEntityPolicy(EntityType.Role, 1, 1)).thenReturn(1);
 
-        admin.unassignPolicyFromRole(1, 1);
-
-        verify(mapper).getRole(1);
-        verify(mapper).getPolicy(1);
-        verify(mapper).getEntityPolicy(EntityType.Role, 1, 1);
-        verify(mapper).deleteEntityPolicy(EntityType.Role, 1, 1);
+        assertEquals(UNASSIGNED, admin.unassignPolicyFromRole(1, 1).getOutcome());
+
+        verify(mapper, never()).getRole(anyLong());
+        verify(mapper, never()).getPolicy(anyLong());
+        verify(mapper).deleteEntityPolicyEffectivePolicies(EntityType.Role, 1, 1);
+        verify(mapper).addRolePolicyCount(1, -1);
+        verify(mapper).addPolicyEntityCount(1, -1);
+    }
+
+    @Test
+    void testBulkAssignment() {
+        User u1 = new User();
+        u1.setId(11);
+        u1.setUserId("uId1");
+        Role r1 = new Role();
+        r1.setId(1);
+        Policy p1 = new Policy();
+        p1.setId(1);
+        when(mapper.getUsers(any())).thenReturn(Lists.newArrayList(u1));
+        when(mapper.getRoles(any())).thenReturn(Lists.newArrayList(r1));
+        when(mapper.getPolicies(any())).thenReturn(Lists.newArrayList(p1));
+        when(mapper.getUserRolesByKeys(any())).thenReturn(Lists.newArrayList());
+        when(mapper.getEntityPoliciesByKeys(any())).thenReturn(Lists.newArrayList(new EntityPolicy(EntityType.User, 11, 1, new Date())));
+        when(mapper.insertUserRoles(any())).thenReturn(1);
+        when(mapper.insertEntityPolicies(any())).thenReturn(1);
+
+        List<AssignmentResult> results = admin.assign(Lists.newArrayList(
+                Assignment.userRole("uId1", 1),
+                Assignment.userPolicy("uId1", 1),
+                Assignment.rolePolicy(1, 1),
+                Assignment.userRole("uId1", 1),
+                Assignment.userRole("uId2", 1),
+                Assignment.rolePolicy(1, 2),
+                new Assignment("uId1", 1L, 1L),
+                new Assignment(" ", 1L, null),
+                null
+        ));
+        assertEquals(Lists.newArrayList(ASSIGNED, UNCHANGED, ASSIGNED, UNCHANGED, NOT_FOUND, NOT_FOUND, INVALID, INVALID, INVALID),
+                results.stream().map(AssignmentResult::getOutcome).collect(Collectors.toList()));
+        assertEquals(Assignment.userRole("uId2", 1), results.get(4).getAssignment());
+
+        verify(mapper).insertUserRoles(Lists.newArrayList(new UserRole(11, 1, null)));
+        verify(mapper).insertUserRolesEffectivePolicies(Lists.newArrayList(new UserRole(11, 1, null)));
+        verify(mapper).insertEntityPolicies(Lists.newArrayList(new EntityPolicy(EntityType.Role, 1, 1, null)));
+        verify(mapper).insertEntityPoliciesEffectivePolicies(EntityType.Role, Lists.newArrayList(new EntityPolicy(EntityType.Role, 1, 1, null)));
+        verify(mapper, never()).insertEntityPoliciesEffectivePolicies(eq(EntityType.User), any());
+        // role 1 got a user and a policy, policy 1 a role
+        verify(mapper).refreshRoleCounters(Lists.newArrayList(1L));
+        verify(mapper).refreshPolicyCounters(Lists.newArrayList(1L));
+    }
+
+    @Test
+    void testBulkUnassignment() {
+        Role r1 = new Role();
+        r1.setId(1);
+        Policy p1 = new Policy();
+        p1.setId(1);
+        when(mapper.getRoles(any())).thenReturn(Lists.newArrayList(r1));
+        when(mapper.getPolicies(any())).thenReturn(Lists.newArrayList(p1));
+        when(mapper.getEntityPoliciesByKeys(any())).thenReturn(Lists.newArrayList(new EntityPolicy(EntityType.Role, 1, 1, new Date())));
+        when(mapper.deleteEntityPoliciesByKeys(any())).thenReturn(0);
+
+        List<Assignment> assignments = Lists.newArrayList(Assignment.rolePolicy(1, 1));
+        assertThrows(RuntimeException.class, () -> admin.unassign(assignments));
+
+        when(mapper.deleteEntityPoliciesByKeys(any())).thenReturn(1);
+        assertEquals(UNASSIGNED, admin.unassign(assignments).get(0).getOutcome());
+        verify(mapper).deleteEntityPoliciesEffectivePolicies(EntityType.Role, Lists.newArrayList(new EntityPolicy(EntityType.Role, 1, 1, null)));
+        verify(mapper, never()).getUsers(any());
+        verify(mapper, never()).deleteUserRolesByKeys(any());
+
+        List<Assignment> tooMany = Lists.newArrayList();
+        for (int i = 0; i <= 10000; i++) tooMany.add(Assignment.rolePolicy(1, i + 1));
+        assertThrows(BadRequestException.class, () -> admin.unassign(tooMany));
     }
 }
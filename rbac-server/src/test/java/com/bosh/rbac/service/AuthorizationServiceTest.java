@@ -7,19 +7,28 @@ import com.bosh.rbac.auth.model.ResourceAccessAuth;
 import com.bosh.rbac.model.Action;
 import com.bosh.rbac.model.Resource;
 import com.bosh.rbac.model.ResourceType;
+import com.bosh.rbac.service.engine.PolicyEngine;
 import com.bosh.rbac.service.resource.ResourceDecorator;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +51,11 @@ class AuthorizationServiceTest {
 
     @Autowired
     private AuthorizationService service;
+    @Autowired
+    private PolicyEngine engine;
+    @Autowired
+    @Qualifier("evaluationExecutor")
+    private ExecutorService evaluationExecutor;
 
     @Test
     void testInvalidInput() {
@@ -108,4 +122,31 @@ class AuthorizationServiceTest {
         verify(ra2).setDecoratedResources(eq(Lists.newArrayList(r5)));
         verify(authorizer).authorize(ra2);
     }
+
+    @Test
+    void testAuthorizeBatchedInParallel() {
+        AuthorizationService batched = new AuthorizationService(authorizer, resourceDecorator, engine, true, evaluationExecutor, 2);
+        List<ResourceAccess> resourceAccesses = Lists.newArrayList();
+        List<ResourceAccessAuth> results = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            ResourceAccess resourceAccess = new ResourceAccess();
+            resourceAccess.setAction(Action.Read);
+            resourceAccess.setResource(new Resource(ResourceType.COLUMN, "column" + i));
+            resourceAccesses.add(resourceAccess);
+            ResourceAccessAuth result = new ResourceAccessAuth();
+            result.setResourceAccess(resourceAccess);
+            results.add(result);
+        }
+        when(request.getResourceAccesses()).thenReturn(resourceAccesses);
+        when(authorizer.authorizeAll(resourceAccesses.subList(0, 2))).thenReturn(results.subList(0, 2));
+        when(authorizer.authorizeAll(resourceAccesses.subList(2, 4))).thenReturn(results.subList(2, 4));
+        when(authorizer.authorizeAll(resourceAccesses.subList(4, 5))).thenReturn(results.subList(4, 5));
+
+        AuthResponse response = batched.authorize(request);
+
+        assertNotNull(response);
+        assertEquals(results, response.getResults());
+        verify(authorizer, times(3)).authorizeAll(anyList());
+        verify(authorizer, never()).authorize(any());
+    }
 }
@@ -6,6 +6,7 @@ import com.bosh.rbac.context.RbacContext;
 import com.bosh.rbac.context.RbacScope;
 import com.bosh.rbac.mapper.RbacMapper;
 import com.bosh.rbac.model.*;
+import com.google.common.collect.Sets;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,6 +16,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -38,11 +41,11 @@ class AuthorizerTest {
     @Mock
     private Role role;
     @Mock
-    private ResourceAccess resourceAccess;
+    private ResourceAccess resourceAccess, resourceAccess2;
     @Mock
-    private Resource resource1, resource2, resource3;
+    private Resource resource1, resource2, resource3, resource4;
     @Mock
-    private Policy policy1, policy2, policy3;
+    private Policy policy1, policy2, policy3, policy4;
     @Mock
     private EntityPolicy entityPolicy;
     @MockBean
@@ -164,4 +167,41 @@ class AuthorizerTest {
         verify(mapper).getUserPolicy(eq(1L), eq(Lists.newArrayList(1L, 3L)));
         verify(mapper, never()).getRole(anyLong());
     }
+
+    @Test
+    void testAuthorizeAll() {
+        when(resourceAccess2.getResource()).thenReturn(resource4);
+        when(resourceAccess2.getAction()).thenReturn(Action.Write);
+        when(resource4.getType()).thenReturn(ResourceType.TAG);
+        when(resource4.getValue()).thenReturn("tag1");
+        when(policy1.getResource()).thenReturn(resource1);
+        when(policy2.getResource()).thenReturn(resource2);
+        when(policy3.getResource()).thenReturn(resource3);
+        when(policy4.getResource()).thenReturn(resource4);
+        when(policy4.getId()).thenReturn(4L);
+        when(predicate.pass(policy4, resourceAccess2)).thenReturn(true);
+        when(mapper.getResourcesPolicies(eq(Lists.newArrayList(resource1, resource2, resource3, resource4))))
+                .thenReturn(Lists.newArrayList(policy1, policy2, policy3, policy4));
+        when(mapper.listUserPolicies(eq(1L), eq(Sets.newHashSet(1L, 3L, 4L)))).thenReturn(Lists.newArrayList(entityPolicy));
+        when(entityPolicy.getEntityType()).thenReturn(EntityType.Role);
+        when(entityPolicy.getEntityId()).thenReturn(1L);
+        when(entityPolicy.getPolicyId()).thenReturn(4L);
+        when(role.getId()).thenReturn(1L);
+        when(mapper.getRoles(eq(Sets.newHashSet(1L)))).thenReturn(Lists.newArrayList(role));
+
+        List<ResourceAccessAuth> raas = authorizer.authorizeAll(Lists.newArrayList(resourceAccess, resourceAccess2));
+
+        assertEquals(2, raas.size());
+        assertFalse(raas.get(0).isAllow());
+        assertNull(raas.get(0).getAllowedAsEntity());
+        assertEquals(resourceAccess, raas.get(0).getResourceAccess());
+        assertTrue(raas.get(1).isAllow());
+        assertEquals(role, raas.get(1).getAllowedAsEntity());
+        assertEquals(policy4, raas.get(1).getAllowedByPolicy());
+        assertEquals(resourceAccess2, raas.get(1).getResourceAccess());
+        verify(mapper).getResourcesPolicies(eq(Lists.newArrayList(resource1, resource2, resource3, resource4)));
+        verify(mapper).listUserPolicies(eq(1L), eq(Sets.newHashSet(1L, 3L, 4L)));
+        verify(mapper, never()).getUserPolicy(anyLong(), eq(Lists.newArrayList(1L, 3L)));
+        verify(mapper, never()).getRole(anyLong());
+    }
 }
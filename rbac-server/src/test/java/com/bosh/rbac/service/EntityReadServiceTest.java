@@ -6,9 +6,12 @@ import com.bosh.rbac.model.EntityType;
 import com.bosh.rbac.model.Policy;
 import com.bosh.rbac.model.Role;
 import com.bosh.rbac.model.User;
+import com.bosh.rbac.rest.model.CursorListPayload;
+import com.bosh.rbac.service.cache.EntityCountCache;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.jupiter.api.Test;
+import org.mib.rest.exception.BadRequestException;
 import org.mib.rest.exception.ResourceNotFoundException;
 import org.mib.rest.model.list.Filter;
 import org.mib.rest.model.list.ListElementRequest;
@@ -26,7 +29,11 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -37,6 +44,8 @@ class EntityReadServiceTest {
 
     @MockBean
     private RbacMapper mapper;
+    @MockBean
+    private EntityCountCache countCache;
 
     @Autowired
     private EntityReadService service;
@@ -101,11 +110,70 @@ class EntityReadServiceTest {
         assertEquals(Lists.newArrayList(Filter.like("username", "%search%")), ler.getFilters());
     }
 
+    @Test
+    void testListUsersTotal() {
+        List<User> users = (List<User>) mock(List.class);
+        when(mapper.listUsers(any(ListElementRequest.class))).thenReturn(users);
+        when(mapper.countUsers(any(ListElementRequest.class))).thenReturn(10L);
+        when(countCache.countUsers()).thenReturn(12L);
+
+        assertEquals(ListTotal.NOT_COUNTED, service.listUsers(0, 10, "search", ListTotal.NONE).getTotal());
+        verify(mapper, never()).countUsers(any(ListElementRequest.class));
+        // counted exactly unless counts are cached
+        assertEquals(10, service.listUsers(0, 10, null, ListTotal.ESTIMATE).getTotal());
+        when(countCache.isEnabled()).thenReturn(true);
+        assertEquals(12, service.listUsers(0, 10, null, ListTotal.ESTIMATE).getTotal());
+        // cached counts know nothing of the search
+        assertEquals(10, service.listUsers(0, 10, "search", ListTotal.ESTIMATE).getTotal());
+        assertEquals(10, service.listUsers(0, 10, "search", ListTotal.EXACT).getTotal());
+        verify(mapper, times(3)).countUsers(any(ListElementRequest.class));
+        verify(countCache).countUsers();
+    }
+
+    @Test
+    void testParseListTotal() {
+        assertEquals(ListTotal.EXACT, ListTotal.parse(null));
+        assertEquals(ListTotal.EXACT, ListTotal.parse(" "));
+        assertEquals(ListTotal.NONE, ListTotal.parse("none"));
+        assertEquals(ListTotal.ESTIMATE, ListTotal.parse("Estimate"));
+        assertThrows(BadRequestException.class, () -> ListTotal.parse("approximate"));
+    }
+
+    @Test
+    void testListUsersAfter() {
+        User u1 = mock(User.class), u2 = mock(User.class), u3 = mock(User.class);
+        when(u2.getId()).thenReturn(12L);
+        when(mapper.listUsersAfter(any(ListElementRequest.class), eq(0L))).thenReturn(Lists.newArrayList(u1, u2, u3));
+        ArgumentCaptor<ListElementRequest> lerCaptor = ArgumentCaptor.forClass(ListElementRequest.class);
+
+        CursorListPayload<User> page = service.listUsersAfter(null, 2, "search");
+
+        assertEquals(Lists.newArrayList(u1, u2), page.getList());
+        assertNotNull(page.getNext());
+        verify(mapper).listUsersAfter(lerCaptor.capture(), eq(0L));
+        ListElementRequest ler = lerCaptor.getValue();
+        // one more than the page to tell whether there is a next page
+        assertEquals(3, ler.getLimit());
+        assertEquals(Lists.newArrayList(Filter.like("username", "%search%")), ler.getFilters());
+
+        when(mapper.listUsersAfter(any(ListElementRequest.class), eq(12L))).thenReturn(Lists.newArrayList(u3));
+        page = service.listUsersAfter(page.getNext(), 2, null);
+        assertEquals(Lists.newArrayList(u3), page.getList());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void testListAfterInvalidCursor() {
+        assertThrows(BadRequestException.class, () -> service.listUsersAfter("not a cursor", 2, null));
+        assertThrows(BadRequestException.class, () -> service.listRolesAfter("MSwy", 2, null));
+        assertThrows(IllegalArgumentException.class, () -> service.listPoliciesAfter("", 0, null));
+    }
+
     @Test
     void testListRoleUsers() {
         List<User> users = (List<User>) mock(List.class);
         when(mapper.listRoleUsers(1, 0, 10)).thenReturn(users);
-        when(mapper.countRoleUsers(1)).thenReturn(10L);
+        when(mapper.getRoleUserCount(1)).thenReturn(10L);
 
         ListPayload<User> lp = service.listRoleUsers(1, 0, 10);
 
@@ -114,7 +182,8 @@ class EntityReadServiceTest {
         assertEquals(10, lp.getTotal());
         assertEquals(users, lp.getList());
         verify(mapper).listRoleUsers(1, 0, 10);
-        verify(mapper).countRoleUsers(1);
+        verify(mapper).getRoleUserCount(1);
+        verify(mapper, never()).countRoleUsers(anyLong());
     }
 
     @Test
@@ -271,6 +340,28 @@ class EntityReadServiceTest {
         verify(mapper).countEntityPolicies(entity);
     }
 
+    @Test
+    void testListPolicyEntitiesAfter() {
+        Entity e1 = new Entity(EntityType.User, 1), e2 = new Entity(EntityType.Role, 1), e3 = new Entity(EntityType.Role, 2);
+        User user = mock(User.class);
+        Role role = mock(Role.class);
+        when(user.getId()).thenReturn(1L);
+        when(role.getId()).thenReturn(1L);
+        when(mapper.listPolicyEntitiesAfter(1, null, 3)).thenReturn(Lists.newArrayList(e1, e2, e3));
+        when(mapper.listUsers(any(ListElementRequest.class))).thenReturn(Lists.newArrayList(user));
+        when(mapper.listRoles(any(ListElementRequest.class))).thenReturn(Lists.newArrayList(role));
+
+        CursorListPayload<Entity> page = service.listPolicyEntitiesAfter(1, "", 2);
+
+        assertEquals(Lists.newArrayList(user, role), page.getList());
+        assertNotNull(page.getNext());
+        when(mapper.listPolicyEntitiesAfter(1, e2, 3)).thenReturn(Lists.newArrayList(e3));
+        page = service.listPolicyEntitiesAfter(1, page.getNext(), 2);
+        assertEquals(1, page.getList().size());
+        assertNull(page.getNext());
+        verify(mapper).listPolicyEntitiesAfter(1, e2, 3);
+    }
+
     @Test
     void testListPolicyEntities() {
         Entity e1 = new Entity(EntityType.Role, 1), e2 = new Entity(EntityType.User, 1);
@@ -279,7 +370,7 @@ class EntityReadServiceTest {
         when(user.getId()).thenReturn(1L);
         when(role.getId()).thenReturn(1L);
         when(mapper.listPolicyEntities(1, 0, 2)).thenReturn(Lists.newArrayList(e1, e2));
-        when(mapper.countPolicyEntities(1)).thenReturn(10L);
+        when(mapper.getPolicyEntityCount(1)).thenReturn(10L);
         when(mapper.listUsers(any(ListElementRequest.class))).thenReturn(Lists.newArrayList(user));
         when(mapper.listRoles(any(ListElementRequest.class))).thenReturn(Lists.newArrayList(role));
 
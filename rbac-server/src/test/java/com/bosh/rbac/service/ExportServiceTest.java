@@ -0,0 +1,86 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.EntityType;
+import com.bosh.rbac.model.UserRole;
+import com.bosh.rbac.rest.model.ExportRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@ActiveProfiles("ut")
+class ExportServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ExportService exportService;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `users` values" +
+                "(1, 'uId1', 'user1', 0, timestamp '2017-10-20 00:10:30')," +
+                "(2, 'uId2', 'user2', 1, timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `roles` (`id`, `name`, `description`, `created_at`, `updated_at`) values" +
+                "(1, 'admin', 'administrator', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(1, 'hdfs_reader', 'hdfs read only role', 1, 'hdfs://host:8020/data', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `users_roles` values (1, 1, timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `entities_policies` values" +
+                "(2, 1, 1, timestamp '2017-10-20 00:10:30')," +
+                "(1, 2, 1, timestamp '2017-10-20 00:10:30')");
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `users`");
+        jdbc.execute("delete from `roles`");
+        jdbc.execute("delete from `policies`");
+        jdbc.execute("delete from `users_roles`");
+        jdbc.execute("delete from `entities_policies`");
+    }
+
+    @Test
+    void testExport() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        assertEquals(7, exportService.export(os));
+        String[] lines = new String(os.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(7, lines.length);
+        List<ExportRecord> records = Lists.newArrayList();
+        for (String line : lines) records.add(objectMapper.readValue(line, ExportRecord.class));
+
+        assertEquals("uId1", records.get(0).getUser().getUserId());
+        assertNull(records.get(0).getRole());
+        assertEquals("uId2", records.get(1).getUser().getUserId());
+        assertEquals("admin", records.get(2).getRole().getName());
+        assertEquals("hdfs_reader", records.get(3).getPolicy().getName());
+        UserRole userRole = records.get(4).getUserRole();
+        assertEquals(1, userRole.getUserId());
+        assertEquals(1, userRole.getRoleId());
+        // ordered by entity type, users first
+        EntityPolicy entityPolicy = records.get(5).getEntityPolicy();
+        assertEquals(EntityType.User, entityPolicy.getEntityType());
+        assertEquals(2, entityPolicy.getEntityId());
+        assertNotNull(entityPolicy.getCreatedAt());
+        assertEquals(EntityType.Role, records.get(6).getEntityPolicy().getEntityType());
+        // one field per line
+        assertEquals(lines[4], objectMapper.writeValueAsString(records.get(4)));
+    }
+}
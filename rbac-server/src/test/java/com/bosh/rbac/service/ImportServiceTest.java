@@ -0,0 +1,132 @@
+package com.bosh.rbac.service;
+
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.EntityType;
+import com.bosh.rbac.rest.model.ImportResult;
+import com.bosh.rbac.service.cache.ResourcePolicyFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("ut")
+class ImportServiceTest {
+
+    private static final String USER1 = "{\"user\":{\"type\":\"User\",\"id\":1,\"userId\":\"uId1\",\"username\":\"user1\",\"admin\":false}}";
+    private static final String USER2 = "{\"user\":{\"type\":\"User\",\"id\":2,\"userId\":\"uId2\",\"username\":\"user2\",\"admin\":false}}";
+    private static final String ROLE1 = "{\"role\":{\"type\":\"Role\",\"id\":1,\"name\":\"analyst\",\"description\":\"read only\"}}";
+    private static final String POLICY1 = "{\"policy\":{\"id\":1,\"name\":\"tag_reader\",\"resource\":{\"type\":\"TAG\",\"value\":\"tag1\"},\"action\":\"Read\"}}";
+    private static final String USER_ROLE = "{\"userRole\":{\"userId\":1,\"roleId\":1}}";
+    private static final String ROLE_POLICY = "{\"entityPolicy\":{\"entityType\":\"Role\",\"entityId\":1,\"policyId\":1}}";
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private RbacMapper mapper;
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ResourcePolicyFilter resourcePolicyFilter;
+    @Autowired
+    private ApplicationEventPublisher publisher;
+
+    private ImportService importService;
+
+    @BeforeEach
+    void setup() {
+        importService = new ImportService(mapper, sqlSessionFactory, transactionManager, objectMapper, resourcePolicyFilter,
+                publisher, 2);
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `users`");
+        jdbc.execute("delete from `roles`");
+        jdbc.execute("delete from `policies`");
+        jdbc.execute("delete from `users_roles`");
+        jdbc.execute("delete from `entities_policies`");
+        jdbc.execute("delete from `user_effective_policies`");
+    }
+
+    @Test
+    void testImport() {
+        ImportResult result = importService.importRecords(input(USER1, "", USER2, ROLE1, POLICY1, USER_ROLE, ROLE_POLICY), 0);
+        assertTrue(result.isComplete());
+        assertNull(result.getError());
+        assertEquals(7, result.getCommittedLines());
+        assertEquals(6, result.getImportedRecords());
+
+        assertEquals("user2", mapper.getUser("uId2").getUsername());
+        assertEquals("analyst", mapper.getRole(1).getName());
+        assertNotNull(mapper.getPolicy(1).getCreatedAt());
+        assertNotNull(mapper.getUserRole(1, 1));
+        // effective policies are backfilled
+        assertEquals(EntityType.Role, mapper.getUserPolicy(1, Lists.newArrayList(1L)).getEntityType());
+        // and so are relation counters
+        assertEquals(1, mapper.getRoleUserCount(1));
+        assertEquals(1, mapper.getRolePolicyCount(1));
+        assertEquals(1, mapper.getPolicyEntityCount(1));
+    }
+
+    @Test
+    void testResumeAfterInvalidRecord() {
+        String invalidRole = "{\"role\":{\"type\":\"Role\",\"id\":1,\"name\":\" \"}}";
+        ImportResult result = importService.importRecords(input(USER1, USER2, POLICY1, invalidRole, USER_ROLE), 0);
+        assertFalse(result.isComplete());
+        assertTrue(result.getError().contains("line 4"));
+        // lines before the invalid one are kept
+        assertEquals(3, result.getCommittedLines());
+        assertNotNull(mapper.getPolicy(1));
+        assertNull(mapper.getRole(1));
+
+        result = importService.importRecords(input(USER1, USER2, POLICY1, ROLE1, USER_ROLE), result.getCommittedLines());
+        assertTrue(result.isComplete());
+        assertEquals(5, result.getCommittedLines());
+        assertEquals(2, result.getImportedRecords());
+        assertNotNull(mapper.getUserRole(1, 1));
+    }
+
+    @Test
+    void testResumeAfterFailedChunk() {
+        // the second chunk inserts user 1 again and is rolled back as a whole
+        ImportResult result = importService.importRecords(input(USER1, ROLE1, POLICY1, USER1, USER2), 0);
+        assertFalse(result.isComplete());
+        assertNotNull(result.getError());
+        assertEquals(2, result.getCommittedLines());
+        assertNotNull(mapper.getRole(1));
+        assertNull(mapper.getPolicy(1));
+
+        result = importService.importRecords(input(USER1, ROLE1, POLICY1, USER2), result.getCommittedLines());
+        assertTrue(result.isComplete());
+        assertEquals(4, result.getCommittedLines());
+        assertNotNull(mapper.getPolicy(1));
+        assertNotNull(mapper.getUser("uId2"));
+    }
+
+    private static InputStream input(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,104 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.component.RestAPIWrapper;
+import com.bosh.rbac.context.RbacContext;
+import com.bosh.rbac.context.RbacScope;
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.model.User;
+import com.bosh.rbac.rest.model.Response;
+import com.bosh.rbac.rest.model.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static com.bosh.rbac.event.RbacChangeEvent.Type.USER_DELETED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.USER_UPDATED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "rbac.cache.user.enabled=true")
+@ActiveProfiles("ut")
+class AuthenticatedUserCacheTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private AuthenticatedUserCache cache;
+    @Autowired
+    private RestAPIWrapper wrapper;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `users` values" +
+                "(1, 'uId1', 'user1', 0, timestamp '2017-10-20 00:10:30')," +
+                "(2, 'uId2', 'user2', 1, timestamp '2017-10-20 00:10:30')");
+        cache.invalidateAll();
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `users`");
+        RbacScope.clearContext();
+    }
+
+    @Test
+    void testGetUser() {
+        assertTrue(cache.isEnabled());
+        assertThrows(IllegalArgumentException.class, () -> cache.getUser(" "));
+        User user1 = cache.getUser("uId1");
+        assertNotNull(user1);
+        assertEquals(1, user1.getId());
+        assertTrue(cache.getUser("uId2").isAdmin());
+        jdbc.execute("delete from `users` where `id`=1");
+        assertSame(user1, cache.getUser("uId1"));
+        cache.invalidate("uId1");
+        assertNull(cache.getUser("uId1"));
+    }
+
+    @Test
+    void testUnknownUserCached() {
+        assertNull(cache.getUser("uId3"));
+        jdbc.execute("insert into `users` values (3, 'uId3', 'user3', 0, timestamp '2017-10-20 00:10:30')");
+        assertNull(cache.getUser("uId3"));
+        cache.invalidate("uId3");
+        assertNotNull(cache.getUser("uId3"));
+    }
+
+    @Test
+    void testInvalidateOnChange() {
+        assertNotNull(cache.getUser("uId1"));
+        assertNotNull(cache.getUser("uId2"));
+        jdbc.execute("delete from `users`");
+        cache.onChange(RbacChangeEvent.user(this, USER_DELETED, 2));
+        assertNotNull(cache.getUser("uId1"));
+        assertNull(cache.getUser("uId2"));
+    }
+
+    @Test
+    void testInvalidateOnUserUpdate() {
+        assertFalse(cache.getUser("uId1").isAdmin());
+        jdbc.execute("update `users` set `admin`=1 where `id`=1");
+        assertFalse(cache.getUser("uId1").isAdmin());
+        cache.onChange(RbacChangeEvent.user(this, USER_UPDATED, 1));
+        assertTrue(cache.getUser("uId1").isAdmin());
+    }
+
+    @Test
+    void testUnknownUserNotFound() {
+        RbacScope.setContext(new RbacContext("r1", "uId3"));
+        ResponseEntity<Response<Object>> response = wrapper.wrap(() -> {});
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals(Status.NOT_FOUND, response.getBody().getStatus());
+    }
+}
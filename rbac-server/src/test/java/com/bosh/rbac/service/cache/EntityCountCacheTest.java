@@ -0,0 +1,109 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.model.Entity;
+import com.bosh.rbac.model.EntityType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ENTITY_POLICY_ASSIGNED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.POLICY_DELETED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ROLE_CREATED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.USER_DELETED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.USER_ROLE_UNASSIGNED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "rbac.cache.count.enabled=true")
+@ActiveProfiles("ut")
+class EntityCountCacheTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private EntityCountCache cache;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `roles` (`id`, `name`, `description`, `created_at`, `updated_at`) values" +
+                "(1, 'admin', 'administrator', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(2, 'analyst', 'read only', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `users_roles` values" +
+                "(1, 1, timestamp '2017-10-20 00:10:30')," +
+                "(2, 1, timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `entities_policies` values" +
+                "(2, 1, 2, timestamp '2017-10-20 00:10:30')," +
+                "(2, 1, 4, timestamp '2017-10-20 00:10:30')," +
+                "(1, 3, 4, timestamp '2017-10-20 00:10:30')");
+        cache.invalidateAll();
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `roles`");
+        jdbc.execute("delete from `users_roles`");
+        jdbc.execute("delete from `entities_policies`");
+        jdbc.execute("delete from `users`");
+    }
+
+    @Test
+    void testCount() {
+        assertTrue(cache.isEnabled());
+        assertEquals(2, cache.countRoles());
+        assertEquals(2, cache.countRoleUsers(1));
+        assertEquals(1, cache.countUserRoles(2));
+        assertEquals(2, cache.countEntityPolicies(new Entity(EntityType.Role, 1)));
+        assertEquals(1, cache.countEntityPolicies(new Entity(EntityType.User, 3)));
+        assertEquals(2, cache.countPolicyEntities(4));
+        assertEquals(0, cache.countPolicies());
+
+        // cached counts don't see changes outside of the admin apis until they expire
+        jdbc.execute("delete from `users_roles` where `user_id`=2");
+        assertEquals(2, cache.countRoleUsers(1));
+        cache.invalidateAll();
+        assertEquals(1, cache.countRoleUsers(1));
+    }
+
+    @Test
+    void testOnChange() {
+        assertEquals(2, cache.countRoles());
+        assertEquals(2, cache.countRoleUsers(1));
+        assertEquals(1, cache.countUserRoles(1));
+        assertEquals(2, cache.countPolicyEntities(4));
+        assertEquals(1, cache.countEntityPolicies(new Entity(EntityType.User, 3)));
+        assertEquals(0, cache.countPolicies());
+
+        cache.onChange(RbacChangeEvent.role(this, ROLE_CREATED, 3));
+        assertEquals(3, cache.countRoles());
+        cache.onChange(RbacChangeEvent.userRole(this, USER_ROLE_UNASSIGNED, 1, 1));
+        assertEquals(1, cache.countRoleUsers(1));
+        assertEquals(0, cache.countUserRoles(1));
+        cache.onChange(RbacChangeEvent.entityPolicy(this, ENTITY_POLICY_ASSIGNED, EntityType.User, 3, 4));
+        assertEquals(3, cache.countPolicyEntities(4));
+        assertEquals(2, cache.countEntityPolicies(new Entity(EntityType.User, 3)));
+        // counts not cached are left to the next load
+        cache.onChange(RbacChangeEvent.entityPolicy(this, ENTITY_POLICY_ASSIGNED, EntityType.Role, 2, 1));
+        assertEquals(0, cache.countPolicyEntities(1));
+        // and never go below zero
+        cache.onChange(RbacChangeEvent.policy(this, POLICY_DELETED, 1));
+        assertEquals(0, cache.countPolicies());
+    }
+
+    @Test
+    void testUsersReloadedOnDelete() {
+        assertEquals(0, cache.countUsers());
+        // users are created with no change event
+        jdbc.execute("insert into `users` values" +
+                "(1, 'uId1', 'user1', 0, timestamp '2017-10-20 00:10:30')," +
+                "(2, 'uId2', 'user2', 0, timestamp '2017-10-20 00:10:30')");
+        assertEquals(0, cache.countUsers());
+        jdbc.execute("delete from `users` where `id`=1");
+        cache.onChange(RbacChangeEvent.user(this, USER_DELETED, 1));
+        assertEquals(1, cache.countUsers());
+    }
+}
@@ -0,0 +1,101 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static com.bosh.rbac.event.RbacChangeEvent.Type.POLICY_CREATED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "rbac.policyFilter.enabled=true")
+@ActiveProfiles("ut")
+class ResourcePolicyFilterTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private ResourcePolicyFilter filter;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(1, 'hdfs_reader', 'hdfs read only role', 1, 'hdfs://host:8020/data', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(2, 'hdfs_writer', 'hdfs write role', 1, 'hdfs://host:8020/data', 2, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(3, 'tag_reader', 'tag read only role', 3, 'tag1', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        filter.rebuild();
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `policies`");
+    }
+
+    @Test
+    void testFilter() {
+        assertTrue(filter.isEnabled());
+        Resource r1 = new Resource(ResourceType.HDFS, "hdfs://host:8020/data");
+        Resource r2 = new Resource(ResourceType.TAG, "tag1");
+        List<Resource> resources = Lists.newArrayList(r1, r2);
+        assertEquals(resources, filter.filter(resources));
+        // a false positive on any of these would be a 1% chance each, nothing worth asserting on
+        List<Resource> uncovered = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            uncovered.add(new Resource(ResourceType.COLUMN, "db.table.column" + i));
+        }
+        assertTrue(filter.filter(uncovered).size() < 10);
+    }
+
+    @Test
+    void testPutBeforeInsert() {
+        Resource resource = new Resource(ResourceType.TAG, "tag2");
+        filter.put(resource);
+        assertEquals(Lists.newArrayList(resource), filter.filter(Lists.newArrayList(resource)));
+        // not committed when rebuilding, still kept
+        filter.rebuild();
+        assertEquals(Lists.newArrayList(resource), filter.filter(Lists.newArrayList(resource)));
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(4, 'tag2_reader', 'tag read only role', 3, 'tag2', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        filter.rebuild();
+        assertEquals(Lists.newArrayList(resource), filter.filter(Lists.newArrayList(resource)));
+    }
+
+    @Test
+    void testCreatedElsewhere() {
+        List<Resource> resources = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            resources.add(new Resource(ResourceType.TAG, "tag" + (i + 10)));
+        }
+        assertTrue(filter.filter(resources).size() < 10);
+        assertFalse(filter.filter(resources).contains(resources.get(0)));
+        // inserted without going through the filter, as another instance would
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(4, 'tag10_reader', 'tag read only role', 3, 'tag10', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        // invisible until the next rebuild, filtering doesn't query the database
+        assertFalse(filter.filter(resources).contains(resources.get(0)));
+        filter.rebuild();
+        assertTrue(filter.filter(resources).contains(resources.get(0)));
+        assertTrue(filter.getMaxPolicyId() >= 4);
+    }
+
+    @Test
+    void testMaxPolicyIdAdvanced() {
+        filter.onChange(RbacChangeEvent.policy(this, POLICY_CREATED, 100));
+        assertEquals(100, filter.getMaxPolicyId());
+        // never moved back
+        filter.onChange(RbacChangeEvent.policy(this, POLICY_CREATED, 5));
+        filter.rebuild();
+        assertEquals(100, filter.getMaxPolicyId());
+    }
+}
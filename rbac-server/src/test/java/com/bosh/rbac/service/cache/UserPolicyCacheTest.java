@@ -0,0 +1,129 @@
+package com.bosh.rbac.service.cache;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.EntityType;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+
+import static com.bosh.rbac.event.RbacChangeEvent.Type.ENTITY_POLICY_ASSIGNED;
+import static com.bosh.rbac.event.RbacChangeEvent.Type.USER_ROLE_UNASSIGNED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rbac.cache.userPolicy.enabled=true")
+@ActiveProfiles("ut")
+class UserPolicyCacheTest {
+
+    private static final Date DATE = Date.from(LocalDateTime.parse("2017-10-20T00:10:30").atZone(ZoneId.systemDefault()).toInstant());
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private RbacMapper mapper;
+    @Autowired
+    private UserPolicyCache cache;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `users_roles` values" +
+                "(1, 1, timestamp '2017-10-20 00:10:30')," +
+                "(2, 2, timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `entities_policies` values" +
+                "(2, 1, 2, timestamp '2017-10-20 00:10:30')," +
+                "(2, 1, 4, timestamp '2017-10-20 00:10:30')," +
+                "(2, 2, 1, timestamp '2017-10-20 00:10:30')," +
+                "(2, 2, 3, timestamp '2017-10-20 00:10:30')," +
+                "(1, 2, 3, timestamp '2017-10-20 00:10:30')," +
+                "(1, 3, 4, timestamp '2017-10-20 00:10:30')");
+        mapper.backfillUserEffectivePolicies();
+        cache.invalidateAll();
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `users_roles`");
+        jdbc.execute("delete from `entities_policies`");
+        jdbc.execute("delete from `user_effective_policies`");
+    }
+
+    @Test
+    void testGetUserPolicy() {
+        assertTrue(cache.isEnabled());
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 2, DATE), cache.getUserPolicy(1, Lists.newArrayList(1L, 2L)));
+        assertEquals(new EntityPolicy(EntityType.User, 2, 3, DATE), cache.getUserPolicy(2, Lists.newArrayList(1L, 3L)));
+        assertEquals(new EntityPolicy(EntityType.Role, 2, 1, DATE), cache.getUserPolicy(2, Lists.newArrayList(1L, 4L)));
+        assertEquals(new EntityPolicy(EntityType.User, 3, 4, DATE), cache.getUserPolicy(3, Lists.newArrayList(4L)));
+        assertNull(cache.getUserPolicy(2, Lists.newArrayList(2L)));
+        assertNull(cache.getUserPolicy(4, Lists.newArrayList(1L, 2L, 3L, 4L)));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void testGetUserPolicies() {
+        Map<Long, EntityPolicy> expected = ImmutableMap.of(
+                1L, new EntityPolicy(EntityType.Role, 2, 1, DATE),
+                3L, new EntityPolicy(EntityType.User, 2, 3, DATE)
+        );
+        assertEquals(expected, cache.getUserPolicies(2, Lists.newArrayList(1L, 3L, 4L)));
+        assertEquals(1, cache.size());
+        assertTrue(cache.getUserPolicies(4, Lists.newArrayList(1L, 2L)).isEmpty());
+    }
+
+    @Test
+    void testInvalidateUser() {
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 2, DATE), cache.getUserPolicy(1, Lists.newArrayList(2L)));
+        jdbc.execute("delete from `users_roles` where `user_id`=1");
+        mapper.deleteUserRoleEffectivePolicies(1, 1);
+        // still served from cache until the change is announced
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 2, DATE), cache.getUserPolicy(1, Lists.newArrayList(2L)));
+        cache.onChange(RbacChangeEvent.userRole(this, USER_ROLE_UNASSIGNED, 1, 1));
+        assertNull(cache.getUserPolicy(1, Lists.newArrayList(2L)));
+    }
+
+    @Test
+    void testInvalidateWhileLoading() {
+        RbacMapper racing = mock(RbacMapper.class);
+        UserPolicyCache racingCache = new UserPolicyCache(racing, true, 100, 3600);
+        // the unassignment commits and is announced after the assignments are read, before they are cached
+        when(racing.listUserEntityPolicies(1)).thenAnswer(invocation -> {
+            racingCache.invalidate(1);
+            return Lists.newArrayList(new EntityPolicy(EntityType.Role, 1, 2, DATE));
+        }).thenReturn(Lists.newArrayList());
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 2, DATE), racingCache.getUserPolicy(1, Lists.newArrayList(2L)));
+        assertEquals(0, racingCache.size());
+        assertNull(racingCache.getUserPolicy(1, Lists.newArrayList(2L)));
+        verify(racing, times(2)).listUserEntityPolicies(1);
+    }
+
+    @Test
+    void testInvalidateRoleUsers() {
+        assertNull(cache.getUserPolicy(1, Lists.newArrayList(3L)));
+        assertNull(cache.getUserPolicy(3, Lists.newArrayList(3L)));
+        jdbc.execute("insert into `entities_policies` values (2, 1, 3, timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `entities_policies` values (1, 3, 3, timestamp '2017-10-20 00:10:30')");
+        mapper.backfillUserEffectivePolicies();
+        cache.onChange(RbacChangeEvent.entityPolicy(this, ENTITY_POLICY_ASSIGNED, EntityType.Role, 1, 3));
+        // only users with the role are invalidated
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 3, DATE), cache.getUserPolicy(1, Lists.newArrayList(3L)));
+        assertNull(cache.getUserPolicy(3, Lists.newArrayList(3L)));
+    }
+}
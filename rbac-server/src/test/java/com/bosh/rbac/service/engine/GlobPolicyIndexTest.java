@@ -0,0 +1,103 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.event.RbacChangeEvent;
+import com.bosh.rbac.model.Policy;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.bosh.rbac.event.RbacChangeEvent.Type.POLICY_CREATED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"rbac.globPolicies.enabled=true", "rbac.engine.enabled=true"})
+@ActiveProfiles("ut")
+class GlobPolicyIndexTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private GlobPolicyIndex index;
+    @Autowired
+    private PolicyEngine engine;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(1, 'partitions', 'hourly partitions', 1, 'hdfs://host:8020/warehouse/events/dt=*/hour=*', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(2, 'tmp', 'tmp anywhere', 1, 'hdfs://host:8020/warehouse/**/tmp', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(3, 'january', 'single day', 1, 'hdfs://host:8020/warehouse/events/dt=2017-01-0?', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(4, 'exact', 'no glob', 1, 'hdfs://host:8020/warehouse/events', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(5, 'ssn', 'ssn of all tables', 2, 'db.*.ssn', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(6, 'pii', 'pii tags', 3, 'pii-*', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        index.refresh();
+        engine.refresh();
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `policies`");
+    }
+
+    @Test
+    void testCollect() {
+        assertTrue(index.isEnabled());
+        assertEquals(Sets.newHashSet(1L, 3L), collect(ResourceType.HDFS, "hdfs://host:8020/warehouse/events/dt=2017-01-01/hour=03/part-0"));
+        assertEquals(Sets.newHashSet(3L), collect(ResourceType.HDFS, "hdfs://host:8020/warehouse/events/dt=2017-01-01"));
+        assertEquals(Sets.newHashSet(), collect(ResourceType.HDFS, "hdfs://host:8020/warehouse/events/dt=2017-01-10"));
+        assertEquals(Sets.newHashSet(2L), collect(ResourceType.HDFS, "hdfs://host:8020/warehouse/a/b/tmp/x"));
+        assertEquals(Sets.newHashSet(2L), collect(ResourceType.HDFS, "hdfs://host:8020/warehouse/tmp"));
+        assertEquals(Sets.newHashSet(), collect(ResourceType.HDFS, "hdfs://host:8020/warehouse/events"));
+        assertEquals(Sets.newHashSet(5L), collect(ResourceType.COLUMN, "db.users.ssn"));
+        assertEquals(Sets.newHashSet(), collect(ResourceType.COLUMN, "db.users.name"));
+        assertEquals(Sets.newHashSet(6L), collect(ResourceType.TAG, "pii-email"));
+        assertEquals(Sets.newHashSet(), collect(ResourceType.HDFS, "pii-email"));
+    }
+
+    @Test
+    void testSameAsSnapshot() {
+        PolicySnapshot snapshot = engine.getSnapshot();
+        for (String path : Lists.newArrayList("hdfs://host:8020/warehouse/events/dt=2017-01-01/hour=03/part-0",
+                "hdfs://host:8020/warehouse/a/tmp/x", "hdfs://host:8020/warehouse/events/x")) {
+            Resource resource = new Resource(ResourceType.HDFS, path);
+            List<Policy> policies = Lists.newArrayList();
+            index.collect(resource, policies);
+            Set<Long> expected = policies.stream().map(Policy::getId).collect(Collectors.toSet());
+            // exact policies on ancestors come from the path trie
+            if (path.startsWith("hdfs://host:8020/warehouse/events/")) expected.add(4L);
+            assertEquals(expected, snapshot.getAccessPolicies(resource, null).stream().map(Policy::getId).collect(Collectors.toSet()), path);
+        }
+    }
+
+    @Test
+    void testReloadOnCreated() throws Exception {
+        assertEquals(Sets.newHashSet(), collect(ResourceType.TAG, "phi-diagnosis"));
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(7, 'phi', 'phi tags', 3, 'phi-*', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        index.onChange(RbacChangeEvent.policy(this, POLICY_CREATED, 7));
+        // reloaded in the background after the delay
+        long deadline = System.currentTimeMillis() + 5000;
+        while (collect(ResourceType.TAG, "phi-diagnosis").isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(Sets.newHashSet(7L), collect(ResourceType.TAG, "phi-diagnosis"));
+    }
+
+    private Set<Long> collect(ResourceType type, String value) {
+        List<Policy> policies = Lists.newArrayList();
+        index.collect(new Resource(type, value), policies);
+        return policies.stream().map(Policy::getId).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,140 @@
+package com.bosh.rbac.service.engine;
+
+import com.bosh.rbac.mapper.RbacMapper;
+import com.bosh.rbac.model.EntityPolicy;
+import com.bosh.rbac.model.EntityType;
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.bosh.rbac.service.resource.HDFSResourceDecorator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "rbac.engine.enabled=true")
+@ActiveProfiles("ut")
+class PolicyEngineTest {
+
+    private static final Date DATE = Date.from(LocalDateTime.parse("2017-10-20T00:10:30").atZone(ZoneId.systemDefault()).toInstant());
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private RbacMapper mapper;
+    @Autowired
+    private PolicyEngine engine;
+    @Autowired
+    private HDFSResourceDecorator hdfsResourceDecorator;
+
+    @BeforeEach
+    void setup() {
+        jdbc.execute("insert into `roles` (`id`, `name`, `description`, `created_at`, `updated_at`) values" +
+                "(1, 'admin', 'administrator', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(2, 'analyst', 'read only', timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(1, 'hdfs_reader', 'hdfs read only role', 1, 'hdfs://host:8020/data', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(2, 'hdfs_writer', 'hdfs write role', 1, 'hdfs://host:8020/data', 2, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(3, 'tag_reader', 'tag read only role', 3, 'tag1', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(4, 'tag_writer', 'tag write role', 3, 'tag1', 2, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `users_roles` values" +
+                "(1, 1, timestamp '2017-10-20 00:10:30')," +
+                "(2, 2, timestamp '2017-10-20 00:10:30')");
+        jdbc.execute("insert into `entities_policies` values" +
+                "(2, 1, 2, timestamp '2017-10-20 00:10:30')," +
+                "(2, 1, 4, timestamp '2017-10-20 00:10:30')," +
+                "(2, 2, 1, timestamp '2017-10-20 00:10:30')," +
+                "(2, 2, 3, timestamp '2017-10-20 00:10:30')," +
+                "(1, 3, 1, timestamp '2017-10-20 00:10:30')," +
+                "(1, 3, 4, timestamp '2017-10-20 00:10:30')");
+        mapper.backfillPolicyFingerprints();
+        engine.refresh();
+    }
+
+    @AfterEach
+    void destroy() {
+        jdbc.execute("delete from `roles`");
+        jdbc.execute("delete from `policies`");
+        jdbc.execute("delete from `users_roles`");
+        jdbc.execute("delete from `entities_policies`");
+    }
+
+    @Test
+    void testSnapshotLoaded() {
+        PolicySnapshot snapshot = engine.getSnapshot();
+        assertTrue(engine.isEnabled());
+        assertNotNull(snapshot);
+        assertEquals(4, snapshot.getPolicyCount());
+        assertEquals(2, snapshot.getRoleCount());
+        assertEquals(2, snapshot.getUserRoleCount());
+        assertEquals(6, snapshot.getEntityPolicyCount());
+    }
+
+    @Test
+    void testGetResourcesPolicies() {
+        PolicySnapshot snapshot = engine.getSnapshot();
+        Resource r1 = new Resource(ResourceType.HDFS, "hdfs://host:8020/data");
+        Resource r2 = new Resource(ResourceType.TAG, "tag1");
+        Resource r3 = new Resource(ResourceType.TAG, "tag2");
+
+        assertEquals(mapper.getResourcesPolicies(Lists.newArrayList(r1, r2)), snapshot.getResourcesPolicies(Lists.newArrayList(r1, r2)));
+        assertEquals(mapper.getResourcesPolicies(Lists.newArrayList(r1)), snapshot.getResourcesPolicies(Lists.newArrayList(r1)));
+        assertEquals(mapper.getResourcesPolicies(Lists.newArrayList(r2, r3)), snapshot.getResourcesPolicies(Lists.newArrayList(r2, r3)));
+        assertEquals(Lists.newArrayList(), snapshot.getResourcesPolicies(Lists.newArrayList(r3)));
+    }
+
+    @Test
+    void testGetAccessPolicies() {
+        jdbc.execute("insert into `policies` (`id`, `name`, `description`, `resource_type`, `resource_value`, `action`, `created_at`, `updated_at`) values" +
+                "(5, 'hdfs_root', 'authority wide', 1, 'hdfs://host:8020', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(6, 'hdfs_events', 'events', 1, 'hdfs://host:8020/data/events', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(7, 'hdfs_slash', 'never an ancestor', 1, 'hdfs://host:8020/data/', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(8, 'hdfs_relative', 'never an ancestor', 1, '/data', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')," +
+                "(9, 'hdfs_file', 'file itself', 1, 'hdfs://host:8020/data/events/part-0', 1, timestamp '2017-10-20 00:10:30', timestamp '2017-10-20 00:10:30')");
+        mapper.backfillPolicyFingerprints();
+        engine.refresh();
+        PolicySnapshot snapshot = engine.getSnapshot();
+
+        for (String path : Lists.newArrayList("hdfs://host:8020/data/events/part-0", "hdfs://host:8020//data//events/part-0",
+                "hdfs://host:8020/data/", "hdfs://host:8020/data", "hdfs://host:8020", "/data/events", "hdfs://other:8020/data/x")) {
+            Resource resource = new Resource(ResourceType.HDFS, path);
+            List<Resource> resources = Lists.newArrayList(resource);
+            resources.addAll(hdfsResourceDecorator.decorate(resource));
+            assertEquals(Sets.newHashSet(mapper.getResourcesPolicies(resources)),
+                    Sets.newHashSet(snapshot.getAccessPolicies(resource, null)), path);
+        }
+        assertTrue(snapshot.indexesAncestors(ResourceType.HDFS));
+    }
+
+    @Test
+    void testGetUserPolicy() {
+        PolicySnapshot snapshot = engine.getSnapshot();
+        assertEquals(new EntityPolicy(EntityType.Role, 1, 2, DATE), snapshot.getUserPolicy(1, Lists.newArrayList(1L, 2L)));
+        assertEquals(new EntityPolicy(EntityType.Role, 2, 3, DATE), snapshot.getUserPolicy(2, Lists.newArrayList(3L , 4L)));
+        assertEquals(new EntityPolicy(EntityType.User, 3, 4, DATE), snapshot.getUserPolicy(3, Lists.newArrayList(4L)));
+        assertNull(snapshot.getUserPolicy(2, Lists.newArrayList(2L)));
+        assertNull(snapshot.getUserPolicy(4, Lists.newArrayList(1L, 2L, 3L, 4L)));
+    }
+
+    @Test
+    void testGetRole() {
+        PolicySnapshot snapshot = engine.getSnapshot();
+        assertEquals(mapper.getRole(1), snapshot.getRole(1));
+        assertEquals(mapper.getRole(2), snapshot.getRole(2));
+        assertNull(snapshot.getRole(3));
+    }
+}
@@ -0,0 +1,219 @@
+package com.bosh.rbac.service.resource;
+
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mib.rest.client.HttpOperator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("ut")
+class ColumnResourceDecoratorTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private HttpOperator http;
+
+    private HttpServer server;
+    private final List<List<String>> requests = Lists.newCopyOnWriteArrayList();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private ColumnResourceDecorator decorator;
+
+    @BeforeEach
+    void setup() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/tags", exchange -> {
+            List<String> columns = MAPPER.readValue(exchange.getRequestBody(), new TypeReference<List<String>>() {});
+            requests.add(columns);
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body;
+            if (status.get() == 200) {
+                Map<String, List<String>> tags = Maps.newHashMap();
+                // columns of table t1 carry a pii tag, others none
+                columns.forEach(column -> tags.put(column, column.startsWith("db.t1.")
+                        ? Lists.newArrayList("pii", column) : Lists.newArrayList()));
+                body = MAPPER.writeValueAsBytes(tags);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+            } else {
+                body = "oops".getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.sendResponseHeaders(status.get(), body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        decorator = new ColumnResourceDecorator(http, false, true, tagEndpoint(), 100, 60, 5000, 5000);
+    }
+
+    @AfterEach
+    void destroy() {
+        server.stop(0);
+    }
+
+    @Test
+    void testHierarchy() {
+        ColumnResourceDecorator hierarchy = new ColumnResourceDecorator(http, true, false, "", 100, 60, 5000, 5000);
+        assertEquals(Lists.newArrayList(
+                new Resource(ResourceType.COLUMN, "db"),
+                new Resource(ResourceType.COLUMN, "db.t1")
+        ), hierarchy.decorate(new Resource(ResourceType.COLUMN, "db.t1.c1")));
+        assertEquals(Lists.newArrayList(new Resource(ResourceType.COLUMN, "db")),
+                hierarchy.decorate(new Resource(ResourceType.COLUMN, "db.t1")));
+        assertEquals(Lists.newArrayList(), hierarchy.decorate(new Resource(ResourceType.COLUMN, "db")));
+        // names with empty parts are not qualified names
+        assertEquals(Lists.newArrayList(), hierarchy.decorate(new Resource(ResourceType.COLUMN, "db..c1")));
+        assertEquals(Lists.newArrayList(), hierarchy.decorate(new Resource(ResourceType.COLUMN, ".t1.c1")));
+        assertEquals(Lists.newArrayList(), hierarchy.decorate(new Resource(ResourceType.COLUMN, "db.t1.")));
+        assertEquals(Lists.newArrayList(), hierarchy.decorate(new Resource(ResourceType.HDFS, "db.t1.c1")));
+        assertTrue(hierarchy.isResolved(new Resource(ResourceType.COLUMN, "db.t1.c1")));
+        assertTrue(requests.isEmpty());
+
+        ColumnResourceDecorator both = new ColumnResourceDecorator(http, true, true, tagEndpoint(), 100, 60, 5000, 5000);
+        assertEquals(Lists.newArrayList(
+                new Resource(ResourceType.COLUMN, "db"),
+                new Resource(ResourceType.COLUMN, "db.t1"),
+                new Resource(ResourceType.TAG, "pii"),
+                new Resource(ResourceType.TAG, "db.t1.c1")
+        ), both.decorate(new Resource(ResourceType.COLUMN, "db.t1.c1")));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void testPrefetch() {
+        Resource c1 = new Resource(ResourceType.COLUMN, "db.t1.c1");
+        Resource c2 = new Resource(ResourceType.COLUMN, "db.t1.c2");
+        Resource c3 = new Resource(ResourceType.COLUMN, "db.t2.c1");
+        decorator.prefetch(Lists.newArrayList(c1, c2, c3, new Resource(ResourceType.HDFS, "hdfs://host/data")));
+        assertEquals(1, requests.size());
+        assertEquals(Sets.newHashSet("db.t1.c1", "db.t1.c2", "db.t2.c1"), Sets.newHashSet(requests.get(0)));
+
+        assertEquals(Lists.newArrayList(new Resource(ResourceType.TAG, "pii"), new Resource(ResourceType.TAG, "db.t1.c1")),
+                decorator.decorate(c1));
+        assertEquals(Lists.newArrayList(new Resource(ResourceType.TAG, "pii"), new Resource(ResourceType.TAG, "db.t1.c2")),
+                decorator.decorate(c2));
+        assertEquals(Lists.newArrayList(), decorator.decorate(c3));
+        // cached columns are neither prefetched nor fetched again
+        decorator.prefetch(Lists.newArrayList(c1, c2, c3));
+        assertEquals(1, requests.size());
+
+        Resource c4 = new Resource(ResourceType.COLUMN, "db.t1.c4");
+        decorator.prefetch(Lists.newArrayList(c1, c4));
+        assertEquals(2, requests.size());
+        assertEquals(Lists.newArrayList("db.t1.c4"), requests.get(1));
+        assertEquals(Lists.newArrayList(), decorator.decorate(new Resource(ResourceType.HDFS, "hdfs://host/data")));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void testCoalesceInFlight() throws Exception {
+        gate = new CountDownLatch(1);
+        Resource c1 = new Resource(ResourceType.COLUMN, "db.t1.c1");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Resource>>> futures = Lists.newArrayList();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> decorator.decorate(c1)));
+            }
+            // let every lookup reach the decorator before the first call returns
+            while (requests.isEmpty()) Thread.sleep(10);
+            Thread.sleep(200);
+            gate.countDown();
+            for (Future<List<Resource>> future : futures) {
+                assertEquals(Lists.newArrayList(new Resource(ResourceType.TAG, "pii"), new Resource(ResourceType.TAG, "db.t1.c1")),
+                        future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void testFailureRemembered() throws Exception {
+        status.set(500);
+        Resource c1 = new Resource(ResourceType.COLUMN, "db.t1.c1");
+        Resource c2 = new Resource(ResourceType.COLUMN, "db.t1.c2");
+        decorator.prefetch(Lists.newArrayList(c1, c2));
+        assertEquals(1, requests.size());
+        status.set(200);
+        // neither decorated nor prefetched by another call until the failure expires
+        assertTrue(decorator.decorate(c1).isEmpty());
+        assertTrue(decorator.decorate(c2).isEmpty());
+        decorator.prefetch(Lists.newArrayList(c1, c2));
+        assertEquals(1, requests.size());
+        assertFalse(decorator.isResolved(c1));
+
+        ColumnResourceDecorator brief = new ColumnResourceDecorator(http, false, true, tagEndpoint(), 100, 60, 5000, 1);
+        status.set(500);
+        assertTrue(brief.decorate(c1).isEmpty());
+        assertEquals(2, requests.size());
+        status.set(200);
+        Thread.sleep(10);
+        assertEquals(2, brief.decorate(c1).size());
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    void testTimeout() throws Exception {
+        gate = new CountDownLatch(1);
+        ColumnResourceDecorator impatient = new ColumnResourceDecorator(http, false, true, tagEndpoint(), 100, 60, 100, 5000);
+        List<Resource> columns = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            columns.add(new Resource(ResourceType.COLUMN, "db.t1.c" + i));
+        }
+        try {
+            long start = System.currentTimeMillis();
+            impatient.prefetch(columns);
+            // one timeout for the request, the columns it left unresolved aren't waited for again
+            for (Resource column : columns) {
+                assertTrue(impatient.decorate(column).isEmpty());
+            }
+            assertTrue(System.currentTimeMillis() - start < 1000);
+            assertEquals(1, requests.size());
+        } finally {
+            gate.countDown();
+        }
+        // the call answering late still caches its tags
+        while (!impatient.isResolved(columns.get(0))) Thread.sleep(10);
+        assertEquals(2, impatient.decorate(columns.get(0)).size());
+        assertEquals(1, requests.size());
+    }
+
+    private String tagEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort() + "/tags";
+    }
+}
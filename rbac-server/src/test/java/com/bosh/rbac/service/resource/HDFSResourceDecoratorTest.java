@@ -52,4 +52,30 @@ class HDFSResourceDecoratorTest {
                 new Resource(ResourceType.HDFS, "hdfs://localhost:8020/home/work/data")
         ), resourceDecorator.decorate(resource));
     }
+
+    @Test
+    void testDecorateIrregularPaths() {
+        when(resource.getType()).thenReturn(ResourceType.HDFS);
+
+        when(resource.getValue()).thenReturn("hdfs://localhost:8020/home/work//");
+        assertEquals(Lists.newArrayList(
+                new Resource(ResourceType.HDFS, "hdfs://localhost:8020"),
+                new Resource(ResourceType.HDFS, "hdfs://localhost:8020/home")
+        ), resourceDecorator.decorate(resource));
+
+        when(resource.getValue()).thenReturn("hdfs:///home/work");
+        assertEquals(Lists.newArrayList(new Resource(ResourceType.HDFS, "hdfs://home")), resourceDecorator.decorate(resource));
+
+        when(resource.getValue()).thenReturn("/home/work/data");
+        assertEquals(Lists.newArrayList(
+                new Resource(ResourceType.HDFS, "home"),
+                new Resource(ResourceType.HDFS, "home/work")
+        ), resourceDecorator.decorate(resource));
+
+        when(resource.getValue()).thenReturn("hdfs://localhost:8020");
+        assertEquals(Lists.newArrayList(), resourceDecorator.decorate(resource));
+
+        when(resource.getValue()).thenReturn("hdfs:///");
+        assertEquals(Lists.newArrayList(), resourceDecorator.decorate(resource));
+    }
 }
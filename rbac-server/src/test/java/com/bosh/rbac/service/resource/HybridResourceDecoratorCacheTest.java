@@ -0,0 +1,81 @@
+package com.bosh.rbac.service.resource;
+
+import com.bosh.rbac.model.Resource;
+import com.bosh.rbac.model.ResourceType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "rbac.decorator.cache.enabled=true")
+@ActiveProfiles("ut")
+class HybridResourceDecoratorCacheTest {
+
+    @SpyBean
+    private HDFSResourceDecorator hdfs;
+    @MockBean
+    private ColumnResourceDecorator column;
+    @Autowired
+    private HybridResourceDecorator resourceDecorator;
+
+    @BeforeEach
+    void setup() {
+        resourceDecorator.invalidateAll();
+    }
+
+    @Test
+    void testHDFS() {
+        Resource resource = new Resource(ResourceType.HDFS, "hdfs://host:8020/data/events/part-0");
+        List<Resource> decorated = resourceDecorator.decorate(resource);
+        assertEquals(Lists.newArrayList(
+                new Resource(ResourceType.HDFS, "hdfs://host:8020"),
+                new Resource(ResourceType.HDFS, "hdfs://host:8020/data"),
+                new Resource(ResourceType.HDFS, "hdfs://host:8020/data/events")
+        ), decorated);
+        assertTrue(decorated instanceof ImmutableList);
+        assertThrows(UnsupportedOperationException.class, () -> decorated.add(resource));
+        // mutating the resource afterwards doesn't corrupt the cache
+        resource.setValue("hdfs://host:8020/other/part-0");
+        assertEquals(Lists.newArrayList(new Resource(ResourceType.HDFS, "hdfs://host:8020"),
+                new Resource(ResourceType.HDFS, "hdfs://host:8020/other")), resourceDecorator.decorate(resource));
+        assertSame(decorated, resourceDecorator.decorate(new Resource(ResourceType.HDFS, "hdfs://host:8020/data/events/part-0")));
+        verify(hdfs, times(2)).decorate(any());
+        assertEquals(2, resourceDecorator.size(ResourceType.HDFS));
+        assertEquals(1, resourceDecorator.stats(ResourceType.HDFS).hitCount());
+        assertEquals(2, resourceDecorator.stats(ResourceType.HDFS).missCount());
+        assertNull(resourceDecorator.stats(ResourceType.TAG));
+    }
+
+    @Test
+    void testColumn() {
+        Resource resource = new Resource(ResourceType.COLUMN, "db.t1.c1");
+        List<Resource> tags = Lists.newArrayList(new Resource(ResourceType.TAG, "pii"));
+        when(column.decorate(resource)).thenReturn(tags);
+        // unresolved tags are not memoized
+        when(column.isResolved(resource)).thenReturn(false);
+        assertEquals(tags, resourceDecorator.decorate(resource));
+        assertEquals(0, resourceDecorator.size(ResourceType.COLUMN));
+        when(column.isResolved(resource)).thenReturn(true);
+        assertEquals(tags, resourceDecorator.decorate(resource));
+        assertEquals(tags, resourceDecorator.decorate(resource));
+        verify(column, times(2)).decorate(resource);
+        assertEquals(1, resourceDecorator.size(ResourceType.COLUMN));
+    }
+}
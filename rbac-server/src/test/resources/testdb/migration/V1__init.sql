@@ -28,12 +28,14 @@ CREATE TABLE `policies` (
 CREATE TABLE `users_roles` (
   `user_id` BIGINT NOT NULL,
   `role_id` BIGINT NOT NULL,
-  `created_at` DATETIME(3) NOT NULL
+  `created_at` DATETIME(3) NOT NULL,
+  PRIMARY KEY (`user_id`, `role_id`)
 );
 
 CREATE TABLE `entities_policies` (
   `entity_type` TINYINT(1) NOT NULL,
   `entity_id` BIGINT NOT NULL,
   `policy_id` BIGINT NOT NULL,
-  `created_at` DATETIME(3) NOT NULL
+  `created_at` DATETIME(3) NOT NULL,
+  PRIMARY KEY (`entity_type`, `entity_id`, `policy_id`)
 );
@@ -0,0 +1,8 @@
+CREATE TABLE `user_effective_policies` (
+  `user_id` BIGINT NOT NULL,
+  `policy_id` BIGINT NOT NULL,
+  `via_entity_type` TINYINT(1) NOT NULL,
+  `via_entity_id` BIGINT NOT NULL,
+  `created_at` DATETIME(3) NOT NULL,
+  PRIMARY KEY (`user_id`, `policy_id`, `via_entity_type`, `via_entity_id`)
+);
@@ -0,0 +1,2 @@
+ALTER TABLE `policies` ADD COLUMN `resource_fingerprint` BIGINT DEFAULT 0 NOT NULL BEFORE `action`;
+CREATE INDEX `policies_resource_fingerprint` ON `policies` (`resource_fingerprint`);
@@ -0,0 +1,3 @@
+ALTER TABLE `roles` ADD COLUMN `user_count` BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE `roles` ADD COLUMN `policy_count` BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE `policies` ADD COLUMN `entity_count` BIGINT DEFAULT 0 NOT NULL;